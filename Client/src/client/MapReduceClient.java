@@ -38,6 +38,8 @@ import utilities.filesystem.Filename;
 
 import utilities.RMIHelper;
 
+import utilities.collections.StringLongTable;
+
 public class MapReduceClient {
 	private String registryLocation;
 
@@ -66,7 +68,7 @@ public class MapReduceClient {
 		Node[] nodesStage1 = new Node[numberMappers];
 
 		for(int i = 0; i < nodesStage1.length; i++) {
-			nodesStage1[i] = new CountingMapper<String>(numberReducers);
+			nodesStage1[i] = new CountingMapper<String>(numberReducers, new StringLongTable());
 		}
 
 		try {
@@ -95,7 +97,7 @@ public class MapReduceClient {
 		Node[] nodesStage2 = new Node[numberReducers];
 
 		for(int i = 0; i < nodesStage2.length; i++) {
-			nodesStage2[i] = new CountingReducer<String>();
+			nodesStage2[i] = new CountingReducer<String>(new StringLongTable());
 		}
 
 		try {
@@ -0,0 +1,138 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package utilities;
+
+import java.io.IOException;
+
+import utilities.filesystem.Directory;
+import utilities.filesystem.FileHelper;
+import utilities.filesystem.Filename;
+
+import communication.channel.ChannelElement;
+
+import communication.codecs.EncodedChannelElement;
+
+import communication.writers.FileChannelElementWriter;
+
+import mapreduce.communication.MRChannelElement;
+
+/**
+ * Measures the cost of broadcasting elements to an increasing number of file channels, encoding each
+ * element once per channel (as plain writes do) or once for all channels (as writeEveryone does).
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class FanOutBenchmark {
+	private Directory directory;
+
+	private int numberElements;
+	private int maximumDegree;
+
+	public FanOutBenchmark(Directory directory, int numberElements, int maximumDegree) {
+		this.directory = directory;
+
+		this.numberElements = numberElements;
+		this.maximumDegree = maximumDegree;
+	}
+
+	public void run() throws IOException {
+		System.out.println("Degree\tPer-channel (ns/element)\tShared (ns/element)\tSpeedup");
+
+		for(int degree = 1; degree <= maximumDegree; degree *= 2) {
+			// Warm up both paths before measuring
+
+			measure(degree, false);
+			measure(degree, true);
+
+			long perChannelTime = measure(degree, false);
+			long sharedTime = measure(degree, true);
+
+			System.out.println(degree + "\t" + (perChannelTime / numberElements) + "\t" + (sharedTime / numberElements) + "\t" + String.format("%.2f", ((double) perChannelTime) / sharedTime));
+		}
+	}
+
+	/**
+	 * Writes all the elements to the informed number of channels.
+	 * 
+	 * @param degree Number of channels.
+	 * @param shared True if each element should be encoded once for all channels.
+	 * 
+	 * @return The time spent, in nanoseconds.
+	 */
+	private long measure(int degree, boolean shared) throws IOException {
+		Filename[] outputs = new Filename[degree];
+
+		FileChannelElementWriter[] writers = new FileChannelElementWriter[degree];
+
+		for(int i = 0; i < degree; i++) {
+			outputs[i] = FileHelper.getFileInformation(directory.getPath(), "fanout-benchmark-" + i + ".dat", directory.getProtocol());
+
+			writers[i] = new FileChannelElementWriter(outputs[i]);
+		}
+
+		long startTime = System.nanoTime();
+
+		for(int element = 0; element < numberElements; element++) {
+			ChannelElement channelElement = new MRChannelElement<String,Long>("word-" + (element % 1000), (long) element);
+
+			if(shared) {
+				EncodedChannelElement encodedChannelElement = new EncodedChannelElement(channelElement);
+
+				for(int i = 0; i < degree; i++) {
+					writers[i].writeEncoded(encodedChannelElement);
+				}
+			}
+			else {
+				for(int i = 0; i < degree; i++) {
+					writers[i].write(channelElement);
+				}
+			}
+		}
+
+		for(int i = 0; i < degree; i++) {
+			writers[i].close();
+		}
+
+		long finishTime = System.nanoTime();
+
+		for(int i = 0; i < degree; i++) {
+			FileHelper.remove(outputs[i]);
+		}
+
+		return finishTime - startTime;
+	}
+
+	public static void main(String[] arguments) {
+		if(arguments.length < 2) {
+			System.err.println("Usage: FanOutBenchmark <directory> <number_elements> [<maximum_degree>]");
+
+			System.exit(1);
+		}
+
+		int maximumDegree = 16;
+
+		if(arguments.length > 2) {
+			maximumDegree = Integer.parseInt(arguments[2]);
+		}
+
+		FanOutBenchmark benchmark = new FanOutBenchmark(new Directory(arguments[0]), Integer.parseInt(arguments[1]), maximumDegree);
+
+		try {
+			benchmark.run();
+		} catch (IOException exception) {
+			System.err.println("Error running benchmark");
+
+			exception.printStackTrace();
+		}
+	}
+}
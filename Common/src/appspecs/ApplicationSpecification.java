@@ -45,11 +45,14 @@ import communication.channel.SHMOutputChannel;
 
 import communication.channel.FileInputChannel;
 import communication.channel.FileOutputChannel;
+import communication.channel.PartitionedFileInputChannel;
+import communication.channel.PartitionedFileOutputChannel;
 
 import communication.channel.TCPInputChannel;
 import communication.channel.TCPOutputChannel;
 
 import enums.CommunicationMode;
+import enums.FileReaderMode;
 
 import exceptions.OverlapingFilesException;
 
@@ -97,6 +100,8 @@ public class ApplicationSpecification extends DefaultDirectedGraph<Node, Edge> {
 
 	protected Map<Node, Authenticator> nodeAuthenticators;
 
+	protected FileReaderMode fileReaderMode = FileReaderMode.STREAM;
+
 	public ApplicationSpecification(String name, Directory baseDirectory) {
 		super(Edge.class);
 
@@ -160,6 +165,16 @@ public class ApplicationSpecification extends DefaultDirectedGraph<Node, Edge> {
 		this.decider = decider;
 	}
 
+	public FileReaderMode getFileReaderMode() {
+		return fileReaderMode;
+	}
+
+	// Affects the file channels created after the call (application inputs and FILE edges)
+
+	public void setFileReaderMode(FileReaderMode fileReaderMode) {
+		this.fileReaderMode = fileReaderMode;
+	}
+
 	public void insertNodes(Node[] nodes) {
 		for(Node node: nodes) {
 			node.setName(generateUniqueName());
@@ -243,7 +258,7 @@ public class ApplicationSpecification extends DefaultDirectedGraph<Node, Edge> {
 			nodeToInputs.put(node, new HashSet<Filename>());
 		}
 
-		FileInputChannel inputChannel = new FileInputChannel(filename.getLocation(), filename);
+		FileInputChannel inputChannel = new FileInputChannel(filename.getLocation(), filename, fileReaderMode);
 
 		node.addInputChannel(filename.getLocation(), inputChannel, true);
 
@@ -253,6 +268,23 @@ public class ApplicationSpecification extends DefaultDirectedGraph<Node, Edge> {
 		nodeToInputs.get(node).add(filename);
 	}
 
+	/**
+	 * Adds a byte range of a file as an input of the node. The range is aligned to the sync markers of the file
+	 * when read, so ranges that cover the file deliver every element exactly once across their nodes.
+	 * 
+	 * @param node Node that reads the range.
+	 * @param filename File that contains the range.
+	 * @param offset Start of the range, in bytes.
+	 * @param length Length of the range, in bytes.
+	 */
+	public void addInput(Node node, Filename filename, long offset, long length) {
+		addInput(node, filename);
+
+		FileInputChannel inputChannel = (FileInputChannel) node.getInputChannel(filename.getLocation());
+
+		inputChannel.setSplit(offset, length);
+	}
+
 	public InputChannel delInput(Node node, Filename filename) {
 		InputChannel inputChannel = node.delInputChannel(filename.getLocation());
 
@@ -471,23 +503,55 @@ public class ApplicationSpecification extends DefaultDirectedGraph<Node, Edge> {
 
 			switch(edge.getCommunicationMode()) {
 			case SHM:
+				SHMInputChannel shmInputChannel = new SHMInputChannel(source.getName());
+
+				shmInputChannel.setQueueSpecification(edge.getQueueSpecification());
+
 				source.addOutputChannel(target.getName(), new SHMOutputChannel(target.getName()), false);
-				target.addInputChannel(source.getName(), new SHMInputChannel(source.getName()), false);
+				target.addInputChannel(source.getName(), shmInputChannel, false);
 				break;
 			case TCP:
-				source.addOutputChannel(target.getName(), new TCPOutputChannel(target.getName()), false);
+				TCPOutputChannel tcpOutputChannel = new TCPOutputChannel(target.getName());
+
+				// The compression type travels in the stream itself, so only the writer needs it
+
+				tcpOutputChannel.setCompressionType(edge.getCompressionType());
+				tcpOutputChannel.setSerializationPolicy(edge.getSerializationPolicy());
+
+				source.addOutputChannel(target.getName(), tcpOutputChannel, false);
 				target.addInputChannel(source.getName(), new TCPInputChannel(source.getName()), false);
 				break;
 			case FILE:
 				Filename filename = edge.getFilename(); 
 
-				// If a filename was not set, create an anonymous filename
-				if(filename == null) {
-					filename = FileHelper.getFileInformation(baseDirectory.getPath(), "anonymous-filechannel-" + (anonymousFileChannelCounter++) + ".dat", baseDirectory.getProtocol());
+				FileOutputChannel fileOutputChannel;
+				FileInputChannel fileInputChannel;
+
+				if(edge.getPartition() >= 0) {
+					// Partitioned edges of the same source share one file, written by all their channels together
+					if(filename == null) {
+						filename = FileHelper.getFileInformation(baseDirectory.getPath(), "partitioned-filechannel-" + source.getName() + ".dat", baseDirectory.getProtocol());
+					}
+
+					fileOutputChannel = new PartitionedFileOutputChannel(target.getName(), filename, edge.getPartition(), edge.getNumberPartitions(), edge.getPartitionComparator());
+					fileInputChannel = new PartitionedFileInputChannel(source.getName(), filename, edge.getPartition(), edge.getPartitionComparator());
 				}
+				else {
+					// If a filename was not set, create an anonymous filename
+					if(filename == null) {
+						filename = FileHelper.getFileInformation(baseDirectory.getPath(), "anonymous-filechannel-" + (anonymousFileChannelCounter++) + ".dat", baseDirectory.getProtocol());
+					}
+
+					fileOutputChannel = new FileOutputChannel(target.getName(), filename);
+					fileInputChannel = new FileInputChannel(source.getName(), filename, fileReaderMode);
+				}
+
+				fileOutputChannel.setCompressionType(edge.getCompressionType());
+				fileOutputChannel.setSerializationPolicy(edge.getSerializationPolicy());
+				fileInputChannel.setCompressionType(edge.getCompressionType());
 
-				source.addOutputChannel(target.getName(), new FileOutputChannel(target.getName(), filename), false);
-				target.addInputChannel(source.getName(), new FileInputChannel(source.getName(), filename), false);
+				source.addOutputChannel(target.getName(), fileOutputChannel, false);
+				target.addInputChannel(source.getName(), fileInputChannel, false);
 
 				break;
 			}
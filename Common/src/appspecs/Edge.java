@@ -11,11 +11,18 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package appspecs;
 
+import java.util.Comparator;
+
 import org.jgrapht.graph.DefaultEdge;
 
+import utilities.concurrent.QueueSpecification;
+
+import communication.channel.ChannelElement;
+import communication.codecs.SerializationPolicy;
 import utilities.filesystem.Filename;
 
 import enums.CommunicationMode;
+import enums.CompressionType;
 
 public class Edge extends DefaultEdge {
 	private static final long serialVersionUID = 1L;
@@ -24,6 +31,17 @@ public class Edge extends DefaultEdge {
 
 	private Filename filename;
 
+	private QueueSpecification queueSpecification;
+
+	private CompressionType compressionType = CompressionType.NONE;
+
+	private SerializationPolicy serializationPolicy;
+
+	private int partition = -1;
+	private int numberPartitions;
+
+	private Comparator<ChannelElement> partitionComparator;
+
 	public Edge(CommunicationMode type) {
 		setCommunicationMode(type);
 	}
@@ -57,4 +75,90 @@ public class Edge extends DefaultEdge {
 	public void setFilename(Filename filename) {
 		this.filename = filename;
 	}
+
+	public QueueSpecification getQueueSpecification() {
+		return queueSpecification;
+	}
+
+	public void setQueueSpecification(QueueSpecification queueSpecification) {
+		this.queueSpecification = queueSpecification;
+	}
+
+	/**
+	 * Getter for the compression applied to the data of this edge. Only used by FILE and TCP edges.
+	 * 
+	 * @return The compression applied to the data of this edge.
+	 */
+	public CompressionType getCompressionType() {
+		return compressionType;
+	}
+
+	/**
+	 * Setter for the compression applied to the data of this edge. Only used by FILE and TCP edges.
+	 * 
+	 * @param compressionType The compression applied to the data of this edge.
+	 */
+	public void setCompressionType(CompressionType compressionType) {
+		this.compressionType = compressionType;
+	}
+
+	/**
+	 * Getter for the bounds on the state kept by the Java serialization fallback of this edge. Only used by FILE and TCP edges.
+	 * 
+	 * @return The bounds on the state kept by the Java serialization fallback, or null if the default bounds are used.
+	 */
+	public SerializationPolicy getSerializationPolicy() {
+		return serializationPolicy;
+	}
+
+	/**
+	 * Setter for the bounds on the state kept by the Java serialization fallback of this edge. Only used by FILE and TCP edges.
+	 * 
+	 * @param serializationPolicy The bounds on the state kept by the Java serialization fallback, or null for the default bounds.
+	 */
+	public void setSerializationPolicy(SerializationPolicy serializationPolicy) {
+		this.serializationPolicy = serializationPolicy;
+	}
+
+	/**
+	 * Getter for the partition written by this edge. Only used by FILE edges.
+	 * 
+	 * @return The partition written by this edge, or -1 if the edge has a file of its own.
+	 */
+	public int getPartition() {
+		return partition;
+	}
+
+	/**
+	 * Getter for the number of partitions in the file shared by the partitioned edges of the source.
+	 * 
+	 * @return The number of partitions in the file of this edge.
+	 */
+	public int getNumberPartitions() {
+		return numberPartitions;
+	}
+
+	/**
+	 * Getter for the comparator that sorts the partition of this edge.
+	 * 
+	 * @return The comparator that sorts the partition of this edge.
+	 */
+	public Comparator<ChannelElement> getPartitionComparator() {
+		return partitionComparator;
+	}
+
+	/**
+	 * Makes this edge write a partition of a file shared by the partitioned edges of its source, sorted by the
+	 * informed comparator, instead of a file of its own. Only used by FILE edges.
+	 * 
+	 * @param partition The partition written by this edge.
+	 * @param numberPartitions The number of partitions in the shared file.
+	 * @param partitionComparator The comparator that sorts the partition, which should be serializable.
+	 */
+	public void setPartition(int partition, int numberPartitions, Comparator<ChannelElement> partitionComparator) {
+		this.partition = partition;
+		this.numberPartitions = numberPartitions;
+
+		this.partitionComparator = partitionComparator;
+	}
 }
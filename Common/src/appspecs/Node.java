@@ -18,6 +18,10 @@ import java.io.IOException;
 import java.io.Serializable;
 
 import java.util.Collection;
+import java.util.Collections;
+
+import java.util.List;
+import java.util.ArrayList;
 
 import java.util.Set;
 import java.util.Map;
@@ -31,6 +35,8 @@ import communication.channel.FileInputChannel;
 import communication.channel.InputChannel;
 import communication.channel.OutputChannel;
 
+import communication.codecs.EncodedChannelElement;
+
 import communication.shufflers.ChannelElementReaderShuffler;
 import communication.shufflers.ChannelElementWriterShuffler;
 
@@ -38,9 +44,14 @@ import utilities.MutableInteger;
 
 import execinfo.NodeGroup;
 
+import enums.DecodingMode;
+
 public abstract class Node implements Serializable, Runnable {
 	private static final long serialVersionUID = 1L;
 
+	// Default number of elements requested by each batch read
+	protected static final int DEFAULT_BATCH_SIZE = 256;
+
 	///////////////////////////////
 	// SPECIFICATION INFORMATION //
 	///////////////////////////////
@@ -60,12 +71,18 @@ public abstract class Node implements Serializable, Runnable {
 	protected ChannelElementReaderShuffler readersShuffler;
 	protected ChannelElementWriterShuffler writersShuffler;
 
+	// How elements read from FILE and TCP channels are decoded
+	protected DecodingMode decodingMode = DecodingMode.EAGER;
+
 	/////////////////////////
 	// RUNNING INFORMATION //
 	/////////////////////////
 
 	protected NodeGroup nodeGroup;
 
+	// Counters reported by the node along with its measurements
+	protected Map<String, Long> counters;
+
 	/////////////////////////
 	// PARSING INFORMATION //
 	/////////////////////////
@@ -95,6 +112,55 @@ public abstract class Node implements Serializable, Runnable {
 		return name;
 	}
 
+	/**
+	 * Getter for how elements read from FILE and TCP channels are decoded.
+	 * 
+	 * @return How elements read from FILE and TCP channels are decoded.
+	 */
+	public DecodingMode getDecodingMode() {
+		return decodingMode;
+	}
+
+	/**
+	 * Setter for how elements read from FILE and TCP channels are decoded. Elements decoded lazily or passed through
+	 * are written downstream as they were read, if not modified. In the pass-through mode, elements are delivered as
+	 * RawChannelElements, whose actual class is only available through RawChannelElement.getChannelElement().
+	 * 
+	 * @param decodingMode How elements read from FILE and TCP channels are decoded.
+	 */
+	public void setDecodingMode(DecodingMode decodingMode) {
+		this.decodingMode = decodingMode;
+	}
+
+	/**
+	 * Adds to a counter reported by this node along with its measurements.
+	 * 
+	 * @param counter Name of the counter.
+	 * @param value Value added to the counter.
+	 */
+	protected void addToCounter(String counter, long value) {
+		if(counters == null) {
+			counters = new HashMap<String, Long>();
+		}
+
+		Long current = counters.get(counter);
+
+		counters.put(counter, (current == null ? value : current + value));
+	}
+
+	/**
+	 * Getter for the counters reported by this node along with its measurements.
+	 * 
+	 * @return A map from counter names to values.
+	 */
+	public Map<String, Long> getCounters() {
+		if(counters == null) {
+			return Collections.emptyMap();
+		}
+
+		return Collections.unmodifiableMap(counters);
+	}
+
 	/* INPUT getters/adders */
 
 	public Set<String> getInputChannelNames() {
@@ -239,15 +305,40 @@ public abstract class Node implements Serializable, Runnable {
 		InputChannel inputChannel = getInputChannel(name);
 
 		if(inputChannel != null) {
-			try {
-				return inputChannel.read();
-			} catch (EOFException exception) {
-				return null;
-			} catch (IOException exception) {
-				System.err.println("Error reading channel element from node " + name + " for node " + this);
+			return read(inputChannel);
+		}
 
-				exception.printStackTrace();
-			}
+		System.err.println("Couldn't find input channel " + name +  " for node " + this);
+
+		return null;
+	}
+
+	/**
+	 * Reads an element from an input channel obtained beforehand with getInputChannel(), saving the lookup by name.
+	 * 
+	 * @param inputChannel The input channel.
+	 * 
+	 * @return The element read, or null if the channel reached its end.
+	 */
+	protected ChannelElement read(InputChannel inputChannel) {
+		try {
+			return inputChannel.read();
+		} catch (EOFException exception) {
+			return null;
+		} catch (IOException exception) {
+			System.err.println("Error reading channel element from node " + inputChannel.getName() + " for node " + this);
+
+			exception.printStackTrace();
+		}
+
+		return null;
+	}
+
+	protected List<ChannelElement> readBatch(String name, int maximum) {
+		InputChannel inputChannel = getInputChannel(name);
+
+		if(inputChannel != null) {
+			return readBatch(inputChannel, maximum);
 		}
 
 		System.err.println("Couldn't find input channel " + name +  " for node " + this);
@@ -255,6 +346,32 @@ public abstract class Node implements Serializable, Runnable {
 		return null;
 	}
 
+	/**
+	 * Reads up to the informed number of elements from an input channel, waiting only until the first one is available.
+	 * 
+	 * @param inputChannel The input channel.
+	 * @param maximum Maximum number of elements read.
+	 * 
+	 * @return The elements read, or null if the channel reached its end.
+	 */
+	protected List<ChannelElement> readBatch(InputChannel inputChannel, int maximum) {
+		List<ChannelElement> channelElements = new ArrayList<ChannelElement>(Math.min(maximum, DEFAULT_BATCH_SIZE));
+
+		try {
+			inputChannel.read(channelElements, Math.max(maximum, 1));
+
+			return channelElements;
+		} catch (EOFException exception) {
+			return null;
+		} catch (IOException exception) {
+			System.err.println("Error reading channel elements from node " + inputChannel.getName() + " for node " + this);
+
+			exception.printStackTrace();
+		}
+
+		return null;
+	}
+
 	protected ChannelElement readSomeone() {
 		if(readersShuffler == null) {
 			createReaderShuffler();
@@ -273,6 +390,35 @@ public abstract class Node implements Serializable, Runnable {
 		return null;
 	}
 
+	/**
+	 * Reads up to the informed number of elements from some input channel, waiting only until the first one is available.
+	 * 
+	 * @param maximum Maximum number of elements read.
+	 * 
+	 * @return The elements read, or null if every input channel reached its end.
+	 */
+	protected List<ChannelElement> readSomeoneBatch(int maximum) {
+		if(readersShuffler == null) {
+			createReaderShuffler();
+		}
+
+		List<ChannelElement> channelElements = new ArrayList<ChannelElement>(Math.min(maximum, DEFAULT_BATCH_SIZE));
+
+		try {
+			readersShuffler.readSomeone(channelElements, Math.max(maximum, 1));
+
+			return channelElements;
+		} catch (EOFException exception) {
+			return null;
+		} catch (IOException exception) {
+			System.err.println("Error reading from arbitrary channel element from node " + this);
+
+			exception.printStackTrace();
+		}
+
+		return null;
+	}
+
 	protected ChannelElement tryReadSomeone() {
 		// You need to create the read shuffler manually if you want to use this method
 
@@ -314,9 +460,73 @@ public abstract class Node implements Serializable, Runnable {
 	protected boolean write(ChannelElement channelElement, String name) {
 		OutputChannel outputChannel = getOutputChannel(name);
 
+		if(outputChannel != null) {
+			return write(channelElement, outputChannel);
+		}
+
+		System.err.println("Couldn't find output channel " + name +  " for node " + this);
+
+		return false;
+	}
+
+	/**
+	 * Writes an element to an output channel obtained beforehand with getOutputChannel(), saving the lookup by name.
+	 * 
+	 * @param channelElement The element.
+	 * @param outputChannel The output channel.
+	 * 
+	 * @return True if the element was written.
+	 */
+	protected boolean write(ChannelElement channelElement, OutputChannel outputChannel) {
+		try {
+			outputChannel.write(channelElement);
+
+			return true;
+		} catch (IOException exception) {
+			System.err.println("Error writing channel element to node " + outputChannel.getName() +  " for node " + this);
+
+			exception.printStackTrace();
+			return false;
+		}
+	}
+
+	protected boolean writeBatch(List<? extends ChannelElement> channelElements, String name) {
+		OutputChannel outputChannel = getOutputChannel(name);
+
+		if(outputChannel != null) {
+			return writeBatch(channelElements, outputChannel);
+		}
+
+		System.err.println("Couldn't find output channel " + name +  " for node " + this);
+
+		return false;
+	}
+
+	/**
+	 * Writes the informed elements, in order, to an output channel.
+	 * 
+	 * @param channelElements The elements.
+	 * @param outputChannel The output channel.
+	 * 
+	 * @return True if all the elements were written.
+	 */
+	protected boolean writeBatch(List<? extends ChannelElement> channelElements, OutputChannel outputChannel) {
+		try {
+			return outputChannel.write(channelElements);
+		} catch (IOException exception) {
+			System.err.println("Error writing channel elements to node " + outputChannel.getName() +  " for node " + this);
+
+			exception.printStackTrace();
+			return false;
+		}
+	}
+
+	private boolean writeEncoded(EncodedChannelElement encodedChannelElement, String name) {
+		OutputChannel outputChannel = getOutputChannel(name);
+
 		if(outputChannel != null) {
 			try {
-				outputChannel.write(channelElement);
+				outputChannel.writeEncoded(encodedChannelElement);
 
 				return true;
 			} catch (IOException exception) {
@@ -351,10 +561,14 @@ public abstract class Node implements Serializable, Runnable {
 	protected boolean writeEveryone(ChannelElement channelElement) {
 		Set<String> outputChannelNames = getOutputChannelNames();
 
+		// The element is encoded at most once, and the frame is shared by all the byte-oriented channels
+
+		EncodedChannelElement encodedChannelElement = EncodedChannelElement.wrap(channelElement);
+
 		boolean finalResult = true;
 
 		for(String outputChannelName: outputChannelNames) {
-			boolean immediateResult = write(channelElement, outputChannelName);
+			boolean immediateResult = writeEncoded(encodedChannelElement, outputChannelName);
 
 			if(immediateResult == false) {
 				System.err.println("Error writing to all channel elements (error on channel element " + outputChannelName + ") from node " + this);
@@ -16,21 +16,79 @@ import java.io.IOException;
 import utilities.filesystem.FileHelper;
 import utilities.filesystem.Filename;
 
+import enums.CompressionType;
+import enums.FileReaderMode;
+
 public class FileInputChannel extends InputChannel {
 	private static final long serialVersionUID = 1L;
 
 	protected Filename filename;
 
+	protected FileReaderMode readerMode;
+
+	protected CompressionType compressionType = CompressionType.NONE;
+
+	// Byte range of the file read by this channel; a negative length reads the whole file
+
+	protected long splitOffset = 0;
+	protected long splitLength = -1;
+
 	public FileInputChannel(String name, Filename filename) {
+		this(name, filename, FileReaderMode.STREAM);
+	}
+
+	public FileInputChannel(String name, Filename filename, FileReaderMode readerMode) {
 		super(name);
 
 		this.filename = filename;
+
+		this.readerMode = readerMode;
 	}
 
 	public final Filename getFileInformation() {
 		return filename;
 	}
 
+	public final FileReaderMode getReaderMode() {
+		return readerMode;
+	}
+
+	public final void setReaderMode(FileReaderMode readerMode) {
+		this.readerMode = readerMode;
+	}
+
+	public final CompressionType getCompressionType() {
+		return compressionType;
+	}
+
+	public final void setCompressionType(CompressionType compressionType) {
+		this.compressionType = compressionType;
+	}
+
+	public final long getSplitOffset() {
+		return splitOffset;
+	}
+
+	public final long getSplitLength() {
+		return splitLength;
+	}
+
+	public final boolean isSplit() {
+		return splitLength >= 0;
+	}
+
+	/**
+	 * Restricts this channel to the elements of a byte range of the file. The ranges are aligned to
+	 * sync markers when read, so ranges that cover the file read every element exactly once.
+	 * 
+	 * @param splitOffset Start of the range, in bytes.
+	 * @param splitLength Length of the range, in bytes.
+	 */
+	public final void setSplit(long splitOffset, long splitLength) {
+		this.splitOffset = splitOffset;
+		this.splitLength = splitLength;
+	}
+
 	public final long getLength(){
 		return FileHelper.length(filename);
 	}
@@ -16,11 +16,15 @@ import java.io.IOException;
 import utilities.filesystem.FileHelper;
 import utilities.filesystem.Filename;
 
+import enums.CompressionType;
+
 public class FileOutputChannel extends OutputChannel {
 	private static final long serialVersionUID = 1L;
 
 	protected Filename filename;
 
+	protected CompressionType compressionType = CompressionType.NONE;
+
 	public FileOutputChannel(String name, Filename filename) {
 		super(name);
 
@@ -31,6 +35,14 @@ public class FileOutputChannel extends OutputChannel {
 		return filename;
 	}
 
+	public final CompressionType getCompressionType() {
+		return compressionType;
+	}
+
+	public final void setCompressionType(CompressionType compressionType) {
+		this.compressionType = compressionType;
+	}
+
 	public final long getLength(){
 		return FileHelper.length(filename);
 	}
@@ -14,6 +14,8 @@ package communication.channel;
 import java.io.EOFException;
 import java.io.IOException;
 
+import java.util.List;
+
 import communication.channel.ChannelElement;
 import communication.interfaces.ChannelElementReader;
 
@@ -30,10 +32,18 @@ public abstract class InputChannel extends Channel implements ChannelElementRead
 		this.reader = channelElementReader;
 	}
 
+	public final ChannelElementReader getChannelElementReader() {
+		return reader;
+	}
+
 	public final ChannelElement read() throws EOFException, IOException {
 		return reader.read();
 	}
 
+	public final int read(List<ChannelElement> channelElements, int maximum) throws EOFException, IOException {
+		return reader.read(channelElements, maximum);
+	}
+
 	public final void close() throws IOException {
 		reader.close();
 	}
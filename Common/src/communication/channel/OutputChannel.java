@@ -13,14 +13,22 @@ package communication.channel;
 
 import java.io.IOException;
 
+import java.util.List;
+
 import communication.channel.ChannelElement;
+import communication.codecs.EncodedChannelElement;
+import communication.codecs.SerializationPolicy;
 import communication.interfaces.ChannelElementWriter;
+import communication.interfaces.EncodedChannelElementWriter;
+import communication.interfaces.FramedChannelElement;
 
 public class OutputChannel extends Channel implements ChannelElementWriter {
 	private static final long serialVersionUID = 1L;
 
 	private ChannelElementWriter writer;
 
+	private SerializationPolicy serializationPolicy;
+
 	public OutputChannel(String name) {
 		super(name);
 	}
@@ -29,10 +37,77 @@ public class OutputChannel extends Channel implements ChannelElementWriter {
 		this.writer = writer;
 	}
 
+	/**
+	 * Getter for the bounds on the state kept by the Java serialization fallback of this channel.
+	 * 
+	 * @return The bounds on the state kept by the Java serialization fallback, or null if the default bounds are used.
+	 */
+	public final SerializationPolicy getSerializationPolicy() {
+		return serializationPolicy;
+	}
+
+	public final void setSerializationPolicy(SerializationPolicy serializationPolicy) {
+		this.serializationPolicy = serializationPolicy;
+	}
+
 	public final boolean write(ChannelElement channelElement) throws IOException {
+		// Elements that were not modified since read keep their frames, or are decoded for the writers that need objects
+
+		if(channelElement instanceof FramedChannelElement) {
+			return writeEncoded(EncodedChannelElement.wrap(channelElement));
+		}
+
 		return writer.write(channelElement);
 	}
 
+	public final boolean write(List<? extends ChannelElement> channelElements) throws IOException {
+		boolean result = true;
+
+		// Runs of plain elements go to the writer as batches, while elements that still have frames keep them
+
+		int start = 0;
+
+		for(int i = 0; i < channelElements.size(); i++) {
+			ChannelElement channelElement = channelElements.get(i);
+
+			if(channelElement instanceof FramedChannelElement && ((FramedChannelElement) channelElement).getFrame() != null) {
+				if(start < i) {
+					result &= writer.write(channelElements.subList(start, i));
+				}
+
+				result &= writeEncoded(EncodedChannelElement.wrap(channelElement));
+
+				start = i + 1;
+			}
+		}
+
+		if(start == 0) {
+			return writer.write(channelElements);
+		}
+
+		if(start < channelElements.size()) {
+			result &= writer.write(channelElements.subList(start, channelElements.size()));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Writes an element that may be shared by several channels. Byte-oriented channels reuse its encoded
+	 * frame, while the others write the element itself.
+	 * 
+	 * @param encodedChannelElement The element, paired with its encoded frame.
+	 * 
+	 * @return True if the element was written.
+	 */
+	public final boolean writeEncoded(EncodedChannelElement encodedChannelElement) throws IOException {
+		if(writer instanceof EncodedChannelElementWriter) {
+			return ((EncodedChannelElementWriter) writer).writeEncoded(encodedChannelElement);
+		}
+
+		return writer.write(encodedChannelElement.getChannelElement());
+	}
+
 	public boolean flush() throws IOException {
 		return writer.flush();
 	}
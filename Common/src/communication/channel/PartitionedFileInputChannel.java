@@ -0,0 +1,61 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package communication.channel;
+
+import java.util.Comparator;
+
+import utilities.filesystem.Filename;
+
+import enums.FileReaderMode;
+
+/**
+ * File input channel that reads a single partition of a file written by partitioned output channels.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class PartitionedFileInputChannel extends FileInputChannel {
+	private static final long serialVersionUID = 1L;
+
+	protected int partition;
+
+	protected Comparator<ChannelElement> comparator;
+
+	public PartitionedFileInputChannel(String name, Filename filename, int partition) {
+		this(name, filename, partition, null);
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param name Name of the channel.
+	 * @param filename The partitioned file.
+	 * @param partition The partition read.
+	 * @param comparator Comparator that sorted the elements of the partition, or null if it is not known.
+	 */
+	public PartitionedFileInputChannel(String name, Filename filename, int partition, Comparator<ChannelElement> comparator) {
+		// Partitions are regions of a larger file, so they are always streamed
+
+		super(name, filename, FileReaderMode.STREAM);
+
+		this.partition = partition;
+
+		this.comparator = comparator;
+	}
+
+	public final int getPartition() {
+		return partition;
+	}
+
+	public final Comparator<ChannelElement> getComparator() {
+		return comparator;
+	}
+}
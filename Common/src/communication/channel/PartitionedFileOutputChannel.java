@@ -0,0 +1,75 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package communication.channel;
+
+import java.util.Comparator;
+
+import utilities.filesystem.Filename;
+
+/**
+ * File output channel that writes one partition of a file shared by all the partitioned channels of a node.
+ * Elements are sorted by the channel comparator inside each partition, and the file is written when the
+ * last channel sharing it is closed, along with an index of partition offsets.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class PartitionedFileOutputChannel extends FileOutputChannel {
+	private static final long serialVersionUID = 1L;
+
+	public static final long DEFAULT_SORT_BUFFER_SIZE = 64L * 1024L * 1024L;
+
+	protected int partition;
+	protected int numberPartitions;
+
+	protected Comparator<ChannelElement> comparator;
+
+	protected long sortBufferSize = DEFAULT_SORT_BUFFER_SIZE;
+
+	public PartitionedFileOutputChannel(String name, Filename filename, int partition, int numberPartitions, Comparator<ChannelElement> comparator) {
+		super(name, filename);
+
+		this.partition = partition;
+		this.numberPartitions = numberPartitions;
+
+		this.comparator = comparator;
+	}
+
+	public final int getPartition() {
+		return partition;
+	}
+
+	public final int getNumberPartitions() {
+		return numberPartitions;
+	}
+
+	/**
+	 * Getter for the comparator used to sort the elements of each partition. It should be serializable.
+	 * 
+	 * @return The comparator used to sort the elements of each partition.
+	 */
+	public final Comparator<ChannelElement> getComparator() {
+		return comparator;
+	}
+
+	/**
+	 * Getter for the approximate number of bytes buffered by the writer before a sorted run is spilled to disk.
+	 * 
+	 * @return The approximate number of bytes buffered before spilling.
+	 */
+	public final long getSortBufferSize() {
+		return sortBufferSize;
+	}
+
+	public final void setSortBufferSize(long sortBufferSize) {
+		this.sortBufferSize = sortBufferSize;
+	}
+}
@@ -0,0 +1,115 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.channel;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+
+import communication.interfaces.ChannelElementCodec;
+import communication.interfaces.FramedChannelElement;
+
+/**
+ * Channel element that keeps the frame it was read from, so that relay nodes can forward it without
+ * decoding it and encoding it again. Writers using the same codec send the frame as it was received.
+ * 
+ * The element is only decoded when its contents are accessed. Since the frame is decoded as a whole, the
+ * decoded element (and its actual class) is obtained with getChannelElement(); modifying the element
+ * discards the frame, so that the modification is encoded downstream.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class RawChannelElement extends ChannelElement implements FramedChannelElement {
+	private static final long serialVersionUID = 1L;
+
+	private transient byte[] frame;
+
+	private transient ChannelElementCodec codec;
+
+	private ChannelElement channelElement;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param frame Encoded frame, which is not copied and should not be modified afterwards.
+	 * @param codec Codec that encoded the frame.
+	 */
+	public RawChannelElement(byte[] frame, ChannelElementCodec codec) {
+		super(null, null);
+
+		this.frame = frame;
+
+		this.codec = codec;
+	}
+
+	/**
+	 * Obtains the frame of the element, if it was not modified since it was read.
+	 * 
+	 * @return The encoded frame, or null if the element was modified.
+	 */
+	public byte[] getFrame() {
+		return frame;
+	}
+
+	public ChannelElementCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Obtains the decoded element, decoding the frame if this is the first access.
+	 * 
+	 * @return The decoded element.
+	 */
+	public ChannelElement getChannelElement() {
+		if(channelElement == null) {
+			try {
+				channelElement = codec.decode(new DataInputStream(new ByteArrayInputStream(frame)));
+			} catch (IOException exception) {
+				throw new IllegalStateException("Error decoding channel element frame", exception);
+			}
+		}
+
+		return channelElement;
+	}
+
+	public Object getObject() {
+		return getChannelElement().getObject();
+	}
+
+	public void setObject(Object object) {
+		getChannelElement().setObject(object);
+
+		frame = null;
+	}
+
+	public String getDescription() {
+		return getChannelElement().getDescription();
+	}
+
+	public void setDescription(String description) {
+		getChannelElement().setDescription(description);
+
+		frame = null;
+	}
+
+	public String toString() {
+		return getChannelElement().toString();
+	}
+
+	// Serialized as the decoded element, since the frame is only meaningful with its codec
+
+	private Object writeReplace() throws ObjectStreamException {
+		return getChannelElement();
+	}
+}
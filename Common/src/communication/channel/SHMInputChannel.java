@@ -11,10 +11,22 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package communication.channel;
 
+import utilities.concurrent.QueueSpecification;
+
 public class SHMInputChannel extends InputChannel {
 	private static final long serialVersionUID = 1L;
 
+	private QueueSpecification queueSpecification;
+
 	public SHMInputChannel(String name) {
 		super(name);
 	}
+
+	public final QueueSpecification getQueueSpecification() {
+		return queueSpecification;
+	}
+
+	public final void setQueueSpecification(QueueSpecification queueSpecification) {
+		this.queueSpecification = queueSpecification;
+	}
 }
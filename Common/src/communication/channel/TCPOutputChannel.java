@@ -13,11 +13,15 @@ package communication.channel;
 
 import java.net.InetSocketAddress;
 
+import enums.CompressionType;
+
 public class TCPOutputChannel extends OutputChannel {
 	private static final long serialVersionUID = 1L;
 
 	private InetSocketAddress socketAddress;
 
+	private CompressionType compressionType = CompressionType.NONE;
+
 	public TCPOutputChannel(String name) {
 		super(name);
 	}
@@ -29,4 +33,12 @@ public class TCPOutputChannel extends OutputChannel {
 	public final void setSocketAddress(InetSocketAddress socketAddress) {
 		this.socketAddress = socketAddress;
 	}
+
+	public final CompressionType getCompressionType() {
+		return compressionType;
+	}
+
+	public final void setCompressionType(CompressionType compressionType) {
+		this.compressionType = compressionType;
+	}
 }
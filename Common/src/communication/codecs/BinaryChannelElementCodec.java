@@ -0,0 +1,427 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package communication.codecs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import communication.channel.ChannelElement;
+import communication.interfaces.ChannelElementCodec;
+
+import communication.streams.ContextDataInputStream;
+import communication.streams.ContextDataOutputStream;
+
+import mapreduce.communication.DoubleMRChannelElement;
+import mapreduce.communication.DoubleMRChannelElementSerializer;
+import mapreduce.communication.LazyMRChannelElement;
+import mapreduce.communication.LongMRChannelElement;
+import mapreduce.communication.LongMRChannelElementSerializer;
+import mapreduce.communication.MRChannelElement;
+import mapreduce.communication.MRChannelElementSerializer;
+
+import graphs.communication.EdgeChannelElement;
+import graphs.communication.EdgeChannelElementSerializer;
+import graphs.communication.VertexChannelElement;
+import graphs.communication.VertexChannelElementSerializer;
+
+import graphs.programs.shortestpath.SPGraphEdge;
+import graphs.programs.shortestpath.SPGraphEdgeSerializer;
+import graphs.programs.shortestpath.SPGraphVertex;
+import graphs.programs.shortestpath.SPGraphVertexSerializer;
+import graphs.programs.shortestpath.SPGraphUpdateMessage;
+import graphs.programs.shortestpath.SPGraphUpdateMessageSerializer;
+
+/**
+ * Codec that writes each value as a type tag followed by the output of the serializer registered
+ * for its exact class. Values without a registered serializer fall back to Java serialization.
+ * 
+ * When the codec writes to a channel stream (a ContextDataOutputStream), serialized values share the
+ * object stream of the channel, bounded by its SerializationPolicy; otherwise, each serialized value
+ * is written as a self-contained object stream. Frames that depend on the object stream of their channel
+ * are marked by the channel streams with TAG_CHANNEL_CONTEXT, so that they are never forwarded undecoded.
+ * 
+ * Tags below FIRST_APPLICATION_TAG are reserved for the types shipped with Hammr; applications
+ * register their own types at or above it, and must do so identically on every launcher.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class BinaryChannelElementCodec implements ChannelElementCodec {
+	public static final int TAG_NULL = 0;
+	public static final int TAG_SERIALIZED = 1;
+
+	public static final int TAG_STRING = 2;
+	public static final int TAG_LONG = 3;
+	public static final int TAG_INTEGER = 4;
+	public static final int TAG_DOUBLE = 5;
+	public static final int TAG_BOOLEAN = 6;
+
+	public static final int TAG_CHANNEL_ELEMENT = 7;
+	public static final int TAG_MR_CHANNEL_ELEMENT = 8;
+	public static final int TAG_VERTEX_CHANNEL_ELEMENT = 9;
+	public static final int TAG_EDGE_CHANNEL_ELEMENT = 10;
+
+	public static final int TAG_SP_GRAPH_VERTEX = 11;
+	public static final int TAG_SP_GRAPH_EDGE = 12;
+	public static final int TAG_SP_GRAPH_UPDATE_MESSAGE = 13;
+
+	public static final int TAG_SHARED_SERIALIZED = 14;
+	public static final int TAG_CHANNEL_CONTEXT = 15;
+
+	public static final int TAG_LONG_MR_CHANNEL_ELEMENT = 16;
+	public static final int TAG_DOUBLE_MR_CHANNEL_ELEMENT = 17;
+
+	public static final int FIRST_APPLICATION_TAG = 64;
+
+	private static final int MAXIMUM_TAG = 1024;
+
+	private static BinaryChannelElementCodec instance;
+
+	private Map<Class<?>, Registration> registrationsByType;
+
+	private volatile Registration[] registrationsByTag;
+
+	static {
+		instance = new BinaryChannelElementCodec();
+
+		instance.register(TAG_STRING, String.class, new StringSerializer());
+		instance.register(TAG_LONG, Long.class, new LongSerializer());
+		instance.register(TAG_INTEGER, Integer.class, new IntegerSerializer());
+		instance.register(TAG_DOUBLE, Double.class, new DoubleSerializer());
+		instance.register(TAG_BOOLEAN, Boolean.class, new BooleanSerializer());
+
+		instance.register(TAG_CHANNEL_ELEMENT, ChannelElement.class, new ChannelElementSerializer());
+		instance.register(TAG_MR_CHANNEL_ELEMENT, MRChannelElement.class, new MRChannelElementSerializer());
+		instance.registerSubtype(LazyMRChannelElement.class, MRChannelElement.class);
+		instance.register(TAG_LONG_MR_CHANNEL_ELEMENT, LongMRChannelElement.class, new LongMRChannelElementSerializer());
+		instance.register(TAG_DOUBLE_MR_CHANNEL_ELEMENT, DoubleMRChannelElement.class, new DoubleMRChannelElementSerializer());
+		instance.register(TAG_VERTEX_CHANNEL_ELEMENT, VertexChannelElement.class, new VertexChannelElementSerializer());
+		instance.register(TAG_EDGE_CHANNEL_ELEMENT, EdgeChannelElement.class, new EdgeChannelElementSerializer());
+
+		instance.register(TAG_SP_GRAPH_VERTEX, SPGraphVertex.class, new SPGraphVertexSerializer());
+		instance.register(TAG_SP_GRAPH_EDGE, SPGraphEdge.class, new SPGraphEdgeSerializer());
+		instance.register(TAG_SP_GRAPH_UPDATE_MESSAGE, SPGraphUpdateMessage.class, new SPGraphUpdateMessageSerializer());
+	}
+
+	/**
+	 * Returns the shared codec, with the serializers for the types shipped with Hammr already registered.
+	 * 
+	 * @return The shared codec.
+	 */
+	public static BinaryChannelElementCodec getInstance() {
+		return instance;
+	}
+
+	protected BinaryChannelElementCodec() {
+		registrationsByType = new ConcurrentHashMap<Class<?>, Registration>();
+
+		registrationsByTag = new Registration[0];
+	}
+
+	/**
+	 * Registers a serializer for the exact class informed. Subclasses are not covered by the registration.
+	 * 
+	 * @param tag Tag written before every value of that class.
+	 * @param type Class handled by the serializer.
+	 * @param serializer Serializer for the class.
+	 */
+	public synchronized void register(int tag, Class<?> type, TypeSerializer<?> serializer) {
+		if(tag <= TAG_SERIALIZED || tag == TAG_SHARED_SERIALIZED || tag == TAG_CHANNEL_CONTEXT || tag >= MAXIMUM_TAG) {
+			throw new IllegalArgumentException("Tag " + tag + " is out of the allowed range");
+		}
+
+		Registration[] current = registrationsByTag;
+
+		if(tag < current.length && current[tag] != null && current[tag].type != type) {
+			throw new IllegalArgumentException("Tag " + tag + " is already registered for " + current[tag].type.getName());
+		}
+
+		Registration registration = new Registration(tag, type, serializer);
+
+		Registration[] updated = new Registration[Math.max(current.length, tag + 1)];
+
+		System.arraycopy(current, 0, updated, 0, current.length);
+
+		updated[tag] = registration;
+
+		registrationsByType.put(type, registration);
+
+		registrationsByTag = updated;
+	}
+
+	/**
+	 * Encodes values of a subclass with the serializer registered for one of its superclasses. Values are decoded as the superclass.
+	 * 
+	 * @param subtype Class to be covered by the registration.
+	 * @param type Class already registered.
+	 */
+	public synchronized void registerSubtype(Class<?> subtype, Class<?> type) {
+		Registration registration = registrationsByType.get(type);
+
+		if(registration == null || !type.isAssignableFrom(subtype)) {
+			throw new IllegalArgumentException("Class " + type.getName() + " is not registered, or is not a superclass of " + subtype.getName());
+		}
+
+		registrationsByType.put(subtype, registration);
+	}
+
+	public void encode(ChannelElement channelElement, DataOutputStream output) throws IOException {
+		writeValue(channelElement, output);
+	}
+
+	/**
+	 * Decodes a frame into an element that is only decoded as its parts are accessed, if the element supports it.
+	 * The frame should not depend on the state of its channel (see isContextFree()).
+	 * 
+	 * @param frame Buffer containing the frame.
+	 * @param offset Offset of the frame in the buffer.
+	 * @param length Length of the frame.
+	 * 
+	 * @return The lazily decoded element, holding a copy of the frame; or null if the element should be decoded as usual.
+	 */
+	public ChannelElement decodeLazily(byte[] frame, int offset, int length) {
+		// Tags below 128 take a single byte; the layout is only known for the serializer shipped with Hammr
+
+		if(length == 0 || frame[offset] != TAG_MR_CHANNEL_ELEMENT || !(registrationsByTag[TAG_MR_CHANNEL_ELEMENT].serializer instanceof MRChannelElementSerializer)) {
+			return null;
+		}
+
+		return new LazyMRChannelElement<Object,Object>(Arrays.copyOfRange(frame, offset, offset + length), 1, this);
+	}
+
+	public ChannelElement decode(DataInputStream input) throws IOException {
+		Object value = readValue(input);
+
+		if(value != null && !(value instanceof ChannelElement)) {
+			throw new StreamCorruptedException("Expected a channel element, found " + value.getClass().getName());
+		}
+
+		return (ChannelElement) value;
+	}
+
+	/**
+	 * Checks if an encoded frame can be decoded (or forwarded) without the state of the channel it was read from.
+	 * 
+	 * @param codec Codec that encoded the frame.
+	 * @param frame Buffer containing the frame.
+	 * @param offset Offset of the frame in the buffer.
+	 * @param length Length of the frame.
+	 * 
+	 * @return True if the frame does not depend on the state of its channel.
+	 */
+	public static boolean isContextFree(ChannelElementCodec codec, byte[] frame, int offset, int length) {
+		if(!(codec instanceof BinaryChannelElementCodec)) {
+			return true;
+		}
+
+		return length == 0 || frame[offset] != TAG_CHANNEL_CONTEXT;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void writeValue(Object value, DataOutput output) throws IOException {
+		if(value == null) {
+			CodecHelper.writeVarInt(output, TAG_NULL);
+
+			return;
+		}
+
+		Registration registration = registrationsByType.get(value.getClass());
+
+		if(registration == null) {
+			if(output instanceof ContextDataOutputStream) {
+				SerializedValueWriter serializedValueWriter = ((ContextDataOutputStream) output).getSerializedValueWriter();
+
+				if(serializedValueWriter != null) {
+					CodecHelper.writeVarInt(output, TAG_SHARED_SERIALIZED);
+
+					serializedValueWriter.write(value, output);
+
+					return;
+				}
+			}
+
+			CodecHelper.writeVarInt(output, TAG_SERIALIZED);
+
+			writeSerialized(value, output);
+
+			return;
+		}
+
+		CodecHelper.writeVarInt(output, registration.tag);
+
+		((TypeSerializer<Object>) registration.serializer).write(value, output, this);
+	}
+
+	public Object readValue(DataInput input) throws IOException {
+		int tag = CodecHelper.readVarInt(input);
+
+		if(tag == TAG_NULL) {
+			return null;
+		}
+
+		if(tag == TAG_SERIALIZED) {
+			return readSerialized(input);
+		}
+
+		if(tag == TAG_CHANNEL_CONTEXT) {
+			return readValue(input);
+		}
+
+		if(tag == TAG_SHARED_SERIALIZED) {
+			SerializedValueReader serializedValueReader = null;
+
+			if(input instanceof ContextDataInputStream) {
+				serializedValueReader = ((ContextDataInputStream) input).getSerializedValueReader();
+			}
+
+			if(serializedValueReader == null) {
+				throw new StreamCorruptedException("Shared serialized value found outside a channel stream");
+			}
+
+			return serializedValueReader.read(input);
+		}
+
+		Registration[] current = registrationsByTag;
+
+		if(tag >= current.length || current[tag] == null) {
+			throw new StreamCorruptedException("No serializer registered for tag " + tag);
+		}
+
+		return current[tag].serializer.read(input, this);
+	}
+
+	protected void writeSerialized(Object value, DataOutput output) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		ObjectOutputStream objectOutputStream = new ObjectOutputStream(buffer);
+
+		objectOutputStream.writeObject(value);
+		objectOutputStream.close();
+
+		CodecHelper.writeVarInt(output, buffer.size());
+
+		output.write(buffer.toByteArray());
+	}
+
+	protected Object readSerialized(DataInput input) throws IOException {
+		byte[] bytes = new byte[CodecHelper.readVarInt(input)];
+
+		input.readFully(bytes);
+
+		ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes));
+
+		try {
+			return objectInputStream.readObject();
+		} catch (ClassNotFoundException exception) {
+			System.err.println("Error decoding serialized value: unknown class");
+
+			exception.printStackTrace();
+
+			return null;
+		}
+	}
+
+	private static class Registration {
+		private final int tag;
+
+		private final Class<?> type;
+
+		private final TypeSerializer<?> serializer;
+
+		public Registration(int tag, Class<?> type, TypeSerializer<?> serializer) {
+			this.tag = tag;
+
+			this.type = type;
+
+			this.serializer = serializer;
+		}
+	}
+
+	private static class StringSerializer implements TypeSerializer<String> {
+		public void write(String object, DataOutput output, BinaryChannelElementCodec codec) throws IOException {
+			CodecHelper.writeString(output, object);
+		}
+
+		public String read(DataInput input, BinaryChannelElementCodec codec) throws IOException {
+			return CodecHelper.readString(input);
+		}
+	}
+
+	private static class LongSerializer implements TypeSerializer<Long> {
+		public void write(Long object, DataOutput output, BinaryChannelElementCodec codec) throws IOException {
+			CodecHelper.writeSignedVarLong(output, object);
+		}
+
+		public Long read(DataInput input, BinaryChannelElementCodec codec) throws IOException {
+			return CodecHelper.readSignedVarLong(input);
+		}
+	}
+
+	private static class IntegerSerializer implements TypeSerializer<Integer> {
+		public void write(Integer object, DataOutput output, BinaryChannelElementCodec codec) throws IOException {
+			CodecHelper.writeSignedVarLong(output, object);
+		}
+
+		public Integer read(DataInput input, BinaryChannelElementCodec codec) throws IOException {
+			return (int) CodecHelper.readSignedVarLong(input);
+		}
+	}
+
+	private static class DoubleSerializer implements TypeSerializer<Double> {
+		public void write(Double object, DataOutput output, BinaryChannelElementCodec codec) throws IOException {
+			output.writeDouble(object);
+		}
+
+		public Double read(DataInput input, BinaryChannelElementCodec codec) throws IOException {
+			return input.readDouble();
+		}
+	}
+
+	private static class BooleanSerializer implements TypeSerializer<Boolean> {
+		public void write(Boolean object, DataOutput output, BinaryChannelElementCodec codec) throws IOException {
+			output.writeBoolean(object);
+		}
+
+		public Boolean read(DataInput input, BinaryChannelElementCodec codec) throws IOException {
+			return input.readBoolean();
+		}
+	}
+
+	private static class ChannelElementSerializer implements TypeSerializer<ChannelElement> {
+		public void write(ChannelElement object, DataOutput output, BinaryChannelElementCodec codec) throws IOException {
+			codec.writeValue(object.getObject(), output);
+
+			CodecHelper.writeNullableString(output, object.getDescription());
+		}
+
+		public ChannelElement read(DataInput input, BinaryChannelElementCodec codec) throws IOException {
+			Object object = codec.readValue(input);
+
+			return new ChannelElement(object, CodecHelper.readNullableString(input));
+		}
+	}
+}
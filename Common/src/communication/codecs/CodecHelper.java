@@ -0,0 +1,160 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package communication.codecs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+import java.nio.charset.Charset;
+
+public class CodecHelper {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public static void writeVarInt(DataOutput output, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			output.writeByte((value & 0x7F) | 0x80);
+
+			value >>>= 7;
+		}
+
+		output.writeByte(value);
+	}
+
+	public static int getVarIntSize(int value) {
+		int size = 1;
+
+		while((value & ~0x7F) != 0) {
+			size++;
+
+			value >>>= 7;
+		}
+
+		return size;
+	}
+
+	public static int readVarInt(DataInput input) throws IOException {
+		return readVarInt(input, input.readUnsignedByte());
+	}
+
+	public static int readVarInt(DataInput input, int firstByte) throws IOException {
+		int result = firstByte & 0x7F;
+
+		int current = firstByte;
+
+		for(int shift = 7; (current & 0x80) != 0; shift += 7) {
+			if(shift > 28) {
+				throw new StreamCorruptedException("Malformed variable-length integer");
+			}
+
+			current = input.readUnsignedByte();
+
+			result |= (current & 0x7F) << shift;
+		}
+
+		return result;
+	}
+
+	public static void writeVarLong(DataOutput output, long value) throws IOException {
+		while((value & ~0x7FL) != 0L) {
+			output.writeByte(((int) value & 0x7F) | 0x80);
+
+			value >>>= 7;
+		}
+
+		output.writeByte((int) value);
+	}
+
+	public static long readVarLong(DataInput input) throws IOException {
+		long result = 0L;
+
+		int current;
+
+		int shift = 0;
+
+		do {
+			if(shift > 63) {
+				throw new StreamCorruptedException("Malformed variable-length long");
+			}
+
+			current = input.readUnsignedByte();
+
+			result |= (long) (current & 0x7F) << shift;
+
+			shift += 7;
+		} while((current & 0x80) != 0);
+
+		return result;
+	}
+
+	// Zig-zag encoding keeps small negative numbers small
+
+	public static void writeSignedVarLong(DataOutput output, long value) throws IOException {
+		writeVarLong(output, (value << 1) ^ (value >> 63));
+	}
+
+	public static long readSignedVarLong(DataInput input) throws IOException {
+		long value = readVarLong(input);
+
+		return (value >>> 1) ^ -(value & 1L);
+	}
+
+	public static void writeString(DataOutput output, String string) throws IOException {
+		byte[] bytes = string.getBytes(UTF8);
+
+		writeVarInt(output, bytes.length);
+
+		output.write(bytes);
+	}
+
+	public static String readString(DataInput input) throws IOException {
+		int length = readVarInt(input);
+
+		byte[] bytes = new byte[length];
+
+		input.readFully(bytes);
+
+		return new String(bytes, UTF8);
+	}
+
+	// Nullable strings shift the length by one, so that zero means null
+
+	public static void writeNullableString(DataOutput output, String string) throws IOException {
+		if(string == null) {
+			writeVarInt(output, 0);
+
+			return;
+		}
+
+		byte[] bytes = string.getBytes(UTF8);
+
+		writeVarInt(output, bytes.length + 1);
+
+		output.write(bytes);
+	}
+
+	public static String readNullableString(DataInput input) throws IOException {
+		int length = readVarInt(input);
+
+		if(length == 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length - 1];
+
+		input.readFully(bytes);
+
+		return new String(bytes, UTF8);
+	}
+}
@@ -0,0 +1,116 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.codecs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import communication.channel.ChannelElement;
+import communication.interfaces.ChannelElementCodec;
+import communication.interfaces.FramedChannelElement;
+
+/**
+ * Channel element paired with its encoded frame, so that an element written to many channels is encoded only once.
+ * 
+ * The frame is encoded on the first request, for the codec of the first byte-oriented writer, and is never modified
+ * afterwards; writers using other codecs encode the element themselves. Frames are encoded without the state of any
+ * particular channel, so values without a registered serializer are written as self-contained object streams.
+ * 
+ * Elements that still carry the frame they were read from (FramedChannelElement) reuse it as it is.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class EncodedChannelElement {
+	private ChannelElement channelElement;
+
+	private FramedChannelElement framedChannelElement;
+
+	private ChannelElementCodec codec;
+
+	private byte[] frame;
+
+	/**
+	 * Pairs an element with its frame, reusing the frame of elements that were not decoded.
+	 * 
+	 * @param channelElement The element.
+	 * 
+	 * @return The element paired with its frame.
+	 */
+	public static EncodedChannelElement wrap(ChannelElement channelElement) {
+		if(channelElement instanceof FramedChannelElement) {
+			FramedChannelElement framedChannelElement = (FramedChannelElement) channelElement;
+
+			if(framedChannelElement.getFrame() != null) {
+				return new EncodedChannelElement(framedChannelElement);
+			}
+
+			return new EncodedChannelElement(framedChannelElement.getChannelElement());
+		}
+
+		return new EncodedChannelElement(channelElement);
+	}
+
+	public EncodedChannelElement(ChannelElement channelElement) {
+		this.channelElement = channelElement;
+	}
+
+	private EncodedChannelElement(FramedChannelElement framedChannelElement) {
+		this.framedChannelElement = framedChannelElement;
+
+		this.frame = framedChannelElement.getFrame();
+		this.codec = framedChannelElement.getCodec();
+	}
+
+	/**
+	 * Obtains the element, decoding it if it was only available as a frame.
+	 * 
+	 * @return The element.
+	 */
+	public ChannelElement getChannelElement() {
+		if(channelElement == null) {
+			channelElement = framedChannelElement.getChannelElement();
+		}
+
+		return channelElement;
+	}
+
+	/**
+	 * Obtains the frame of the element for the informed codec, encoding it if this is the first request.
+	 * 
+	 * @param codec Codec of the writer requesting the frame.
+	 * 
+	 * @return The encoded frame, which should not be modified; or null if the frame was encoded with another codec.
+	 * 
+	 * @throws IOException If the element cannot be encoded.
+	 */
+	public byte[] getFrame(ChannelElementCodec codec) throws IOException {
+		if(frame == null) {
+			ByteArrayOutputStream frameBuffer = new ByteArrayOutputStream();
+			DataOutputStream frameOutputStream = new DataOutputStream(frameBuffer);
+
+			codec.encode(channelElement, frameOutputStream);
+
+			frameOutputStream.flush();
+
+			this.frame = frameBuffer.toByteArray();
+			this.codec = codec;
+		}
+
+		if(this.codec != codec) {
+			return null;
+		}
+
+		return frame;
+	}
+}
@@ -0,0 +1,52 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package communication.codecs;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import java.io.IOException;
+
+import communication.channel.ChannelElement;
+import communication.interfaces.ChannelElementCodec;
+
+/**
+ * Codec that relies solely on Java serialization. Every element carries its own class descriptors,
+ * so this codec is only meant for element types that cannot be handled by the binary codec.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class SerializationChannelElementCodec implements ChannelElementCodec {
+	public void encode(ChannelElement channelElement, DataOutputStream output) throws IOException {
+		ObjectOutputStream objectOutputStream = new ObjectOutputStream(output);
+
+		objectOutputStream.writeObject(channelElement);
+		objectOutputStream.flush();
+	}
+
+	public ChannelElement decode(DataInputStream input) throws IOException {
+		ObjectInputStream objectInputStream = new ObjectInputStream(input);
+
+		try {
+			return (ChannelElement) objectInputStream.readObject();
+		} catch (ClassNotFoundException exception) {
+			System.err.println("Error reading from channel: unknown class");
+
+			exception.printStackTrace();
+
+			return null;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.codecs;
+
+import java.io.Serializable;
+
+/**
+ * Bounds on the state kept by the Java serialization fallback of a channel.
+ * 
+ * Values without a registered serializer share one object stream per channel, so that class descriptors and
+ * repeated objects are written only once. The object stream remembers every object written since its last
+ * reset, and is reset after a number of values or a number of bytes, whichever is reached first.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class SerializationPolicy implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public static final int DEFAULT_RESET_VALUES = 1024;
+	public static final int DEFAULT_RESET_BYTES = 1048576;
+
+	private static SerializationPolicy defaultPolicy;
+
+	private int resetValues;
+	private int resetBytes;
+
+	static {
+		int resetValues = DEFAULT_RESET_VALUES;
+		int resetBytes = DEFAULT_RESET_BYTES;
+
+		String resetValuesProperty = System.getProperty("hammr.communication.serialization_reset_values");
+		String resetBytesProperty = System.getProperty("hammr.communication.serialization_reset_bytes");
+
+		if(resetValuesProperty != null) {
+			resetValues = Math.max(1, Integer.parseInt(resetValuesProperty));
+		}
+
+		if(resetBytesProperty != null) {
+			resetBytes = Math.max(1, Integer.parseInt(resetBytesProperty));
+		}
+
+		defaultPolicy = new SerializationPolicy(resetValues, resetBytes);
+	}
+
+	/**
+	 * Returns the policy used by channels without an explicit one, configurable through the properties
+	 * hammr.communication.serialization_reset_values and hammr.communication.serialization_reset_bytes.
+	 * 
+	 * @return The default policy.
+	 */
+	public static SerializationPolicy getDefault() {
+		return defaultPolicy;
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param resetValues Number of serialized values after which the object stream is reset.
+	 * @param resetBytes Number of serialized bytes after which the object stream is reset.
+	 */
+	public SerializationPolicy(int resetValues, int resetBytes) {
+		if(resetValues <= 0 || resetBytes <= 0) {
+			throw new IllegalArgumentException("Serialization reset bounds should be positive");
+		}
+
+		this.resetValues = resetValues;
+		this.resetBytes = resetBytes;
+	}
+
+	public int getResetValues() {
+		return resetValues;
+	}
+
+	public int getResetBytes() {
+		return resetBytes;
+	}
+
+	public String toString() {
+		return "reset every " + resetValues + " values or " + resetBytes + " bytes";
+	}
+}
@@ -0,0 +1,71 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.codecs;
+
+import java.io.Serializable;
+
+/**
+ * Counters of the Java serialization fallback of a channel.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class SerializationStatistics implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private long values;
+	private long bytes;
+
+	private long resets;
+
+	private int handles;
+	private int maximumHandles;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param values Number of values serialized.
+	 * @param bytes Number of bytes serialized.
+	 * @param resets Number of times the object stream was reset.
+	 * @param handles Number of objects in the handle table of the object stream.
+	 * @param maximumHandles Largest number of objects held in the handle table of the object stream.
+	 */
+	public SerializationStatistics(long values, long bytes, long resets, int handles, int maximumHandles) {
+		this.values = values;
+		this.bytes = bytes;
+
+		this.resets = resets;
+
+		this.handles = handles;
+		this.maximumHandles = maximumHandles;
+	}
+
+	public long getValues() {
+		return values;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public long getResets() {
+		return resets;
+	}
+
+	public int getHandles() {
+		return handles;
+	}
+
+	public int getMaximumHandles() {
+		return maximumHandles;
+	}
+}
@@ -0,0 +1,82 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.codecs;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+
+import communication.streams.FrameInputStream;
+
+/**
+ * Reads the values written by a SerializedValueWriter, in the same order.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class SerializedValueReader {
+	private byte[] chunk;
+
+	private FrameInputStream chunkInputStream;
+
+	private ObjectInputStream objectInputStream;
+
+	public SerializedValueReader() {
+		this.chunk = new byte[256];
+
+		this.chunkInputStream = new FrameInputStream();
+	}
+
+	/**
+	 * Starts reading a new object stream, matching SerializedValueWriter.restart().
+	 */
+	public void restart() {
+		objectInputStream = null;
+	}
+
+	public Object read(DataInput input) throws IOException {
+		int length = CodecHelper.readVarInt(input);
+
+		if(length > chunk.length) {
+			chunk = new byte[Math.max(length, chunk.length * 2)];
+		}
+
+		input.readFully(chunk, 0, length);
+
+		chunkInputStream.setFrame(chunk, length);
+
+		// The first chunk carries the header of the object stream
+
+		if(objectInputStream == null) {
+			objectInputStream = new ObjectInputStream(chunkInputStream);
+		}
+
+		Object result;
+
+		try {
+			result = objectInputStream.readObject();
+		} catch (ClassNotFoundException exception) {
+			System.err.println("Error decoding serialized value: unknown class");
+
+			exception.printStackTrace();
+
+			result = null;
+		}
+
+		if(chunkInputStream.available() != 0) {
+			throw new StreamCorruptedException("Serialized value not fully consumed by the object stream");
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,152 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.codecs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Writes values through an object stream shared by all the values of a channel, resetting it according
+ * to a serialization policy.
+ * 
+ * Each value is written as a variable-length integer with the size of its chunk of the object stream, followed
+ * by the chunk. The chunks only make sense in order, and should be read by a single SerializedValueReader.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class SerializedValueWriter {
+	private SerializationPolicy serializationPolicy;
+
+	private ChunkOutputStream chunk;
+
+	private ObjectOutputStream objectOutputStream;
+
+	private int valuesSinceReset;
+	private long bytesSinceReset;
+
+	private long values;
+	private long bytes;
+
+	private long resets;
+
+	private int handles;
+	private int maximumHandles;
+
+	public SerializedValueWriter(SerializationPolicy serializationPolicy) {
+		this.serializationPolicy = serializationPolicy;
+
+		this.chunk = new ChunkOutputStream();
+	}
+
+	public SerializationPolicy getSerializationPolicy() {
+		return serializationPolicy;
+	}
+
+	/**
+	 * Setter for the serialization policy. The new bounds are checked on the next value written.
+	 * 
+	 * @param serializationPolicy The new serialization policy.
+	 */
+	public void setSerializationPolicy(SerializationPolicy serializationPolicy) {
+		this.serializationPolicy = serializationPolicy;
+	}
+
+	public void write(Object value, DataOutput output) throws IOException {
+		if(objectOutputStream == null) {
+			objectOutputStream = new HandleCountingObjectOutputStream(chunk);
+		}
+
+		objectOutputStream.writeObject(value);
+		objectOutputStream.flush();
+
+		int length = chunk.size();
+
+		CodecHelper.writeVarInt(output, length);
+
+		output.write(chunk.getBuffer(), 0, length);
+
+		chunk.reset();
+
+		values++;
+		bytes += length;
+
+		valuesSinceReset++;
+		bytesSinceReset += length;
+
+		maximumHandles = Math.max(maximumHandles, handles);
+
+		if(valuesSinceReset >= serializationPolicy.getResetValues() || bytesSinceReset >= serializationPolicy.getResetBytes()) {
+			// The reset marker is sent at the beginning of the next chunk
+			objectOutputStream.reset();
+
+			valuesSinceReset = 0;
+			bytesSinceReset = 0;
+
+			handles = 0;
+
+			resets++;
+		}
+	}
+
+	/**
+	 * Starts a new object stream for the following values, so that they can be read without the previous ones.
+	 */
+	public void restart() {
+		objectOutputStream = null;
+
+		// Drops the reset marker pending from the previous object stream, which the new one does not expect
+
+		chunk.reset();
+
+		valuesSinceReset = 0;
+		bytesSinceReset = 0;
+
+		handles = 0;
+	}
+
+	public long getValueCount() {
+		return values;
+	}
+
+	public SerializationStatistics getSerializationStatistics() {
+		return new SerializationStatistics(values, bytes, resets, handles, maximumHandles);
+	}
+
+	/**
+	 * Object output stream that counts the objects added to its handle table.
+	 */
+	private class HandleCountingObjectOutputStream extends ObjectOutputStream {
+		public HandleCountingObjectOutputStream(OutputStream outputStream) throws IOException {
+			super(outputStream);
+
+			enableReplaceObject(true);
+		}
+
+		// Only called for objects not in the handle table yet, which are added to it once written
+
+		protected Object replaceObject(Object object) throws IOException {
+			handles++;
+
+			return object;
+		}
+	}
+
+	private static class ChunkOutputStream extends ByteArrayOutputStream {
+		public byte[] getBuffer() {
+			return buf;
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.connections;
+
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import communication.codecs.CodecHelper;
+import communication.interfaces.ChannelElementCodec;
+
+import communication.streams.ChannelElementOutputStream;
+
+import enums.CompressionType;
+
+/**
+ * Sending side of a persistent connection to a remote launcher, shared by many streams.
+ * 
+ * Writes from different streams are serialized on the connection, one record at a time, through a fair lock,
+ * so that streams sharing the connection interleave their batches in arrival order. A daemon thread reads the
+ * credits granted by the remote launcher and hands them to the corresponding streams.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class TCPConnection {
+	private static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	private InetSocketAddress socketAddress;
+
+	private Socket socket;
+
+	private DataOutputStream outputStream;
+	private DataInputStream inputStream;
+
+	private Lock outputLock;
+
+	private Map<Integer, TCPStream> streams;
+
+	private AtomicInteger nextStream;
+
+	private volatile boolean broken;
+
+	public TCPConnection(InetSocketAddress socketAddress) throws IOException {
+		this.socketAddress = socketAddress;
+
+		this.socket = new Socket(socketAddress.getAddress(), socketAddress.getPort());
+
+		this.socket.setTcpNoDelay(true);
+
+		this.outputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), DEFAULT_BUFFER_SIZE));
+		this.inputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+		this.outputLock = new ReentrantLock(true);
+
+		this.streams = new ConcurrentHashMap<Integer, TCPStream>();
+
+		this.nextStream = new AtomicInteger(0);
+
+		outputStream.writeInt(ChannelElementOutputStream.STREAM_MAGIC);
+		outputStream.writeByte(ChannelElementOutputStream.STREAM_VERSION);
+
+		CreditReader creditReader = new CreditReader();
+
+		creditReader.start();
+	}
+
+	public InetSocketAddress getSocketAddress() {
+		return socketAddress;
+	}
+
+	public boolean isBroken() {
+		return broken;
+	}
+
+	/**
+	 * Opens a new stream on this connection.
+	 * 
+	 * @param target Identifier of the target multiplexer.
+	 * @param origin Name of the origin, as known by the target multiplexer.
+	 * @param codec Codec used to encode the elements.
+	 * @param compressionType Compression applied to the batches of the stream.
+	 * 
+	 * @return The opened stream.
+	 * 
+	 * @throws IOException If the stream cannot be announced to the remote launcher.
+	 */
+	public TCPStream openStream(String target, String origin, ChannelElementCodec codec, CompressionType compressionType) throws IOException {
+		int identifier = nextStream.incrementAndGet();
+
+		TCPStream stream = new TCPStream(this, identifier, codec, compressionType);
+
+		streams.put(identifier, stream);
+
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		DataOutputStream recordOutputStream = new DataOutputStream(record);
+
+		recordOutputStream.writeByte(TCPConnectionManager.MESSAGE_OPEN);
+		CodecHelper.writeVarInt(recordOutputStream, identifier);
+		CodecHelper.writeString(recordOutputStream, target);
+		CodecHelper.writeString(recordOutputStream, origin);
+
+		recordOutputStream.flush();
+
+		send(record);
+
+		return stream;
+	}
+
+	/**
+	 * Sends a record to the remote launcher. The body should already contain the message type and the stream identifier.
+	 * 
+	 * @param record Body of the record.
+	 * 
+	 * @throws IOException If the connection is broken.
+	 */
+	public void send(ByteArrayOutputStream record) throws IOException {
+		outputLock.lock();
+
+		try {
+			CodecHelper.writeVarInt(outputStream, record.size());
+
+			record.writeTo(outputStream);
+
+			outputStream.flush();
+		} catch (IOException exception) {
+			broken = true;
+
+			throw exception;
+		} finally {
+			outputLock.unlock();
+		}
+	}
+
+	/**
+	 * Removes a stream after it is closed.
+	 * 
+	 * @param stream The closed stream.
+	 */
+	public void release(TCPStream stream) {
+		streams.remove(stream.getIdentifier());
+	}
+
+	private class CreditReader extends Thread {
+		public CreditReader() {
+			super("TCPConnection-" + socketAddress);
+
+			setDaemon(true);
+		}
+
+		public void run() {
+			try {
+				while(true) {
+					int length = CodecHelper.readVarInt(inputStream);
+
+					int type = inputStream.readUnsignedByte();
+					int identifier = CodecHelper.readVarInt(inputStream);
+
+					if(type != TCPConnectionManager.MESSAGE_CREDIT) {
+						System.err.println("Unexpected message " + type + " received from " + socketAddress);
+
+						inputStream.skipBytes(length - 1 - CodecHelper.getVarIntSize(identifier));
+						continue;
+					}
+
+					int credits = CodecHelper.readVarInt(inputStream);
+					int creditBytes = CodecHelper.readVarInt(inputStream);
+
+					TCPStream stream = streams.get(identifier);
+
+					if(stream != null) {
+						stream.grant(credits, creditBytes);
+					}
+				}
+			} catch (EOFException exception) {
+				// Remote launcher closed the connection
+			} catch (IOException exception) {
+				System.err.println("Error receiving credits from " + socketAddress + " (I/O error)");
+
+				exception.printStackTrace();
+			}
+			finally {
+				broken = true;
+
+				for(TCPStream stream: streams.values()) {
+					stream.abort();
+				}
+			}
+		}
+	}
+}
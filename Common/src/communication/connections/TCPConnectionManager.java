@@ -0,0 +1,233 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.connections;
+
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import java.nio.channels.ServerSocketChannel;
+
+import java.io.IOException;
+
+import communication.interfaces.ChannelElementCodec;
+
+import communication.readers.TCPChannelElementMultiplexer;
+import communication.readers.TCPEventLoop;
+
+import enums.CompressionType;
+
+/**
+ * Manages the TCP connections of a launcher. All the logical TCP edges between two launchers are
+ * multiplexed over a small number of persistent connections, instead of one socket per edge.
+ * 
+ * On the receiving side, a single server channel per launcher accepts connections from other launchers,
+ * and the TCP multiplexers are registered here under an identifier. On the sending side, connections are
+ * opened on demand to each remote launcher and shared by all the streams directed to it.
+ * 
+ * Every message on a connection is a length-prefixed record, whose body starts with the message type
+ * and the stream identifier. Streams are opened with the target multiplexer and the origin name, carry
+ * batches of encoded channel elements (optionally compressed), and are closed explicitly.
+ * 
+ * Flow control is explicit and per stream: senders start without credits, the receiver grants a window
+ * (in elements and in bytes) when the stream is opened, and returns credits as its multiplexer accepts
+ * elements. A sender never has more than the granted window in flight, so a skewed or slow target only
+ * throttles its own streams.
+ * 
+ * The number of connections per remote launcher is given by the property
+ * hammr.communication.connections_per_launcher (default: 1). The default stream windows are given by
+ * hammr.communication.stream_window (default: 1024 elements) and hammr.communication.stream_window_bytes
+ * (default: 1MB), and can be changed per multiplexer.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class TCPConnectionManager {
+	public static final int MESSAGE_OPEN = 1;
+	public static final int MESSAGE_DATA = 2;
+	public static final int MESSAGE_CLOSE = 3;
+	public static final int MESSAGE_CREDIT = 4;
+
+	// Credits that a receiver grants to each stream, in elements and in bytes
+	public static final int DEFAULT_STREAM_WINDOW = 1024;
+	public static final int DEFAULT_STREAM_WINDOW_BYTES = 1048576;
+
+	// Size, in bytes, above which a stream sends its pending batch
+	public static final int DEFAULT_BATCH_SIZE = 32768;
+
+	private static final int DEFAULT_CONNECTIONS_PER_LAUNCHER = 1;
+
+	private static TCPConnectionManager instance;
+
+	private Map<String, TCPChannelElementMultiplexer> multiplexers;
+
+	private Map<InetSocketAddress, TCPConnection[]> connections;
+
+	private AtomicInteger nextConnection;
+
+	private int connectionsPerLauncher;
+
+	private int streamWindow;
+	private int streamWindowBytes;
+
+	private ServerSocketChannel serverSocketChannel;
+
+	static {
+		instance = new TCPConnectionManager();
+	}
+
+	public static TCPConnectionManager getInstance() {
+		return instance;
+	}
+
+	private TCPConnectionManager() {
+		this.multiplexers = new ConcurrentHashMap<String, TCPChannelElementMultiplexer>();
+
+		this.connections = new ConcurrentHashMap<InetSocketAddress, TCPConnection[]>();
+
+		this.nextConnection = new AtomicInteger(0);
+
+		this.connectionsPerLauncher = DEFAULT_CONNECTIONS_PER_LAUNCHER;
+
+		String connectionsPerLauncherProperty = System.getProperty("hammr.communication.connections_per_launcher");
+
+		if(connectionsPerLauncherProperty != null) {
+			this.connectionsPerLauncher = Math.max(1, Integer.parseInt(connectionsPerLauncherProperty));
+		}
+
+		this.streamWindow = DEFAULT_STREAM_WINDOW;
+		this.streamWindowBytes = DEFAULT_STREAM_WINDOW_BYTES;
+
+		String streamWindowProperty = System.getProperty("hammr.communication.stream_window");
+		String streamWindowBytesProperty = System.getProperty("hammr.communication.stream_window_bytes");
+
+		if(streamWindowProperty != null) {
+			this.streamWindow = Math.max(1, Integer.parseInt(streamWindowProperty));
+		}
+
+		if(streamWindowBytesProperty != null) {
+			this.streamWindowBytes = Math.max(1, Integer.parseInt(streamWindowBytesProperty));
+		}
+	}
+
+	public int getStreamWindow() {
+		return streamWindow;
+	}
+
+	public int getStreamWindowBytes() {
+		return streamWindowBytes;
+	}
+
+	/**
+	 * Obtains the address where this launcher accepts TCP connections, starting the server channel if needed.
+	 * 
+	 * @return The address where this launcher accepts TCP connections.
+	 * 
+	 * @throws IOException If the server channel cannot be created.
+	 */
+	public synchronized InetSocketAddress getAddress() throws IOException {
+		if(serverSocketChannel == null) {
+			serverSocketChannel = ServerSocketChannel.open();
+
+			serverSocketChannel.socket().bind(new InetSocketAddress(0));
+
+			TCPEventLoop.getEventLoop().register(serverSocketChannel);
+		}
+
+		return new InetSocketAddress(InetAddress.getLocalHost(), serverSocketChannel.socket().getLocalPort());
+	}
+
+	/**
+	 * Registers a multiplexer, so that remote streams can target it.
+	 * 
+	 * @param identifier Identifier of the multiplexer, unique in the launcher.
+	 * @param multiplexer The multiplexer.
+	 */
+	public void registerMultiplexer(String identifier, TCPChannelElementMultiplexer multiplexer) {
+		multiplexers.put(identifier, multiplexer);
+	}
+
+	/**
+	 * Unregisters a multiplexer, after all its origins are closed.
+	 * 
+	 * @param identifier Identifier of the multiplexer.
+	 */
+	public void unregisterMultiplexer(String identifier) {
+		multiplexers.remove(identifier);
+	}
+
+	/**
+	 * Obtains a registered multiplexer.
+	 * 
+	 * @param identifier Identifier of the multiplexer.
+	 * 
+	 * @return The multiplexer, or null if none is registered under the informed identifier.
+	 */
+	public TCPChannelElementMultiplexer getMultiplexer(String identifier) {
+		return multiplexers.get(identifier);
+	}
+
+	/**
+	 * Opens a stream to a multiplexer in a remote launcher, over one of the connections shared with that launcher.
+	 * 
+	 * @param socketAddress Address of the remote launcher.
+	 * @param target Identifier of the target multiplexer.
+	 * @param origin Name of the origin, as known by the target multiplexer.
+	 * @param codec Codec used to encode the elements.
+	 * @param compressionType Compression applied to the batches of the stream.
+	 * 
+	 * @return The opened stream.
+	 * 
+	 * @throws IOException If the connection to the remote launcher cannot be established.
+	 */
+	public TCPStream openStream(InetSocketAddress socketAddress, String target, String origin, ChannelElementCodec codec, CompressionType compressionType) throws IOException {
+		TCPConnection connection = obtainConnection(socketAddress);
+
+		return connection.openStream(target, origin, codec, compressionType);
+	}
+
+	private TCPConnection obtainConnection(InetSocketAddress socketAddress) throws IOException {
+		TCPConnection[] launcherConnections = connections.get(socketAddress);
+
+		if(launcherConnections == null) {
+			synchronized(connections) {
+				launcherConnections = connections.get(socketAddress);
+
+				if(launcherConnections == null) {
+					launcherConnections = new TCPConnection[connectionsPerLauncher];
+
+					connections.put(socketAddress, launcherConnections);
+				}
+			}
+		}
+
+		int index = (nextConnection.getAndIncrement() & Integer.MAX_VALUE) % launcherConnections.length;
+
+		synchronized(launcherConnections) {
+			TCPConnection connection = launcherConnections[index];
+
+			// Connections that failed are replaced, so that later streams can reach the launcher again
+			if(connection == null || connection.isBroken()) {
+				connection = new TCPConnection(socketAddress);
+
+				launcherConnections[index] = connection;
+			}
+
+			return connection;
+		}
+	}
+}
@@ -0,0 +1,379 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.connections;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import communication.channel.ChannelElement;
+
+import communication.codecs.BinaryChannelElementCodec;
+import communication.codecs.CodecHelper;
+import communication.codecs.SerializationPolicy;
+import communication.codecs.SerializationStatistics;
+import communication.codecs.SerializedValueWriter;
+import communication.interfaces.ChannelElementCodec;
+
+import communication.streams.ContextDataOutputStream;
+
+import utilities.compression.BlockCompressor;
+import utilities.compression.CompressionHelper;
+
+import enums.CompressionType;
+
+/**
+ * Sending side of a logical TCP edge, multiplexed over a shared connection.
+ * 
+ * Elements are encoded into a batch, which is sent as a single record when it grows past the batch size,
+ * when the stream runs out of credits, or when the stream is flushed or closed.
+ * 
+ * The stream starts without credits. An element can be sent when there are element credits and byte
+ * credits left; byte credits may go negative by one element, so that elements larger than the window
+ * still make progress. The time spent waiting for credits is accumulated for the node measurements.
+ * 
+ * If the stream is compressed, each batch is compressed as one block before being sent; batches that
+ * do not shrink are sent uncompressed, which the receiver learns from the compression type in the record.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class TCPStream {
+	private TCPConnection connection;
+
+	private int identifier;
+
+	private ChannelElementCodec codec;
+
+	// Guards the credits, and is not a monitor so that writers on virtual threads release their carrier while waiting
+	private Lock creditLock;
+	private Condition creditCondition;
+
+	private int credits;
+	private long creditBytes;
+
+	// Time spent waiting for credits, in nanoseconds
+	private long blockedTime;
+
+	private boolean aborted;
+
+	private BatchOutputStream batch;
+	private DataOutputStream batchOutputStream;
+
+	// Size of the record header at the start of the batch (type, identifier and compression type)
+	private int batchHeaderLength;
+
+	private int batchCount;
+
+	private CompressionType compressionType;
+	private BlockCompressor compressor;
+
+	private BatchOutputStream compressedBatch;
+	private DataOutputStream compressedBatchOutputStream;
+
+	private BatchOutputStream frame;
+	private DataOutputStream frameOutputStream;
+
+	private SerializedValueWriter serializedValueWriter;
+
+	public TCPStream(TCPConnection connection, int identifier, ChannelElementCodec codec, CompressionType compressionType) throws IOException {
+		this.connection = connection;
+
+		this.identifier = identifier;
+
+		this.codec = codec;
+
+		this.creditLock = new ReentrantLock();
+		this.creditCondition = creditLock.newCondition();
+
+		this.batch = new BatchOutputStream(TCPConnectionManager.DEFAULT_BATCH_SIZE + 1024);
+		this.batchOutputStream = new DataOutputStream(batch);
+
+		this.compressionType = compressionType;
+		this.compressor = CompressionHelper.createCompressor(compressionType);
+
+		if(compressor != null) {
+			this.compressedBatch = new BatchOutputStream(TCPConnectionManager.DEFAULT_BATCH_SIZE + 1024);
+			this.compressedBatchOutputStream = new DataOutputStream(compressedBatch);
+		}
+
+		this.serializedValueWriter = new SerializedValueWriter(SerializationPolicy.getDefault());
+
+		this.frame = new BatchOutputStream(256);
+		this.frameOutputStream = new ContextDataOutputStream(frame, serializedValueWriter);
+
+		resetBatch();
+	}
+
+	public int getIdentifier() {
+		return identifier;
+	}
+
+	public ChannelElementCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Getter for the time spent waiting for credits.
+	 * 
+	 * @return The time spent waiting for credits, in nanoseconds.
+	 */
+	public long getBlockedTime() {
+		creditLock.lock();
+
+		try {
+			return blockedTime;
+		} finally {
+			creditLock.unlock();
+		}
+	}
+
+	public void setSerializationPolicy(SerializationPolicy serializationPolicy) {
+		serializedValueWriter.setSerializationPolicy(serializationPolicy);
+	}
+
+	public SerializationStatistics getSerializationStatistics() {
+		return serializedValueWriter.getSerializationStatistics();
+	}
+
+	public void write(ChannelElement channelElement) throws IOException {
+		frame.reset();
+
+		long serializedValues = serializedValueWriter.getValueCount();
+
+		codec.encode(channelElement, frameOutputStream);
+
+		frameOutputStream.flush();
+
+		// Frames that depend on the object stream of this channel are marked as such
+
+		writeFrame(frame.getBuffer(), frame.size(), serializedValueWriter.getValueCount() != serializedValues);
+	}
+
+	/**
+	 * Writes a frame already encoded with the codec of this stream.
+	 * 
+	 * @param frame The encoded frame.
+	 * @param length The length of the encoded frame.
+	 */
+	public void writeFrame(byte[] frame, int length) throws IOException {
+		writeFrame(frame, length, false);
+	}
+
+	private void writeFrame(byte[] frame, int length, boolean channelContext) throws IOException {
+		int frameLength = (channelContext ? length + 1 : length);
+
+		acquireCredit(frameLength);
+
+		CodecHelper.writeVarInt(batchOutputStream, frameLength);
+
+		if(channelContext) {
+			batchOutputStream.writeByte(BinaryChannelElementCodec.TAG_CHANNEL_CONTEXT);
+		}
+
+		batchOutputStream.write(frame, 0, length);
+
+		batchCount++;
+
+		if(batch.size() >= TCPConnectionManager.DEFAULT_BATCH_SIZE) {
+			flush();
+		}
+	}
+
+	public void flush() throws IOException {
+		if(batchCount == 0) {
+			return;
+		}
+
+		batchOutputStream.flush();
+
+		if(compressor == null || !sendCompressed()) {
+			connection.send(batch);
+		}
+
+		resetBatch();
+	}
+
+	public void close() throws IOException {
+		flush();
+
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		DataOutputStream recordOutputStream = new DataOutputStream(record);
+
+		recordOutputStream.writeByte(TCPConnectionManager.MESSAGE_CLOSE);
+		CodecHelper.writeVarInt(recordOutputStream, identifier);
+
+		recordOutputStream.flush();
+
+		connection.send(record);
+
+		connection.release(this);
+
+		if(compressor != null) {
+			compressor.end();
+		}
+	}
+
+	/**
+	 * Adds credits granted by the receiver.
+	 * 
+	 * @param amount Number of elements granted.
+	 * @param amountBytes Number of bytes granted.
+	 */
+	public void grant(int amount, int amountBytes) {
+		creditLock.lock();
+
+		try {
+			credits += amount;
+			creditBytes += amountBytes;
+
+			creditCondition.signalAll();
+		} finally {
+			creditLock.unlock();
+		}
+	}
+
+	/**
+	 * Wakes up a writer waiting for credits when the connection breaks.
+	 */
+	public void abort() {
+		creditLock.lock();
+
+		try {
+			aborted = true;
+
+			creditCondition.signalAll();
+		} finally {
+			creditLock.unlock();
+		}
+	}
+
+	private void acquireCredit(int size) throws IOException {
+		creditLock.lock();
+
+		try {
+			if(credits > 0 && creditBytes > 0) {
+				credits--;
+				creditBytes -= size;
+				return;
+			}
+		} finally {
+			creditLock.unlock();
+		}
+
+		// The receiver only grants credits for elements it received, so the pending batch must go out first
+
+		flush();
+
+		creditLock.lock();
+
+		try {
+			long start = System.nanoTime();
+
+			while(credits == 0 || creditBytes <= 0) {
+				if(aborted) {
+					throw new IOException("Connection to " + connection.getSocketAddress() + " broken while waiting for credits");
+				}
+
+				try {
+					creditCondition.await();
+				} catch (InterruptedException exception) {
+					System.err.println("Unexpected thread interruption while waiting for credits");
+
+					exception.printStackTrace();
+				}
+			}
+
+			blockedTime += System.nanoTime() - start;
+
+			credits--;
+			creditBytes -= size;
+		} finally {
+			creditLock.unlock();
+		}
+	}
+
+	private void resetBatch() throws IOException {
+		batch.reset();
+
+		batchOutputStream.writeByte(TCPConnectionManager.MESSAGE_DATA);
+		CodecHelper.writeVarInt(batchOutputStream, identifier);
+		batchOutputStream.writeByte(CompressionType.NONE.ordinal());
+
+		batchHeaderLength = batch.size();
+
+		batchCount = 0;
+	}
+
+	/**
+	 * Sends the batch as a compressed record: the header, the uncompressed length of the frames, and the compressed frames.
+	 * 
+	 * @return True if the batch was sent; false if it does not shrink, and should be sent uncompressed.
+	 */
+	private boolean sendCompressed() throws IOException {
+		int length = batch.size() - batchHeaderLength;
+
+		compressedBatch.reset();
+
+		compressedBatchOutputStream.writeByte(TCPConnectionManager.MESSAGE_DATA);
+		CodecHelper.writeVarInt(compressedBatchOutputStream, identifier);
+		compressedBatchOutputStream.writeByte(compressionType.ordinal());
+		CodecHelper.writeVarInt(compressedBatchOutputStream, length);
+
+		int offset = compressedBatch.size();
+
+		compressedBatch.ensureCapacity(offset + length);
+
+		int compressedLength = compressor.compress(batch.getBuffer(), batchHeaderLength, length, compressedBatch.getBuffer(), offset, length - 1);
+
+		if(compressedLength < 0) {
+			return false;
+		}
+
+		compressedBatch.setSize(offset + compressedLength);
+
+		connection.send(compressedBatch);
+
+		return true;
+	}
+
+	/**
+	 * Byte array output stream that exposes its buffer, so that batches can be compressed in place.
+	 */
+	private static class BatchOutputStream extends ByteArrayOutputStream {
+		public BatchOutputStream(int size) {
+			super(size);
+		}
+
+		public byte[] getBuffer() {
+			return buf;
+		}
+
+		public void ensureCapacity(int capacity) {
+			if(capacity > buf.length) {
+				byte[] grown = new byte[Math.max(capacity, buf.length * 2)];
+
+				System.arraycopy(buf, 0, grown, 0, count);
+
+				buf = grown;
+			}
+		}
+
+		public void setSize(int size) {
+			count = size;
+		}
+	}
+}
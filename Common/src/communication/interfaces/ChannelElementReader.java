@@ -14,9 +14,24 @@ package communication.interfaces;
 import java.io.EOFException;
 import java.io.IOException;
 
+import java.util.List;
+
 import communication.channel.ChannelElement;
 
 public interface ChannelElementReader {
 	public ChannelElement read() throws EOFException, IOException;
+
+	/**
+	 * Reads up to the informed number of elements, waiting only until the first one is available.
+	 * 
+	 * @param channelElements List to which the elements read are appended.
+	 * @param maximum Maximum number of elements read (must be positive).
+	 * 
+	 * @return The number of elements read, which is at least one.
+	 * 
+	 * @throws EOFException If the reader reached its end before any element was read.
+	 */
+	public int read(List<ChannelElement> channelElements, int maximum) throws EOFException, IOException;
+
 	public void close() throws IOException;
 }
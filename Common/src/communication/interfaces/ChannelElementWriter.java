@@ -13,10 +13,22 @@ package communication.interfaces;
 
 import java.io.IOException;
 
+import java.util.List;
+
 import communication.channel.ChannelElement;
 
 public interface ChannelElementWriter {
 	public boolean write(ChannelElement channelElement) throws IOException;
+
+	/**
+	 * Writes the informed elements, in order.
+	 * 
+	 * @param channelElements Elements to write.
+	 * 
+	 * @return True if all the elements were written.
+	 */
+	public boolean write(List<? extends ChannelElement> channelElements) throws IOException;
+
 	public boolean flush() throws IOException;
 	public boolean close() throws IOException;
 }
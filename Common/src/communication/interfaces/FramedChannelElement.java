@@ -0,0 +1,44 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.interfaces;
+
+import communication.channel.ChannelElement;
+
+/**
+ * Channel element that still carries the frame it was read from, which writers using the same codec can
+ * send as it is instead of encoding the element again.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public interface FramedChannelElement {
+	/**
+	 * Obtains the frame of the element, if it was not modified since it was read.
+	 * 
+	 * @return The encoded frame, which should not be modified; or null if the element was modified.
+	 */
+	public byte[] getFrame();
+
+	/**
+	 * Obtains the codec that encoded the frame.
+	 * 
+	 * @return The codec that encoded the frame.
+	 */
+	public ChannelElementCodec getCodec();
+
+	/**
+	 * Obtains the element as it should be handed to writers that do not use frames.
+	 * 
+	 * @return The decoded element.
+	 */
+	public ChannelElement getChannelElement();
+}
@@ -13,10 +13,14 @@ package communication.readers;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 
 import java.io.EOFException;
 
+import java.util.List;
+
 import communication.channel.ChannelElement;
+import communication.interfaces.ChannelElementCodec;
 import communication.interfaces.ChannelElementReader;
 
 import communication.streams.ChannelElementInputStream;
@@ -24,11 +28,59 @@ import communication.streams.ChannelElementInputStream;
 import utilities.filesystem.FileHelper;
 import utilities.filesystem.Filename;
 
+import utilities.compression.BlockCompressedInputStream;
+
+import enums.CompressionType;
+import enums.DecodingMode;
+
 public class FileChannelElementReader implements ChannelElementReader {
 	private ChannelElementInputStream channelElementInputStream;
 
 	public FileChannelElementReader(Filename filename) throws FileNotFoundException, IOException {
-		channelElementInputStream = new ChannelElementInputStream(FileHelper.openR(filename));
+		channelElementInputStream = new ChannelElementInputStream(FileHelper.openChannelR(filename));
+	}
+
+	public FileChannelElementReader(Filename filename, ChannelElementCodec codec) throws FileNotFoundException, IOException {
+		channelElementInputStream = new ChannelElementInputStream(FileHelper.openChannelR(filename), codec);
+	}
+
+	public FileChannelElementReader(Filename filename, ChannelElementCodec codec, CompressionType compressionType) throws FileNotFoundException, IOException {
+		InputStream inputStream = FileHelper.openChannelR(filename);
+
+		if(compressionType != CompressionType.NONE) {
+			inputStream = new BlockCompressedInputStream(inputStream, compressionType);
+		}
+
+		channelElementInputStream = new ChannelElementInputStream(inputStream, codec);
+	}
+
+	/**
+	 * Creates a reader for the elements of a byte range of the file, as described in ChannelElementInputStream.setSplit().
+	 * 
+	 * @param filename File to read.
+	 * @param codec Codec that decodes the elements.
+	 * @param compressionType Compression of the file; compressed files cannot be split.
+	 * @param offset Start of the range, in bytes.
+	 * @param length Length of the range, in bytes.
+	 */
+	public FileChannelElementReader(Filename filename, ChannelElementCodec codec, CompressionType compressionType, long offset, long length) throws FileNotFoundException, IOException {
+		if(compressionType != CompressionType.NONE) {
+			throw new IOException("Compressed file " + filename.getLocation() + " cannot be split");
+		}
+
+		channelElementInputStream = new ChannelElementInputStream(FileHelper.openChannelR(filename), codec);
+
+		try {
+			channelElementInputStream.setSplit(offset, offset + length);
+		} catch (IOException exception) {
+			channelElementInputStream.close();
+
+			throw exception;
+		}
+	}
+
+	public synchronized void setDecodingMode(DecodingMode decodingMode) {
+		channelElementInputStream.setDecodingMode(decodingMode);
 	}
 
 	public synchronized ChannelElement read() throws EOFException, IOException {
@@ -37,6 +89,24 @@ public class FileChannelElementReader implements ChannelElementReader {
 		return element;
 	}
 
+	public synchronized int read(List<ChannelElement> channelElements, int maximum) throws EOFException, IOException {
+		channelElements.add(channelElementInputStream.readChannelElement());
+
+		int count = 1;
+
+		try {
+			while(count < maximum) {
+				channelElements.add(channelElementInputStream.readChannelElement());
+
+				count++;
+			}
+		} catch (EOFException exception) {
+			// The end of the stream is reported by the next read
+		}
+
+		return count;
+	}
+
 	public synchronized void close() throws IOException {
 		channelElementInputStream.close();
 	}
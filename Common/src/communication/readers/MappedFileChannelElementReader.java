@@ -0,0 +1,95 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package communication.readers;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import java.io.EOFException;
+
+import java.util.List;
+
+import communication.channel.ChannelElement;
+import communication.codecs.BinaryChannelElementCodec;
+import communication.interfaces.ChannelElementCodec;
+import communication.interfaces.ChannelElementReader;
+
+import communication.streams.ChannelElementInputStream;
+
+import utilities.filesystem.FileHelper;
+import utilities.filesystem.Filename;
+
+import utilities.compression.BlockCompressedInputStream;
+
+import enums.CompressionType;
+import enums.DecodingMode;
+
+/**
+ * Channel element reader that decodes elements directly out of a memory mapping of the file,
+ * without an intermediate read buffer.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class MappedFileChannelElementReader implements ChannelElementReader {
+	private ChannelElementInputStream channelElementInputStream;
+
+	public MappedFileChannelElementReader(Filename filename) throws FileNotFoundException, IOException {
+		this(filename, BinaryChannelElementCodec.getInstance());
+	}
+
+	public MappedFileChannelElementReader(Filename filename, ChannelElementCodec codec) throws FileNotFoundException, IOException {
+		// The mapping is already in memory, so the stream does not need its own buffer
+		channelElementInputStream = new ChannelElementInputStream(FileHelper.openMappedR(filename), codec, 0);
+	}
+
+	public MappedFileChannelElementReader(Filename filename, ChannelElementCodec codec, CompressionType compressionType) throws FileNotFoundException, IOException {
+		if(compressionType == CompressionType.NONE) {
+			channelElementInputStream = new ChannelElementInputStream(FileHelper.openMappedR(filename), codec, 0);
+		}
+		else {
+			// Blocks are decompressed into memory, so the stream does not need its own buffer either
+			channelElementInputStream = new ChannelElementInputStream(new BlockCompressedInputStream(FileHelper.openMappedR(filename), compressionType), codec, 0);
+		}
+	}
+
+	public synchronized void setDecodingMode(DecodingMode decodingMode) {
+		channelElementInputStream.setDecodingMode(decodingMode);
+	}
+
+	public synchronized ChannelElement read() throws EOFException, IOException {
+		ChannelElement element = channelElementInputStream.readChannelElement();
+
+		return element;
+	}
+
+	public synchronized int read(List<ChannelElement> channelElements, int maximum) throws EOFException, IOException {
+		channelElements.add(channelElementInputStream.readChannelElement());
+
+		int count = 1;
+
+		try {
+			while(count < maximum) {
+				channelElements.add(channelElementInputStream.readChannelElement());
+
+				count++;
+			}
+		} catch (EOFException exception) {
+			// The end of the stream is reported by the next read
+		}
+
+		return count;
+	}
+
+	public synchronized void close() throws IOException {
+		channelElementInputStream.close();
+	}
+}
@@ -0,0 +1,184 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package communication.readers;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+
+import java.util.List;
+
+import communication.channel.ChannelElement;
+import communication.interfaces.ChannelElementCodec;
+import communication.interfaces.ChannelElementReader;
+
+import communication.streams.ChannelElementInputStream;
+
+import communication.writers.PartitionedFileChannelElementWriter;
+
+import utilities.filesystem.FileHelper;
+import utilities.filesystem.Filename;
+
+import utilities.compression.BlockCompressedInputStream;
+
+import enums.CompressionType;
+import enums.DecodingMode;
+
+/**
+ * Reader of one partition of a file written by a PartitionedFileChannelElementWriter. The offsets of the
+ * partition are obtained from the index file, and only the region of the partition is read.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class PartitionedFileChannelElementReader implements ChannelElementReader {
+	private ChannelElementInputStream channelElementInputStream;
+
+	public PartitionedFileChannelElementReader(Filename filename, int partition, ChannelElementCodec codec, CompressionType compressionType) throws FileNotFoundException, IOException {
+		long start, end;
+
+		DataInputStream indexInput = new DataInputStream(FileHelper.openR(PartitionedFileChannelElementWriter.getIndexFilename(filename)));
+
+		try {
+			int numberPartitions = indexInput.readInt();
+
+			if(partition < 0 || partition >= numberPartitions) {
+				throw new StreamCorruptedException("Partition " + partition + " not present in " + filename + " (" + numberPartitions + " partitions)");
+			}
+
+			skipFully(indexInput, partition * 8L);
+
+			start = indexInput.readLong();
+			end = indexInput.readLong();
+		} finally {
+			indexInput.close();
+		}
+
+		InputStream inputStream = FileHelper.openChannelR(filename);
+
+		skipFully(inputStream, start);
+
+		inputStream = new RegionInputStream(inputStream, end - start);
+
+		if(compressionType != CompressionType.NONE) {
+			inputStream = new BlockCompressedInputStream(inputStream, compressionType);
+		}
+
+		channelElementInputStream = new ChannelElementInputStream(inputStream, codec);
+	}
+
+	public synchronized void setDecodingMode(DecodingMode decodingMode) {
+		channelElementInputStream.setDecodingMode(decodingMode);
+	}
+
+	public synchronized ChannelElement read() throws EOFException, IOException {
+		return channelElementInputStream.readChannelElement();
+	}
+
+	public synchronized int read(List<ChannelElement> channelElements, int maximum) throws EOFException, IOException {
+		channelElements.add(channelElementInputStream.readChannelElement());
+
+		int count = 1;
+
+		try {
+			while(count < maximum) {
+				channelElements.add(channelElementInputStream.readChannelElement());
+
+				count++;
+			}
+		} catch (EOFException exception) {
+			// The end of the stream is reported by the next read
+		}
+
+		return count;
+	}
+
+	public synchronized void close() throws IOException {
+		channelElementInputStream.close();
+	}
+
+	private static void skipFully(InputStream inputStream, long length) throws IOException {
+		while(length > 0) {
+			long skipped = inputStream.skip(length);
+
+			if(skipped <= 0) {
+				if(inputStream.read() < 0) {
+					throw new EOFException("Partitioned file shorter than its index");
+				}
+
+				skipped = 1;
+			}
+
+			length -= skipped;
+		}
+	}
+
+	/**
+	 * Stream that ends at the end of the partition region.
+	 */
+	private static class RegionInputStream extends FilterInputStream {
+		private long remaining;
+
+		public RegionInputStream(InputStream inputStream, long length) {
+			super(inputStream);
+
+			this.remaining = length;
+		}
+
+		public int read() throws IOException {
+			if(remaining <= 0) {
+				return -1;
+			}
+
+			int result = in.read();
+
+			if(result >= 0) {
+				remaining--;
+			}
+
+			return result;
+		}
+
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if(remaining <= 0) {
+				return -1;
+			}
+
+			int result = in.read(buffer, offset, (int) Math.min(length, remaining));
+
+			if(result > 0) {
+				remaining -= result;
+			}
+
+			return result;
+		}
+
+		public long skip(long length) throws IOException {
+			long result = in.skip(Math.min(length, remaining));
+
+			remaining -= result;
+
+			return result;
+		}
+
+		public int available() throws IOException {
+			return (int) Math.min(in.available(), remaining);
+		}
+
+		public boolean markSupported() {
+			return false;
+		}
+	}
+}
@@ -13,11 +13,15 @@ package communication.readers;
 
 import java.util.Collections;
 
+import java.util.List;
+
 import java.util.Set;
 import java.util.HashSet;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 
 import java.io.EOFException;
@@ -25,21 +29,53 @@ import java.io.IOException;
 
 import communication.channel.ChannelElement;
 import communication.interfaces.ChannelElementReader;
+import communication.interfaces.ReadinessListener;
+
+import utilities.concurrent.ElementQueue;
+import utilities.concurrent.QueueSpecification;
 
 public class SHMChannelElementMultiplexer implements ChannelElementReader {
-	private static int DEFAULT_LIMIT = 32;
 	private static int DEFAULT_RETRY = 250;
 
+	// Enqueued once every origin has been observed as closed, so that all concurrent readers wake up
+	private static final EndOfStreamMarker END_OF_STREAM = new EndOfStreamMarker(null, 0L);
+
+	// Origins that were not closed by their writers yet
 	protected Set<String> origins;
 
-	protected BlockingQueue<ChannelElement> queue;
+	// Origins whose end-of-stream marker was not dequeued by a reader yet
+	protected Set<String> pendingOrigins;
+
+	// Maps origins to the time between the writer closing and a reader observing the close, in nanoseconds
+	protected Map<String, Long> closeLatencies;
+
+	protected volatile boolean finished;
+
+	protected ElementQueue<ChannelElement> queue;
+
+	protected volatile ReadinessListener readinessListener;
+
+	// Notified when readers take elements from the queue, so that writers that found it full can retry
+	protected Set<ReadinessListener> spaceListeners;
 
 	public SHMChannelElementMultiplexer(Set<String> origins) {
+		this(origins, new QueueSpecification());
+	}
+
+	public SHMChannelElementMultiplexer(Set<String> origins, QueueSpecification queueSpecification) {
 		this.origins = Collections.synchronizedSet(new HashSet<String>());
+		this.pendingOrigins = Collections.synchronizedSet(new HashSet<String>());
 
 		this.origins.addAll(origins);
+		this.pendingOrigins.addAll(origins);
+
+		this.closeLatencies = new ConcurrentHashMap<String, Long>();
+
+		this.spaceListeners = new CopyOnWriteArraySet<ReadinessListener>();
 
-		this.queue = new ArrayBlockingQueue<ChannelElement>(DEFAULT_LIMIT);
+		this.finished = (origins.size() == 0);
+
+		this.queue = queueSpecification.<ChannelElement>createQueue();
 	}
 
 	public ChannelElement read() throws EOFException, IOException {
@@ -50,9 +86,18 @@ public class SHMChannelElementMultiplexer implements ChannelElementReader {
 				channelElement = queue.poll(DEFAULT_RETRY, TimeUnit.MILLISECONDS);
 
 				if(channelElement != null) {
+					notifySpace();
+				}
+
+				if(channelElement instanceof EndOfStreamMarker) {
+					if(observe((EndOfStreamMarker) channelElement)) {
+						throw new EOFException();
+					}
+				}
+				else if(channelElement != null) {
 					return channelElement;
 				}
-				else if(origins.size() == 0) {
+				else if(finished) {
 					throw new EOFException();
 				}
 			} catch (InterruptedException exception) {
@@ -63,14 +108,96 @@ public class SHMChannelElementMultiplexer implements ChannelElementReader {
 		}
 	}
 
+	public int read(List<ChannelElement> channelElements, int maximum) throws EOFException, IOException {
+		int count = tryRead(channelElements, maximum);
+
+		if(count > 0) {
+			return count;
+		}
+
+		channelElements.add(read());
+
+		return 1 + tryRead(channelElements, maximum - 1);
+	}
+
+	/**
+	 * Reads up to the informed number of elements that are already available, without blocking.
+	 * 
+	 * @param channelElements List to which the elements read are appended.
+	 * @param maximum Maximum number of elements read.
+	 * 
+	 * @return The number of elements read, possibly zero.
+	 */
+	public int tryRead(List<ChannelElement> channelElements, int maximum) throws IOException {
+		int start = channelElements.size();
+
+		if(queue.drainTo(channelElements, maximum) > 0) {
+			notifySpace();
+		}
+
+		// End-of-stream markers are processed and compacted out of the batch
+
+		int end = start;
+
+		for(int i = start; i < channelElements.size(); i++) {
+			ChannelElement channelElement = channelElements.get(i);
+
+			if(channelElement instanceof EndOfStreamMarker) {
+				observe((EndOfStreamMarker) channelElement);
+
+				continue;
+			}
+
+			channelElements.set(end++, channelElement);
+		}
+
+		channelElements.subList(end, channelElements.size()).clear();
+
+		return end - start;
+	}
+
 	public ChannelElement tryRead() throws IOException {
-		return queue.poll();
+		ChannelElement channelElement = queue.poll();
+
+		while(channelElement instanceof EndOfStreamMarker) {
+			notifySpace();
+
+			if(observe((EndOfStreamMarker) channelElement)) {
+				return null;
+			}
+
+			channelElement = queue.poll();
+		}
+
+		if(channelElement != null) {
+			notifySpace();
+		}
+
+		return channelElement;
 	}
 
 	public ChannelElement tryRead(int timeout, TimeUnit timeUnit) throws IOException {
+		long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+
+		ChannelElement channelElement;
+
 		while(true) {
 			try {
-				return queue.poll(timeout, timeUnit);
+				channelElement = queue.poll(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+				if(channelElement != null) {
+					notifySpace();
+				}
+
+				if(channelElement instanceof EndOfStreamMarker) {
+					if(observe((EndOfStreamMarker) channelElement)) {
+						return null;
+					}
+
+					continue;
+				}
+
+				return channelElement;
 			} catch (InterruptedException exception) {
 				System.err.println("Unexpected thread interruption while waiting for a read");
 
@@ -80,7 +207,13 @@ public class SHMChannelElementMultiplexer implements ChannelElementReader {
 	}
 
 	public ChannelElement peek() {
-		return queue.peek();
+		ChannelElement channelElement = queue.peek();
+
+		if(channelElement instanceof EndOfStreamMarker) {
+			return null;
+		}
+
+		return channelElement;
 	}
 
 	public boolean write(String origin, ChannelElement channelElement) throws IOException {
@@ -93,6 +226,64 @@ public class SHMChannelElementMultiplexer implements ChannelElementReader {
 			return false;
 		}
 
+		notifyReadiness();
+
+		return true;
+	}
+
+	public boolean write(String origin, List<? extends ChannelElement> channelElements) throws IOException {
+		try {
+			queue.putAll(channelElements);
+		} catch (InterruptedException exception) {
+			System.err.println("Unexpected thread interruption while waiting for write");
+
+			exception.printStackTrace();
+			return false;
+		}
+
+		notifyReadiness();
+
+		return true;
+	}
+
+	/**
+	 * Writes an element only if the queue has room for it, without blocking.
+	 * 
+	 * @param origin Origin of the element.
+	 * @param channelElement Element to write.
+	 * 
+	 * @return True if the element was enqueued; false if the queue is full.
+	 */
+	public boolean tryWrite(String origin, ChannelElement channelElement) {
+		if(!queue.offer(channelElement)) {
+			return false;
+		}
+
+		notifyReadiness();
+
+		return true;
+	}
+
+	/**
+	 * Closes an origin only if the queue has room for its end-of-stream marker, without blocking.
+	 * 
+	 * @param origin Origin to close.
+	 * 
+	 * @return True if the origin was closed; false if the queue is full.
+	 */
+	public boolean tryClose(String origin) {
+		if(!queue.offer(new EndOfStreamMarker(origin, System.nanoTime()))) {
+			return false;
+		}
+
+		notifyReadiness();
+
+		boolean result = origins.remove(origin);
+
+		if(result == false) {
+			System.err.println("Error deleting origin " + origin + " for SHM channel multiplexer");
+		}
+
 		return true;
 	}
 
@@ -101,7 +292,15 @@ public class SHMChannelElementMultiplexer implements ChannelElementReader {
 
 		if(result == false) {
 			System.err.println("Error deleting origin " + origin + " for SHM channel multiplexer");
+
+			return;
 		}
+
+		// The marker follows every element the origin wrote, so readers see it only after draining them
+
+		enqueueMarker(new EndOfStreamMarker(origin, System.nanoTime()));
+
+		notifyReadiness();
 	}
 
 	public void close() throws IOException {
@@ -109,4 +308,141 @@ public class SHMChannelElementMultiplexer implements ChannelElementReader {
 
 		throw new IOException();
 	}
+
+	/**
+	 * Sets the listener notified whenever this multiplexer may have become readable.
+	 * 
+	 * @param readinessListener The listener, or null to stop notifications.
+	 */
+	public void setReadinessListener(ReadinessListener readinessListener) {
+		this.readinessListener = readinessListener;
+	}
+
+	/**
+	 * Adds a listener notified whenever a reader takes elements from this multiplexer, that is, whenever
+	 * writers that found it full may succeed.
+	 * 
+	 * @param spaceListener The listener.
+	 */
+	public void addSpaceListener(ReadinessListener spaceListener) {
+		spaceListeners.add(spaceListener);
+	}
+
+	public void removeSpaceListener(ReadinessListener spaceListener) {
+		spaceListeners.remove(spaceListener);
+	}
+
+	/**
+	 * Returns whether some origin was not closed by its writer yet.
+	 * 
+	 * @return True if some origin is still open; false otherwise.
+	 */
+	public boolean hasOpenOrigins() {
+		return origins.size() > 0;
+	}
+
+	/**
+	 * Returns whether every origin was closed and observed by a reader.
+	 * 
+	 * @return True if the multiplexer reached its end of stream; false otherwise.
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Returns the close latencies observed so far, that is, the time between each origin
+	 * being closed by its writer and a reader dequeuing the corresponding end-of-stream marker.
+	 * 
+	 * @return A map from origins to close latencies, in nanoseconds.
+	 */
+	public Map<String, Long> getCloseLatencies() {
+		return Collections.unmodifiableMap(closeLatencies);
+	}
+
+	/**
+	 * Processes an end-of-stream marker dequeued by a reader.
+	 * 
+	 * @param marker The dequeued marker.
+	 * 
+	 * @return True if the multiplexer reached its end of stream; false if other origins are still open.
+	 */
+	private boolean observe(EndOfStreamMarker marker) {
+		if(marker != END_OF_STREAM) {
+			closeLatencies.put(marker.getOrigin(), System.nanoTime() - marker.getCloseTime());
+
+			pendingOrigins.remove(marker.getOrigin());
+
+			if(pendingOrigins.size() > 0) {
+				return false;
+			}
+
+			finished = true;
+		}
+
+		// Pass the terminal marker along, waking up any other reader blocked on the queue
+
+		enqueueMarker(END_OF_STREAM);
+
+		return true;
+	}
+
+	private void notifyReadiness() {
+		ReadinessListener listener = readinessListener;
+
+		if(listener != null) {
+			listener.ready();
+		}
+	}
+
+	private void notifySpace() {
+		if(spaceListeners.isEmpty()) {
+			return;
+		}
+
+		for(ReadinessListener listener: spaceListeners) {
+			listener.ready();
+		}
+	}
+
+	private void enqueueMarker(EndOfStreamMarker marker) {
+		while(true) {
+			try {
+				queue.put(marker);
+
+				return;
+			} catch (InterruptedException exception) {
+				System.err.println("Unexpected thread interruption while waiting for write");
+
+				exception.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * In-band marker signalling that an origin was closed.
+	 * 
+	 * @author Hammurabi Mendes (hmendes)
+	 */
+	private static class EndOfStreamMarker extends ChannelElement {
+		private static final long serialVersionUID = 1L;
+
+		private String origin;
+		private long closeTime;
+
+		public EndOfStreamMarker(String origin, long closeTime) {
+			super(null);
+
+			this.origin = origin;
+			this.closeTime = closeTime;
+		}
+
+		public String getOrigin() {
+			return origin;
+		}
+
+		public long getCloseTime() {
+			return closeTime;
+		}
+	}
 }
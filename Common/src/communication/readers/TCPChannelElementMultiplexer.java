@@ -13,102 +13,93 @@ package communication.readers;
 
 import java.util.Set;
 
-import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.net.ServerSocket;
-import java.net.UnknownHostException;
 
-import java.io.ObjectInputStream;
-
-import java.io.EOFException;
 import java.io.IOException;
 
-import communication.channel.ChannelElement;
+import communication.codecs.BinaryChannelElementCodec;
+import communication.connections.TCPConnectionManager;
+import communication.interfaces.ChannelElementCodec;
 import communication.interfaces.ChannelElementReader;
 
+import enums.DecodingMode;
+
 public class TCPChannelElementMultiplexer extends SHMChannelElementMultiplexer implements ChannelElementReader {
-	private ServerSocket serverSocket;
+	private String identifier;
 
-	public TCPChannelElementMultiplexer(Set<String> origins) throws IOException {
-		super(origins);
+	private ChannelElementCodec codec;
 
-		serverSocket = new ServerSocket(0);
+	// Credit window granted to each origin, in elements and in bytes
+	private int streamWindow;
+	private int streamWindowBytes;
 
-		TCPAccepter accepter = new TCPAccepter();
+	private volatile DecodingMode decodingMode = DecodingMode.EAGER;
 
-		accepter.start();
+	public TCPChannelElementMultiplexer(String identifier, Set<String> origins) throws IOException {
+		this(identifier, origins, BinaryChannelElementCodec.getInstance());
 	}
 
-	public InetSocketAddress getAddress() {
-		try {
-			return new InetSocketAddress(InetAddress.getLocalHost(), serverSocket.getLocalPort());
-		} catch (UnknownHostException exception) {
-			System.err.println("Unable to obtain local address");
+	public TCPChannelElementMultiplexer(String identifier, Set<String> origins, ChannelElementCodec codec) throws IOException {
+		super(origins);
 
-			exception.printStackTrace();
+		this.identifier = identifier;
 
-			return null;
-		}
-	}
+		this.codec = codec;
 
-	private class TCPAccepter extends Thread {
-		public void run() {
-			for(int i = 0; i < origins.size(); i++) {
-				try {
-					Socket socket = serverSocket.accept();
+		this.streamWindow = TCPConnectionManager.getInstance().getStreamWindow();
+		this.streamWindowBytes = TCPConnectionManager.getInstance().getStreamWindowBytes();
 
-					TCPRelayer relayer = new TCPRelayer(socket);
+		// Streams from other launchers arrive through the shared connections, and are matched by the identifier
 
-					relayer.start();
-				} catch (IOException exception) {
-					System.err.println("Error accepting client (I/O error)");
+		TCPConnectionManager.getInstance().registerMultiplexer(identifier, this);
+	}
 
-					exception.printStackTrace();
-				}
-			}
-		}
+	public String getIdentifier() {
+		return identifier;
 	}
 
-	private class TCPRelayer extends Thread {
-		private String origin;
-		private ObjectInputStream objectInputStream;
+	public ChannelElementCodec getCodec() {
+		return codec;
+	}
 
-		public TCPRelayer(Socket socket) throws IOException {
-			this.origin = null;
+	public int getStreamWindow() {
+		return streamWindow;
+	}
 
-			this.objectInputStream = new ObjectInputStream(socket.getInputStream());
-		}
+	public void setStreamWindow(int streamWindow) {
+		this.streamWindow = streamWindow;
+	}
 
-		public void run() {
-			Object object;
+	public int getStreamWindowBytes() {
+		return streamWindowBytes;
+	}
 
-			try {
-				object = objectInputStream.readObject();
+	public void setStreamWindowBytes(int streamWindowBytes) {
+		this.streamWindowBytes = streamWindowBytes;
+	}
 
-				origin = (String) object;
+	public DecodingMode getDecodingMode() {
+		return decodingMode;
+	}
 
-				while(true) {
-					try {
-						object = objectInputStream.readObject();
-					} catch (EOFException exception) {
-						break;
-					}
+	/**
+	 * Setter for how received elements are decoded. Frames that depend on the state of their streams are always decoded eagerly.
+	 * 
+	 * @param decodingMode How received elements are decoded.
+	 */
+	public void setDecodingMode(DecodingMode decodingMode) {
+		this.decodingMode = decodingMode;
+	}
 
-					write(origin, (ChannelElement) object);
-				}
-			} catch (IOException exception) {
-				System.err.println("Error receiving data from client \"" + origin + "\" (I/O error)");
+	public InetSocketAddress getAddress() {
+		try {
+			return TCPConnectionManager.getInstance().getAddress();
+		} catch (IOException exception) {
+			System.err.println("Unable to obtain local address");
 
-				exception.printStackTrace();
-			} catch (ClassNotFoundException exception) {
-				System.err.println("Error receiving data from client \"" + origin + "\" (class not found)");
+			exception.printStackTrace();
 
-				exception.printStackTrace();
-			}
-			finally {
-				close(origin);
-			}
+			return null;
 		}
 	}
 }
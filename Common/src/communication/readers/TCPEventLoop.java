@@ -0,0 +1,929 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.readers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+import communication.channel.ChannelElement;
+import communication.channel.RawChannelElement;
+
+import communication.codecs.BinaryChannelElementCodec;
+import communication.codecs.CodecHelper;
+import communication.codecs.SerializedValueReader;
+
+import communication.connections.TCPConnectionManager;
+
+import communication.interfaces.ChannelElementCodec;
+import communication.interfaces.ReadinessListener;
+
+import communication.streams.ChannelElementOutputStream;
+import communication.streams.ContextDataInputStream;
+import communication.streams.FrameInputStream;
+
+import utilities.compression.BlockCompressor;
+import utilities.compression.CompressionHelper;
+
+import enums.CompressionType;
+import enums.DecodingMode;
+
+/**
+ * Selector-based event loop that accepts and reads the TCP connections of a launcher, on behalf of all
+ * its TCP multiplexers, replacing the previous accepter thread and thread-per-origin relayers.
+ * 
+ * Connections are shared by many streams (see TCPConnectionManager). Every connection has its own buffer,
+ * where records are accumulated until complete and then demultiplexed into their streams. Received elements
+ * are handed to the multiplexers round-robin across streams; elements that do not fit in a full multiplexer
+ * stay in their stream, which is resumed once a reader takes elements from the multiplexer. Since senders never
+ * exceed the credits granted per stream, the connection keeps being read, and a slow multiplexer never blocks the
+ * other streams on the same connection.
+ * 
+ * The number of loops is given by the property hammr.communication.event_loops (default: 2).
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class TCPEventLoop extends Thread {
+	private static final int DEFAULT_EVENT_LOOPS = 2;
+
+	private static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	private static final int HEADER_SIZE = 5;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static TCPEventLoop[] eventLoops;
+
+	private static AtomicInteger nextEventLoop = new AtomicInteger(0);
+
+	private Selector selector;
+
+	private Queue<Runnable> pendingTasks;
+
+	// Streams with elements (or a close) not handed to their multiplexers yet, served round-robin
+	private Set<InboundStream> readyStreams;
+
+	// Streams waiting for room in a full multiplexer, and the multiplexers that had room freed since
+	private Map<TCPChannelElementMultiplexer, StalledMultiplexer> stalledMultiplexers;
+	private Queue<StalledMultiplexer> resumedMultiplexers;
+
+	/**
+	 * Obtains one of the event loops of this launcher, in a round-robin fashion.
+	 * The loops are created and started on the first call.
+	 * 
+	 * @return One of the event loops of this launcher.
+	 * 
+	 * @throws IOException If the selectors cannot be opened.
+	 */
+	public static synchronized TCPEventLoop getEventLoop() throws IOException {
+		if(eventLoops == null) {
+			int numberEventLoops = DEFAULT_EVENT_LOOPS;
+
+			String eventLoopsProperty = System.getProperty("hammr.communication.event_loops");
+
+			if(eventLoopsProperty != null) {
+				numberEventLoops = Math.max(1, Integer.parseInt(eventLoopsProperty));
+			}
+
+			TCPEventLoop[] created = new TCPEventLoop[numberEventLoops];
+
+			for(int i = 0; i < numberEventLoops; i++) {
+				created[i] = new TCPEventLoop(i);
+
+				created[i].start();
+			}
+
+			eventLoops = created;
+		}
+
+		return eventLoops[(nextEventLoop.getAndIncrement() & Integer.MAX_VALUE) % eventLoops.length];
+	}
+
+	private TCPEventLoop(int identifier) throws IOException {
+		super("TCPEventLoop-" + identifier);
+
+		setDaemon(true);
+
+		this.selector = Selector.open();
+
+		this.pendingTasks = new ConcurrentLinkedQueue<Runnable>();
+
+		this.readyStreams = new LinkedHashSet<InboundStream>();
+
+		this.stalledMultiplexers = new HashMap<TCPChannelElementMultiplexer, StalledMultiplexer>();
+		this.resumedMultiplexers = new ConcurrentLinkedQueue<StalledMultiplexer>();
+	}
+
+	/**
+	 * Starts accepting connections from other launchers.
+	 * 
+	 * @param serverSocketChannel Server channel of the launcher.
+	 * 
+	 * @throws IOException If the server channel cannot be made non-blocking.
+	 */
+	public void register(final ServerSocketChannel serverSocketChannel) throws IOException {
+		serverSocketChannel.configureBlocking(false);
+
+		execute(new Runnable() {
+			public void run() {
+				try {
+					serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT, serverSocketChannel);
+				} catch (IOException exception) {
+					System.err.println("Error registering server channel for TCP connections");
+
+					exception.printStackTrace();
+				}
+			}
+		});
+	}
+
+	private void register(final SocketChannel socketChannel) throws IOException {
+		socketChannel.configureBlocking(false);
+
+		socketChannel.socket().setTcpNoDelay(true);
+
+		execute(new Runnable() {
+			public void run() {
+				try {
+					Connection connection = new Connection(socketChannel);
+
+					connection.key = socketChannel.register(selector, SelectionKey.OP_READ, connection);
+				} catch (IOException exception) {
+					System.err.println("Error registering client channel for TCP connections");
+
+					exception.printStackTrace();
+				}
+			}
+		});
+	}
+
+	private void execute(Runnable task) {
+		pendingTasks.add(task);
+
+		selector.wakeup();
+	}
+
+	public void run() {
+		while(true) {
+			try {
+				selector.select();
+			} catch (IOException exception) {
+				System.err.println("Error selecting TCP channels (I/O error)");
+
+				exception.printStackTrace();
+				continue;
+			}
+
+			Runnable task;
+
+			while((task = pendingTasks.poll()) != null) {
+				task.run();
+			}
+
+			StalledMultiplexer stalledMultiplexer;
+
+			while((stalledMultiplexer = resumedMultiplexers.poll()) != null) {
+				stalledMultiplexer.resume();
+			}
+
+			Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+
+			while(iterator.hasNext()) {
+				SelectionKey key = iterator.next();
+
+				iterator.remove();
+
+				if(!key.isValid()) {
+					continue;
+				}
+
+				if(key.isAcceptable()) {
+					accept((ServerSocketChannel) key.attachment());
+
+					continue;
+				}
+
+				Connection connection = (Connection) key.attachment();
+
+				if(key.isWritable()) {
+					connection.write();
+				}
+
+				if(key.isValid() && key.isReadable()) {
+					connection.read();
+				}
+			}
+
+			if(!readyStreams.isEmpty()) {
+				deliver();
+			}
+		}
+	}
+
+	/**
+	 * Hands the elements of the ready streams to their multiplexers, one element per stream at a time, so that
+	 * origins feeding the same multiplexer share its free slots fairly instead of the first one taking them all.
+	 */
+	private void deliver() {
+		List<InboundStream> streams = new ArrayList<InboundStream>(readyStreams);
+
+		readyStreams.clear();
+
+		// Streams being served are no longer stalled, and stall again when settled if their multiplexers are still full
+
+		for(InboundStream stream: streams) {
+			StalledMultiplexer stalledMultiplexer = stalledMultiplexers.get(stream.multiplexer);
+
+			if(stalledMultiplexer != null) {
+				stalledMultiplexer.streams.remove(stream);
+			}
+		}
+
+		boolean progress = true;
+
+		while(progress) {
+			progress = false;
+
+			for(InboundStream stream: streams) {
+				progress |= stream.deliverOne();
+			}
+		}
+
+		for(InboundStream stream: streams) {
+			stream.settle();
+		}
+
+		// Multiplexers without stalled streams left stop notifying this loop
+
+		Iterator<StalledMultiplexer> iterator = stalledMultiplexers.values().iterator();
+
+		while(iterator.hasNext()) {
+			StalledMultiplexer stalledMultiplexer = iterator.next();
+
+			if(stalledMultiplexer.streams.isEmpty()) {
+				stalledMultiplexer.multiplexer.removeSpaceListener(stalledMultiplexer);
+
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Parks a stream until a reader takes elements from its multiplexer.
+	 * 
+	 * @param stream Stream that found its multiplexer full.
+	 */
+	private void stall(InboundStream stream) {
+		StalledMultiplexer stalledMultiplexer = stalledMultiplexers.get(stream.multiplexer);
+
+		if(stalledMultiplexer == null) {
+			stalledMultiplexer = new StalledMultiplexer(stream.multiplexer);
+
+			stalledMultiplexers.put(stream.multiplexer, stalledMultiplexer);
+
+			stream.multiplexer.addSpaceListener(stalledMultiplexer);
+
+			// Room freed before the listener was added was not notified, so the streams are retried once anyway
+
+			stalledMultiplexer.ready();
+		}
+
+		stalledMultiplexer.streams.add(stream);
+	}
+
+	private void accept(ServerSocketChannel serverSocketChannel) {
+		try {
+			SocketChannel socketChannel;
+
+			while((socketChannel = serverSocketChannel.accept()) != null) {
+				getEventLoop().register(socketChannel);
+			}
+		} catch (IOException exception) {
+			System.err.println("Error accepting client (I/O error)");
+
+			exception.printStackTrace();
+		}
+	}
+
+	private class Connection {
+		private SocketChannel socketChannel;
+		private SelectionKey key;
+
+		private ByteBuffer buffer;
+
+		// Credits waiting to be sent back to the other launcher
+		private ByteBuffer outgoing;
+
+		private FrameInputStream frameInputStream;
+		private ContextDataInputStream frameDataInputStream;
+
+		private boolean headerRead;
+
+		private Map<Integer, InboundStream> streams;
+
+		// Decompressors for compressed batches, created on demand, and the buffer batches are decompressed into
+		private BlockCompressor[] decompressors;
+		private ByteBuffer decompressed;
+
+		public Connection(SocketChannel socketChannel) {
+			this.socketChannel = socketChannel;
+
+			this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+
+			this.outgoing = ByteBuffer.allocate(1024);
+
+			this.frameInputStream = new FrameInputStream();
+			this.frameDataInputStream = new ContextDataInputStream(frameInputStream, null);
+
+			this.streams = new HashMap<Integer, InboundStream>();
+
+			this.decompressors = new BlockCompressor[CompressionType.values().length];
+		}
+
+		public void read() {
+			boolean endOfStream = false;
+
+			try {
+				if(socketChannel.read(buffer) < 0) {
+					endOfStream = true;
+				}
+
+				buffer.flip();
+
+				try {
+					dispatch();
+				} finally {
+					buffer.compact();
+				}
+			} catch (IOException exception) {
+				System.err.println("Error receiving data from " + socketChannel.socket().getRemoteSocketAddress() + " (I/O error)");
+
+				exception.printStackTrace();
+
+				endOfStream = true;
+			}
+
+			if(endOfStream) {
+				finish();
+			}
+		}
+
+		/**
+		 * Demultiplexes all the complete records in the buffer into their streams.
+		 */
+		private void dispatch() throws IOException {
+			while(true) {
+				if(!headerRead) {
+					if(buffer.remaining() < HEADER_SIZE) {
+						return;
+					}
+
+					int magic = buffer.getInt();
+
+					if(magic != ChannelElementOutputStream.STREAM_MAGIC) {
+						throw new StreamCorruptedException("Invalid connection header: " + Integer.toHexString(magic));
+					}
+
+					int version = buffer.get() & 0xFF;
+
+					if(version != ChannelElementOutputStream.STREAM_VERSION) {
+						throw new StreamCorruptedException("Unsupported connection version: " + version);
+					}
+
+					headerRead = true;
+				}
+
+				int start = buffer.position();
+
+				int length = readVarInt(buffer.limit());
+
+				if(length < 0 || buffer.remaining() < length) {
+					buffer.position(start);
+
+					ensureCapacity(length);
+					return;
+				}
+
+				int end = buffer.position() + length;
+
+				int type = buffer.get() & 0xFF;
+				int identifier = readVarInt(end);
+
+				switch(type) {
+				case TCPConnectionManager.MESSAGE_OPEN:
+					String target = readString(end);
+					String origin = readString(end);
+
+					open(identifier, target, origin);
+					break;
+				case TCPConnectionManager.MESSAGE_DATA:
+					receive(identifier, end);
+					break;
+				case TCPConnectionManager.MESSAGE_CLOSE:
+					close(identifier);
+					break;
+				default:
+					System.err.println("Unexpected message " + type + " received from " + socketChannel.socket().getRemoteSocketAddress());
+				}
+
+				buffer.position(end);
+			}
+		}
+
+		private void open(int identifier, String target, String origin) {
+			TCPChannelElementMultiplexer multiplexer = TCPConnectionManager.getInstance().getMultiplexer(target);
+
+			if(multiplexer == null) {
+				System.err.println("Stream from origin \"" + origin + "\" targets unknown multiplexer \"" + target + "\"");
+			}
+
+			InboundStream stream = new InboundStream(this, identifier, target, origin, multiplexer);
+
+			streams.put(identifier, stream);
+
+			// The sender starts without credits; the first grant opens the window
+
+			grant(identifier, stream.window, stream.windowBytes);
+		}
+
+		private void receive(int identifier, int end) throws IOException {
+			InboundStream stream = streams.get(identifier);
+
+			if(stream == null) {
+				throw new StreamCorruptedException("Data received for unknown stream " + identifier);
+			}
+
+			if(buffer.position() >= end) {
+				throw new StreamCorruptedException("Data record without compression type");
+			}
+
+			int compression = buffer.get() & 0xFF;
+
+			if(compression == CompressionType.NONE.ordinal()) {
+				receiveFrames(stream, buffer, end);
+			}
+			else {
+				ByteBuffer frames = decompress(compression, end);
+
+				receiveFrames(stream, frames, frames.limit());
+			}
+
+			readyStreams.add(stream);
+		}
+
+		/**
+		 * Decompresses the rest of a data record into the decompression buffer.
+		 * 
+		 * @return The decompression buffer, positioned at the beginning of the frames and limited at their end.
+		 */
+		private ByteBuffer decompress(int compression, int end) throws IOException {
+			if(compression >= decompressors.length) {
+				throw new StreamCorruptedException("Unknown compression type: " + compression);
+			}
+
+			int length = readVarInt(end);
+
+			if(length < 0) {
+				throw new StreamCorruptedException("Compressed batch without uncompressed length");
+			}
+
+			if(decompressors[compression] == null) {
+				decompressors[compression] = CompressionHelper.createCompressor(CompressionType.values()[compression]);
+			}
+
+			if(decompressed == null || decompressed.capacity() < length) {
+				decompressed = ByteBuffer.allocate(Math.max(length, DEFAULT_BUFFER_SIZE));
+			}
+
+			decompressors[compression].decompress(buffer.array(), buffer.arrayOffset() + buffer.position(), end - buffer.position(), decompressed.array(), decompressed.arrayOffset(), length);
+
+			buffer.position(end);
+
+			decompressed.clear();
+			decompressed.limit(length);
+
+			return decompressed;
+		}
+
+		/**
+		 * Decodes the channel element frames from the source, up to the informed limit.
+		 */
+		private void receiveFrames(InboundStream stream, ByteBuffer source, int end) throws IOException {
+			while(source.position() < end) {
+				int length = readVarInt(source, end);
+
+				if(length < 0 || source.position() + length > end) {
+					throw new StreamCorruptedException("Channel element frame exceeds its record");
+				}
+
+				if(stream.multiplexer != null && stream.multiplexer.getDecodingMode() != DecodingMode.EAGER) {
+					ChannelElement channelElement = decodeDeferred(stream.multiplexer, source.array(), source.arrayOffset() + source.position(), length);
+
+					if(channelElement != null) {
+						stream.pending.add(channelElement);
+						stream.pendingSizes.add(length);
+
+						source.position(source.position() + length);
+
+						continue;
+					}
+				}
+
+				if(stream.multiplexer != null) {
+					frameInputStream.setFrame(source.array(), source.arrayOffset() + source.position(), length);
+
+					frameDataInputStream.setSerializedValueReader(stream.serializedValueReader);
+
+					ChannelElement channelElement = stream.multiplexer.getCodec().decode(frameDataInputStream);
+
+					if(frameInputStream.available() != 0) {
+						throw new StreamCorruptedException("Channel element frame not fully consumed by the codec");
+					}
+
+					stream.pending.add(channelElement);
+					stream.pendingSizes.add(length);
+				}
+				else {
+					// Elements of streams without a multiplexer are discarded, but still returned as credits
+					stream.delivered++;
+					stream.deliveredBytes += length;
+				}
+
+				source.position(source.position() + length);
+			}
+		}
+
+		private void close(int identifier) {
+			InboundStream stream = streams.get(identifier);
+
+			if(stream == null) {
+				System.err.println("Close received for unknown stream " + identifier);
+
+				return;
+			}
+
+			stream.closed = true;
+
+			readyStreams.add(stream);
+		}
+
+		/**
+		 * Creates an element that keeps its frame, according to the decoding mode of the multiplexer.
+		 * 
+		 * @return The element, or null if it should be decoded eagerly.
+		 */
+		private ChannelElement decodeDeferred(TCPChannelElementMultiplexer multiplexer, byte[] frame, int offset, int length) {
+			ChannelElementCodec codec = multiplexer.getCodec();
+
+			if(!BinaryChannelElementCodec.isContextFree(codec, frame, offset, length)) {
+				return null;
+			}
+
+			if(multiplexer.getDecodingMode() == DecodingMode.PASS_THROUGH) {
+				return new RawChannelElement(Arrays.copyOfRange(frame, offset, offset + length), codec);
+			}
+
+			if(codec instanceof BinaryChannelElementCodec) {
+				return ((BinaryChannelElementCodec) codec).decodeLazily(frame, offset, length);
+			}
+
+			return null;
+		}
+
+		/**
+		 * Queues credits to be sent back for a stream, and tries to send them right away.
+		 */
+		public void grant(int identifier, int credits, int creditBytes) {
+			if(outgoing.remaining() < 32) {
+				ByteBuffer grown = ByteBuffer.allocate(outgoing.capacity() * 2);
+
+				outgoing.flip();
+				grown.put(outgoing);
+
+				outgoing = grown;
+			}
+
+			int length = 1 + CodecHelper.getVarIntSize(identifier) + CodecHelper.getVarIntSize(credits) + CodecHelper.getVarIntSize(creditBytes);
+
+			writeVarInt(outgoing, length);
+
+			outgoing.put((byte) TCPConnectionManager.MESSAGE_CREDIT);
+
+			writeVarInt(outgoing, identifier);
+			writeVarInt(outgoing, credits);
+			writeVarInt(outgoing, creditBytes);
+
+			write();
+		}
+
+		public void write() {
+			if(!key.isValid()) {
+				return;
+			}
+
+			outgoing.flip();
+
+			try {
+				socketChannel.write(outgoing);
+			} catch (IOException exception) {
+				System.err.println("Error sending credits to " + socketChannel.socket().getRemoteSocketAddress() + " (I/O error)");
+
+				exception.printStackTrace();
+
+				outgoing.clear();
+				return;
+			}
+
+			if(outgoing.hasRemaining()) {
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+			else {
+				key.interestOps(SelectionKey.OP_READ);
+			}
+
+			outgoing.compact();
+		}
+
+		/**
+		 * Reads a variable-length integer from the buffer, without going past the informed limit.
+		 * 
+		 * @return The integer read, or -1 if the buffer does not contain it entirely.
+		 */
+		private int readVarInt(int limit) throws IOException {
+			return readVarInt(buffer, limit);
+		}
+
+		private int readVarInt(ByteBuffer source, int limit) throws IOException {
+			int result = 0;
+
+			for(int shift = 0; source.position() < limit; shift += 7) {
+				if(shift > 28) {
+					throw new StreamCorruptedException("Malformed variable-length integer");
+				}
+
+				int current = source.get() & 0xFF;
+
+				result |= (current & 0x7F) << shift;
+
+				if((current & 0x80) == 0) {
+					return result;
+				}
+			}
+
+			return -1;
+		}
+
+		private String readString(int limit) throws IOException {
+			int length = readVarInt(limit);
+
+			if(length < 0 || buffer.position() + length > limit) {
+				throw new StreamCorruptedException("String exceeds its record");
+			}
+
+			String result = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF8);
+
+			buffer.position(buffer.position() + length);
+
+			return result;
+		}
+
+		/**
+		 * Grows the buffer if an incomplete record would not fit in it. Should be called with the buffer flipped.
+		 */
+		private void ensureCapacity(int length) {
+			// The length prefix takes at most five bytes
+			int required = length + 5;
+
+			if(length < 0 || required <= buffer.capacity()) {
+				return;
+			}
+
+			ByteBuffer grown = ByteBuffer.allocate(Math.max(required, buffer.capacity() * 2));
+
+			grown.put(buffer);
+			grown.flip();
+
+			buffer = grown;
+		}
+
+		/**
+		 * Handles the other launcher closing the connection. Streams that were not closed explicitly are closed,
+		 * so that their multiplexers are not left waiting.
+		 */
+		private void finish() {
+			key.cancel();
+
+			try {
+				socketChannel.close();
+			} catch (IOException exception) {
+				System.err.println("Error closing connection (I/O error)");
+
+				exception.printStackTrace();
+			}
+
+			for(BlockCompressor decompressor: decompressors) {
+				if(decompressor != null) {
+					decompressor.end();
+				}
+			}
+
+			for(InboundStream stream: new ArrayList<InboundStream>(streams.values())) {
+				if(!stream.closed) {
+					System.err.println("Connection closed before stream from origin \"" + stream.origin + "\" was closed");
+
+					stream.closed = true;
+
+					readyStreams.add(stream);
+				}
+			}
+		}
+	}
+
+	private class InboundStream {
+		private Connection connection;
+
+		private int identifier;
+
+		private String target;
+		private String origin;
+
+		private TCPChannelElementMultiplexer multiplexer;
+
+		// Credit window granted to the sender, in elements and in bytes
+		private int window;
+		private int windowBytes;
+
+		// Elements received but not accepted yet by the multiplexer, and their encoded sizes; bounded by the window
+		private Queue<ChannelElement> pending;
+		private Queue<Integer> pendingSizes;
+
+		// Elements and bytes accepted by the multiplexer, but not returned as credits yet
+		private int delivered;
+		private int deliveredBytes;
+
+		// State of the Java serialization fallback, kept per stream across frames
+		private SerializedValueReader serializedValueReader;
+
+		private boolean closed;
+
+		public InboundStream(Connection connection, int identifier, String target, String origin, TCPChannelElementMultiplexer multiplexer) {
+			this.connection = connection;
+
+			this.identifier = identifier;
+
+			this.target = target;
+			this.origin = origin;
+
+			this.multiplexer = multiplexer;
+
+			if(multiplexer != null) {
+				this.window = multiplexer.getStreamWindow();
+				this.windowBytes = multiplexer.getStreamWindowBytes();
+			}
+			else {
+				this.window = TCPConnectionManager.getInstance().getStreamWindow();
+				this.windowBytes = TCPConnectionManager.getInstance().getStreamWindowBytes();
+			}
+
+			this.pending = new LinkedList<ChannelElement>();
+			this.pendingSizes = new LinkedList<Integer>();
+
+			this.serializedValueReader = new SerializedValueReader();
+		}
+
+		/**
+		 * Tries to move the first pending element into the multiplexer.
+		 * 
+		 * @return True if an element was moved; false if there is none or the multiplexer is full.
+		 */
+		public boolean deliverOne() {
+			if(pending.isEmpty() || !multiplexer.tryWrite(origin, pending.peek())) {
+				return false;
+			}
+
+			pending.poll();
+
+			delivered++;
+			deliveredBytes += pendingSizes.poll();
+
+			return true;
+		}
+
+		/**
+		 * Returns credits to the sender for the elements moved so far, and closes the origin once the stream is drained.
+		 */
+		public void settle() {
+			if(delivered >= window / 4 || deliveredBytes >= windowBytes / 4 || (delivered > 0 && pending.isEmpty())) {
+				connection.grant(identifier, delivered, deliveredBytes);
+
+				delivered = 0;
+				deliveredBytes = 0;
+			}
+
+			if(!pending.isEmpty()) {
+				stall(this);
+
+				return;
+			}
+
+			if(closed) {
+				if(multiplexer != null) {
+					if(!multiplexer.tryClose(origin)) {
+						stall(this);
+
+						return;
+					}
+
+					if(!multiplexer.hasOpenOrigins()) {
+						TCPConnectionManager.getInstance().unregisterMultiplexer(target);
+					}
+				}
+
+				connection.streams.remove(identifier);
+			}
+		}
+	}
+
+	/**
+	 * Streams of this loop waiting for room in a multiplexer, resumed when a reader of the multiplexer takes
+	 * elements from it. The notification comes from reader threads, and wakes up the selector at most once
+	 * between two resumes.
+	 */
+	private class StalledMultiplexer implements ReadinessListener {
+		private TCPChannelElementMultiplexer multiplexer;
+
+		private Set<InboundStream> streams;
+
+		private AtomicBoolean signalled;
+
+		public StalledMultiplexer(TCPChannelElementMultiplexer multiplexer) {
+			this.multiplexer = multiplexer;
+
+			this.streams = new LinkedHashSet<InboundStream>();
+
+			this.signalled = new AtomicBoolean(false);
+		}
+
+		public void ready() {
+			if(signalled.compareAndSet(false, true)) {
+				resumedMultiplexers.add(this);
+
+				selector.wakeup();
+			}
+		}
+
+		/**
+		 * Makes the streams ready again. Room freed from now on is notified again, since the streams may stall again.
+		 */
+		public void resume() {
+			signalled.set(false);
+
+			readyStreams.addAll(streams);
+
+			streams.clear();
+		}
+	}
+
+	private static void writeVarInt(ByteBuffer output, int value) {
+		while((value & ~0x7F) != 0) {
+			output.put((byte) ((value & 0x7F) | 0x80));
+
+			value >>>= 7;
+		}
+
+		output.put((byte) value);
+	}
+}
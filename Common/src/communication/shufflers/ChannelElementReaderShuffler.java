@@ -13,6 +13,11 @@ package communication.shufflers;
 
 import java.util.concurrent.TimeUnit;
 
+import java.util.concurrent.locks.LockSupport;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 import java.io.EOFException;
@@ -20,80 +25,275 @@ import java.io.IOException;
 
 import communication.channel.ChannelElement;
 import communication.channel.InputChannel;
+
+import communication.interfaces.ChannelElementReader;
+import communication.interfaces.ReadinessListener;
+
 import communication.readers.SHMChannelElementMultiplexer;
 
+/**
+ * Reads from whichever input has an element available, without relaying the inputs through an
+ * intermediate queue or dedicated threads.
+ * 
+ * Inputs that share a reader (all the SHM inputs of a node share one multiplexer, and so do all the TCP
+ * inputs) are read once through that reader. Multiplexers are polled without blocking and notify the
+ * shuffler when they become readable; other readers (e.g. files) are always considered readable. Inputs
+ * are visited round-robin, so that no input starves the others.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
 public class ChannelElementReaderShuffler {
-	private SHMChannelElementMultiplexer multiplexer;
+	// Upper bound on a single wait, in case a notification is missed
+	private static final long MAXIMUM_WAIT = TimeUnit.MILLISECONDS.toNanos(250);
+
+	private List<ChannelElementReader> readers;
+
+	private int nextReader;
+
+	private ReadinessSignal readinessSignal;
+
+	// Element obtained by peek(), returned by the next read
+	private ChannelElement lookahead;
 
 	public ChannelElementReaderShuffler(Map<String, InputChannel> inputs) throws IOException {
-		multiplexer = new SHMChannelElementMultiplexer(inputs.keySet());
+		this.readers = new ArrayList<ChannelElementReader>();
+
+		this.readinessSignal = new ReadinessSignal();
+
+		Map<ChannelElementReader, Boolean> distinctReaders = new IdentityHashMap<ChannelElementReader, Boolean>();
+
+		for(InputChannel inputChannel: inputs.values()) {
+			ChannelElementReader reader = inputChannel.getChannelElementReader();
 
-		Relayer relayer;
+			if(reader == null || distinctReaders.put(reader, Boolean.TRUE) != null) {
+				continue;
+			}
 
-		for(String name: inputs.keySet()) {
-			relayer = new Relayer(name, inputs.get(name), multiplexer);
+			if(reader instanceof SHMChannelElementMultiplexer) {
+				((SHMChannelElementMultiplexer) reader).setReadinessListener(readinessSignal);
+			}
 
-			relayer.start();
+			readers.add(reader);
 		}
 	}
 
 	public ChannelElement readSomeone() throws EOFException, IOException {
-		return multiplexer.read();
+		while(true) {
+			readinessSignal.clear();
+
+			ChannelElement channelElement = poll();
+
+			if(channelElement != null) {
+				return channelElement;
+			}
+
+			if(readers.isEmpty()) {
+				throw new EOFException();
+			}
+
+			readinessSignal.await(MAXIMUM_WAIT);
+		}
+	}
+
+	/**
+	 * Reads up to the informed number of elements from some input, waiting only until the first one is available.
+	 * 
+	 * @param channelElements List to which the elements read are appended.
+	 * @param maximum Maximum number of elements read (must be positive).
+	 * 
+	 * @return The number of elements read, which is at least one.
+	 * 
+	 * @throws EOFException If every input reached its end.
+	 */
+	public int readSomeone(List<ChannelElement> channelElements, int maximum) throws EOFException, IOException {
+		while(true) {
+			readinessSignal.clear();
+
+			int count = poll(channelElements, maximum);
+
+			if(count > 0) {
+				return count;
+			}
+
+			if(readers.isEmpty()) {
+				throw new EOFException();
+			}
+
+			readinessSignal.await(MAXIMUM_WAIT);
+		}
 	}
 
 	public ChannelElement tryReadSomeone() throws IOException {
-		return multiplexer.tryRead();
+		return poll();
 	}
 
 	public ChannelElement tryReadSomeone(int timeout, TimeUnit timeUnit) throws IOException {
-		return multiplexer.tryRead(timeout, timeUnit);
+		long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+
+		while(true) {
+			readinessSignal.clear();
+
+			ChannelElement channelElement = poll();
+
+			if(channelElement != null) {
+				return channelElement;
+			}
+
+			long remaining = deadline - System.nanoTime();
+
+			if(remaining <= 0 || (readers.isEmpty())) {
+				return null;
+			}
+
+			readinessSignal.await(Math.min(remaining, MAXIMUM_WAIT));
+		}
 	}
-	
-	public ChannelElement peek() {
-		return multiplexer.peek();
+
+	public ChannelElement peek() throws IOException {
+		if(lookahead == null) {
+			lookahead = poll();
+		}
+
+		return lookahead;
 	}
 
-	private class Relayer extends Thread {
-		private String origin;
+	/**
+	 * Obtains an element from some input without waiting for the multiplexers, discarding inputs that reached their end.
+	 * 
+	 * @return An element, or null if no input has one available.
+	 */
+	private ChannelElement poll() throws IOException {
+		if(lookahead != null) {
+			ChannelElement result = lookahead;
 
-		private InputChannel inputChannel;
+			lookahead = null;
 
-		private SHMChannelElementMultiplexer multiplexer;
+			return result;
+		}
 
-		public Relayer(String origin, InputChannel inputChannel, SHMChannelElementMultiplexer multiplexer) {
-			this.origin = origin;
+		for(int visited = 0; visited < readers.size(); visited++) {
+			nextReader = (nextReader + 1) % readers.size();
 
-			this.inputChannel = inputChannel;
+			ChannelElementReader reader = readers.get(nextReader);
 
-			this.multiplexer = multiplexer;
-		}
+			if(reader instanceof SHMChannelElementMultiplexer) {
+				SHMChannelElementMultiplexer multiplexer = (SHMChannelElementMultiplexer) reader;
 
-		public void run() {
-			ChannelElement channelElement;
+				ChannelElement channelElement = multiplexer.tryRead();
 
-			while(true) {
+				if(channelElement != null) {
+					return channelElement;
+				}
+
+				if(!multiplexer.isFinished()) {
+					continue;
+				}
+
+				multiplexer.setReadinessListener(null);
+			}
+			else {
 				try {
-					channelElement = inputChannel.read();
+					return reader.read();
 				} catch (EOFException exception) {
-					break;
-				} catch (IOException exception) {
-					System.err.println("Error reading channel handler for reader shuffler");
+					// Fall through and discard the reader
+				}
+			}
+
+			readers.remove(nextReader);
 
-					exception.printStackTrace();
-					break;
+			nextReader--;
+			visited--;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Obtains up to the informed number of elements from some input without waiting for the multiplexers,
+	 * discarding inputs that reached their end.
+	 * 
+	 * @param channelElements List to which the elements obtained are appended.
+	 * @param maximum Maximum number of elements obtained.
+	 * 
+	 * @return The number of elements obtained, or zero if no input has one available.
+	 */
+	private int poll(List<ChannelElement> channelElements, int maximum) throws IOException {
+		if(lookahead != null) {
+			channelElements.add(lookahead);
+
+			lookahead = null;
+
+			return 1;
+		}
+
+		for(int visited = 0; visited < readers.size(); visited++) {
+			nextReader = (nextReader + 1) % readers.size();
+
+			ChannelElementReader reader = readers.get(nextReader);
+
+			if(reader instanceof SHMChannelElementMultiplexer) {
+				SHMChannelElementMultiplexer multiplexer = (SHMChannelElementMultiplexer) reader;
+
+				int count = multiplexer.tryRead(channelElements, maximum);
+
+				if(count > 0) {
+					return count;
 				}
 
-				try {
-					multiplexer.write(origin, channelElement);
-				} catch (IOException exception) {
-					System.err.println("Error writing channel handler data to local reader shuffler multiplexer");
+				if(!multiplexer.isFinished()) {
+					continue;
+				}
 
-					exception.printStackTrace();
-					break;
+				multiplexer.setReadinessListener(null);
+			}
+			else {
+				try {
+					return reader.read(channelElements, maximum);
+				} catch (EOFException exception) {
+					// Fall through and discard the reader
 				}
 			}
 
-			multiplexer.close(origin);
+			readers.remove(nextReader);
+
+			nextReader--;
+			visited--;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Wakes up the reading thread when some multiplexer becomes readable. A signal sent between
+	 * clear() and await() makes await() return immediately, so no notification is lost.
+	 */
+	private static class ReadinessSignal implements ReadinessListener {
+		private volatile Thread waiter;
+
+		private volatile boolean signalled;
+
+		public void ready() {
+			signalled = true;
+
+			Thread current = waiter;
+
+			if(current != null) {
+				LockSupport.unpark(current);
+			}
+		}
+
+		public void clear() {
+			signalled = false;
+		}
+
+		public void await(long nanoseconds) {
+			waiter = Thread.currentThread();
+
+			if(!signalled) {
+				LockSupport.parkNanos(this, nanoseconds);
+			}
+
+			waiter = null;
 		}
 	}
 }
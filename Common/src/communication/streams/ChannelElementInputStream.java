@@ -1,5 +1,5 @@
 /*
-Copyright (c) 2010, Hammurabi Mendes
+Copyright (c) 2011, Hammurabi Mendes
 All rights reserved.
 
 Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
@@ -13,26 +13,349 @@ package communication.streams;
 
 import java.io.IOException;
 import java.io.EOFException;
+import java.io.StreamCorruptedException;
 
 import java.io.InputStream;
-import java.io.ObjectInputStream;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+
+import java.util.Arrays;
 
 import communication.channel.ChannelElement;
+import communication.channel.RawChannelElement;
+
+import communication.codecs.BinaryChannelElementCodec;
+import communication.codecs.CodecHelper;
+import communication.codecs.SerializedValueReader;
+
+import communication.interfaces.ChannelElementCodec;
+
+import enums.DecodingMode;
+
+/**
+ * Reads channel elements written by a ChannelElementOutputStream that used the same codec.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class ChannelElementInputStream extends DataInputStream {
+	private ChannelElementCodec codec;
+
+	private boolean headerRead;
+
+	private byte[] frame;
+
+	private FrameInputStream frameInputStream;
+	private ContextDataInputStream frameDataInputStream;
+
+	private DecodingMode decodingMode;
+
+	// Sync marker of streams written with sync markers, or null
+
+	private byte[] syncMarker;
+
+	// Bytes consumed from the underlying stream, and where the split being read ends
+
+	private PositionInputStream positionInputStream;
+
+	private long splitEnd = Long.MAX_VALUE;
+	private boolean splitFinished;
 
-public class ChannelElementInputStream extends ObjectInputStream {
 	public ChannelElementInputStream(InputStream inputStream) throws IOException {
-		super(inputStream);
+		this(inputStream, BinaryChannelElementCodec.getInstance());
+	}
+
+	public ChannelElementInputStream(InputStream inputStream, ChannelElementCodec codec) throws IOException {
+		this(inputStream, codec, ChannelElementOutputStream.DEFAULT_BUFFER_SIZE);
+	}
+
+	// A non-positive buffer size reads straight from the informed stream, for streams that are already in memory
+
+	public ChannelElementInputStream(InputStream inputStream, ChannelElementCodec codec, int bufferSize) throws IOException {
+		super(new PositionInputStream(bufferSize > 0 ? new BufferedInputStream(inputStream, bufferSize) : inputStream));
+
+		this.positionInputStream = (PositionInputStream) in;
+
+		this.codec = codec;
+
+		this.headerRead = false;
+
+		this.decodingMode = DecodingMode.EAGER;
+
+		this.frame = new byte[256];
+
+		this.frameInputStream = new FrameInputStream();
+		this.frameDataInputStream = new ContextDataInputStream(frameInputStream, new SerializedValueReader());
+	}
+
+	public ChannelElementCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Setter for how elements are decoded. Frames that depend on the state of the stream are always decoded eagerly.
+	 * 
+	 * @param decodingMode How elements are decoded.
+	 */
+	public void setDecodingMode(DecodingMode decodingMode) {
+		this.decodingMode = decodingMode;
+	}
+
+	/**
+	 * Restricts this stream to the elements of a byte range of the underlying file: the elements after the first
+	 * sync marker at or after the start of the range, up to the first sync marker at or after its end. The first
+	 * range of a file starts at its first element instead. Ranges that cover a file read every element exactly once.
+	 * 
+	 * Should be called before reading any element, with the stream positioned at the beginning of the file.
+	 * 
+	 * @param start Start of the range, in bytes from the beginning of the file.
+	 * @param end End of the range (exclusive), in bytes from the beginning of the file.
+	 * 
+	 * @throws IOException If the stream was not written with sync markers, and the range does not cover it entirely.
+	 */
+	public void setSplit(long start, long end) throws IOException {
+		ensureHeader();
+
+		splitEnd = end;
+
+		if(start <= positionInputStream.getPosition()) {
+			return;
+		}
+
+		if(syncMarker == null) {
+			throw new IOException("Channel stream written without sync markers cannot be split");
+		}
+
+		long remaining = start - positionInputStream.getPosition();
+
+		while(remaining > 0) {
+			long skipped = skip(remaining);
+
+			if(skipped <= 0) {
+				if(read() < 0) {
+					splitFinished = true;
+
+					return;
+				}
+
+				skipped = 1;
+			}
+
+			remaining -= skipped;
+		}
+
+		long syncPosition = seekSync();
+
+		if(syncPosition < 0 || syncPosition >= splitEnd) {
+			splitFinished = true;
+		}
 	}
 
 	public ChannelElement readChannelElement() throws EOFException, IOException {
-		try {
-			return (ChannelElement) readObject();
-		} catch (ClassNotFoundException exception) {
-			System.err.println("Error reading from channel: unknown class");
+		ensureHeader();
+
+		if(splitFinished) {
+			throw new EOFException();
+		}
+
+		long position = positionInputStream.getPosition();
+
+		int firstByte = read();
+
+		if(firstByte < 0) {
+			throw new EOFException();
+		}
+
+		int length = CodecHelper.readVarInt(this, firstByte);
+
+		// Empty frames precede sync markers, which end the current split when past its end
+
+		while(length == 0 && syncMarker != null) {
+			readSyncMarker();
+
+			if(position >= splitEnd) {
+				splitFinished = true;
+
+				throw new EOFException();
+			}
+
+			position = positionInputStream.getPosition();
+
+			firstByte = read();
+
+			if(firstByte < 0) {
+				throw new EOFException();
+			}
+
+			length = CodecHelper.readVarInt(this, firstByte);
+		}
+
+		if(length > frame.length) {
+			frame = new byte[Math.max(length, frame.length * 2)];
+		}
 
-			exception.printStackTrace();
+		readFully(frame, 0, length);
+
+		if(decodingMode != DecodingMode.EAGER && BinaryChannelElementCodec.isContextFree(codec, frame, 0, length)) {
+			if(decodingMode == DecodingMode.PASS_THROUGH) {
+				return new RawChannelElement(Arrays.copyOf(frame, length), codec);
+			}
+
+			if(codec instanceof BinaryChannelElementCodec) {
+				ChannelElement channelElement = ((BinaryChannelElementCodec) codec).decodeLazily(frame, 0, length);
+
+				if(channelElement != null) {
+					return channelElement;
+				}
+			}
+		}
+
+		frameInputStream.setFrame(frame, length);
+
+		ChannelElement channelElement = codec.decode(frameDataInputStream);
+
+		if(frameInputStream.available() != 0) {
+			throw new StreamCorruptedException("Channel element frame not fully consumed by the codec");
+		}
+
+		return channelElement;
+	}
+
+	public String readString() throws EOFException, IOException {
+		ensureHeader();
+
+		return CodecHelper.readString(this);
+	}
+
+	// The header is only read on the first access, so that empty inputs (e.g. /dev/null)
+	// behave as empty channels instead of failing when the channel is being set up
+
+	private void ensureHeader() throws IOException {
+		if(headerRead) {
+			return;
+		}
+
+		int magic = readInt();
+
+		if(magic != ChannelElementOutputStream.STREAM_MAGIC) {
+			throw new StreamCorruptedException("Invalid channel stream header: " + Integer.toHexString(magic));
+		}
+
+		int version = readUnsignedByte();
+
+		if(version == ChannelElementOutputStream.SYNC_STREAM_VERSION) {
+			syncMarker = new byte[ChannelElementOutputStream.SYNC_MARKER_SIZE];
+
+			readFully(syncMarker);
+		}
+		else if(version != ChannelElementOutputStream.STREAM_VERSION) {
+			throw new StreamCorruptedException("Unsupported channel stream version: " + version);
+		}
+
+		headerRead = true;
+	}
+
+	private void readSyncMarker() throws IOException {
+		for(int i = 0; i < syncMarker.length; i++) {
+			if(readUnsignedByte() != (syncMarker[i] & 0xFF)) {
+				throw new StreamCorruptedException("Invalid sync marker in channel stream");
+			}
+		}
+
+		frameDataInputStream.getSerializedValueReader().restart();
+	}
+
+	/**
+	 * Consumes the stream up to the end of the next sync marker.
+	 * 
+	 * @return The position where the sync marker starts, or -1 if no sync marker is found.
+	 */
+	private long seekSync() throws IOException {
+		// The marker is preceded by an empty frame, which is a zero byte
+
+		int patternLength = syncMarker.length + 1;
+
+		byte[] window = new byte[patternLength];
+
+		long count = 0;
+
+		while(true) {
+			int value = read();
+
+			if(value < 0) {
+				return -1;
+			}
+
+			window[(int) (count % patternLength)] = (byte) value;
+
+			count++;
+
+			if(count >= patternLength && value == (syncMarker[syncMarker.length - 1] & 0xFF) && matchesSync(window, count)) {
+				frameDataInputStream.getSerializedValueReader().restart();
+
+				return positionInputStream.getPosition() - patternLength;
+			}
+		}
+	}
+
+	private boolean matchesSync(byte[] window, long count) {
+		int patternLength = window.length;
+
+		for(int i = 0; i < patternLength; i++) {
+			byte expected = (i == 0 ? 0 : syncMarker[i - 1]);
+
+			if(window[(int) ((count + i) % patternLength)] != expected) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Stream that counts the bytes consumed from the underlying stream.
+	 */
+	private static class PositionInputStream extends FilterInputStream {
+		private long position;
+
+		public PositionInputStream(InputStream inputStream) {
+			super(inputStream);
+		}
+
+		public long getPosition() {
+			return position;
+		}
+
+		public int read() throws IOException {
+			int result = in.read();
+
+			if(result >= 0) {
+				position++;
+			}
+
+			return result;
+		}
+
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int result = in.read(buffer, offset, length);
+
+			if(result > 0) {
+				position += result;
+			}
+
+			return result;
+		}
+
+		public long skip(long length) throws IOException {
+			long result = in.skip(length);
+
+			position += result;
+
+			return result;
+		}
 
-			return null;
+		public boolean markSupported() {
+			return false;
 		}
 	}
 }
@@ -1,5 +1,5 @@
 /*
-Copyright (c) 2010, Hammurabi Mendes
+Copyright (c) 2011, Hammurabi Mendes
 All rights reserved.
 
 Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
@@ -14,27 +14,185 @@ package communication.streams;
 import java.io.IOException;
 
 import java.io.OutputStream;
-import java.io.ObjectOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+
+import java.util.UUID;
 
 import communication.channel.ChannelElement;
 
-public class ChannelElementOutputStream extends ObjectOutputStream {
-	private static long DEFAULT_WRITE_COUNT_FLUSH = 65535;
+import communication.codecs.BinaryChannelElementCodec;
+import communication.codecs.CodecHelper;
+import communication.codecs.SerializationPolicy;
+import communication.codecs.SerializationStatistics;
+import communication.codecs.SerializedValueWriter;
+
+import communication.interfaces.ChannelElementCodec;
+
+/**
+ * Writes channel elements as length-prefixed frames, each encoded by a pluggable codec.
+ * 
+ * The stream starts with a header (magic number and format version), followed by a sequence of
+ * frames. Each frame is a variable-length integer containing the size of the encoded element,
+ * followed by the encoded element itself.
+ * 
+ * Streams written with a sync interval (format version 2) carry a random sync marker in their header,
+ * and repeat it between frames about every sync interval bytes, as an empty frame followed by the
+ * marker. The object stream of the Java serialization fallback restarts at each sync marker, so a
+ * reader can start at any sync marker of a file (see ChannelElementInputStream.setSplit()).
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class ChannelElementOutputStream extends DataOutputStream {
+	public static final int STREAM_MAGIC = 0x484D5243;
+	public static final int STREAM_VERSION = 1;
+	public static final int SYNC_STREAM_VERSION = 2;
+
+	public static final int SYNC_MARKER_SIZE = 16;
+	public static final int DEFAULT_SYNC_INTERVAL = 1024 * 1024;
+
+	public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	private ChannelElementCodec codec;
 
-	private long writeCounter = 0L;
+	private ByteArrayOutputStream frameBuffer;
+	private DataOutputStream frameOutputStream;
+
+	private SerializedValueWriter serializedValueWriter;
+
+	private int syncInterval;
+	private byte[] syncMarker;
+
+	// Bytes of frames written since the last sync marker
+	private long bytesSinceSync;
 
 	public ChannelElementOutputStream(OutputStream outputStream) throws IOException {
-		super(outputStream);
+		this(outputStream, BinaryChannelElementCodec.getInstance());
+	}
+
+	public ChannelElementOutputStream(OutputStream outputStream, ChannelElementCodec codec) throws IOException {
+		this(outputStream, codec, DEFAULT_BUFFER_SIZE);
+	}
+
+	public ChannelElementOutputStream(OutputStream outputStream, ChannelElementCodec codec, int bufferSize) throws IOException {
+		this(outputStream, codec, bufferSize, 0);
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param outputStream The underlying stream.
+	 * @param codec The codec that encodes the elements.
+	 * @param bufferSize Size of the buffer of the stream.
+	 * @param syncInterval Approximate number of bytes between sync markers, or zero to write no sync markers.
+	 */
+	public ChannelElementOutputStream(OutputStream outputStream, ChannelElementCodec codec, int bufferSize, int syncInterval) throws IOException {
+		super(new BufferedOutputStream(outputStream, bufferSize));
+
+		this.codec = codec;
+
+		this.serializedValueWriter = new SerializedValueWriter(SerializationPolicy.getDefault());
+
+		this.frameBuffer = new ByteArrayOutputStream();
+		this.frameOutputStream = new ContextDataOutputStream(frameBuffer, serializedValueWriter);
+
+		this.syncInterval = syncInterval;
+
+		writeInt(STREAM_MAGIC);
+
+		if(syncInterval > 0) {
+			UUID uuid = UUID.randomUUID();
+
+			syncMarker = new byte[SYNC_MARKER_SIZE];
+
+			for(int i = 0; i < 8; i++) {
+				syncMarker[i] = (byte) (uuid.getMostSignificantBits() >>> (56 - 8 * i));
+				syncMarker[i + 8] = (byte) (uuid.getLeastSignificantBits() >>> (56 - 8 * i));
+			}
+
+			writeByte(SYNC_STREAM_VERSION);
+
+			write(syncMarker);
+		}
+		else {
+			writeByte(STREAM_VERSION);
+		}
+	}
+
+	public ChannelElementCodec getCodec() {
+		return codec;
+	}
+
+	public void setSerializationPolicy(SerializationPolicy serializationPolicy) {
+		serializedValueWriter.setSerializationPolicy(serializationPolicy);
+	}
+
+	public SerializationStatistics getSerializationStatistics() {
+		return serializedValueWriter.getSerializationStatistics();
 	}
 
 	public void writeChannelElement(ChannelElement channelElement) throws IOException {
-		writeCounter++;
+		checkSync();
+
+		frameBuffer.reset();
+
+		long serializedValues = serializedValueWriter.getValueCount();
+
+		codec.encode(channelElement, frameOutputStream);
+
+		frameOutputStream.flush();
+
+		if(serializedValueWriter.getValueCount() != serializedValues) {
+			// The frame depends on the object stream of this channel, and is marked as such
+
+			CodecHelper.writeVarInt(this, frameBuffer.size() + 1);
+
+			writeByte(BinaryChannelElementCodec.TAG_CHANNEL_CONTEXT);
+		}
+		else {
+			CodecHelper.writeVarInt(this, frameBuffer.size());
+		}
+
+		bytesSinceSync += frameBuffer.size();
+
+		frameBuffer.writeTo(this);
+	}
+
+	/**
+	 * Writes a frame already encoded with the codec of this stream.
+	 * 
+	 * @param frame The encoded frame.
+	 */
+	public void writeFrame(byte[] frame) throws IOException {
+		checkSync();
+
+		CodecHelper.writeVarInt(this, frame.length);
+
+		write(frame, 0, frame.length);
 
-		if((writeCounter % DEFAULT_WRITE_COUNT_FLUSH) == 0) {
-			flush();
-			reset();
+		bytesSinceSync += frame.length;
+	}
+
+	public void writeString(String string) throws IOException {
+		CodecHelper.writeString(this, string);
+	}
+
+	/**
+	 * Writes a sync marker if enough bytes were written since the last one. Frames written afterwards do not depend on
+	 * the object stream state before the marker.
+	 */
+	private void checkSync() throws IOException {
+		if(syncInterval <= 0 || bytesSinceSync < syncInterval) {
+			return;
 		}
 
-		writeObject(channelElement);
+		CodecHelper.writeVarInt(this, 0);
+
+		write(syncMarker);
+
+		serializedValueWriter.restart();
+
+		bytesSinceSync = 0L;
 	}
 }
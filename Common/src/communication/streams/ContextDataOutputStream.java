@@ -0,0 +1,38 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.streams;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+
+import communication.codecs.SerializedValueWriter;
+
+/**
+ * Data output stream for the frames of a single channel, carrying the state the codec keeps
+ * for that channel across frames.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class ContextDataOutputStream extends DataOutputStream {
+	private SerializedValueWriter serializedValueWriter;
+
+	public ContextDataOutputStream(OutputStream outputStream, SerializedValueWriter serializedValueWriter) {
+		super(outputStream);
+
+		this.serializedValueWriter = serializedValueWriter;
+	}
+
+	public SerializedValueWriter getSerializedValueWriter() {
+		return serializedValueWriter;
+	}
+}
@@ -13,20 +13,60 @@ package communication.writers;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.List;
 
 import utilities.filesystem.FileHelper;
 import utilities.filesystem.Filename;
 
+import utilities.compression.BlockCompressedOutputStream;
+
 import communication.channel.ChannelElement;
-import communication.interfaces.ChannelElementWriter;
+import communication.codecs.BinaryChannelElementCodec;
+import communication.codecs.EncodedChannelElement;
+import communication.codecs.SerializationPolicy;
+import communication.codecs.SerializationStatistics;
+import communication.interfaces.ChannelElementCodec;
+import communication.interfaces.EncodedChannelElementWriter;
 
 import communication.streams.ChannelElementOutputStream;
 
-public final class FileChannelElementWriter implements ChannelElementWriter {
+import enums.CompressionType;
+
+public final class FileChannelElementWriter implements EncodedChannelElementWriter {
 	private final ChannelElementOutputStream channelElementOutputStream;
 
 	public FileChannelElementWriter(Filename filename) throws FileNotFoundException, IOException {
-		channelElementOutputStream = new ChannelElementOutputStream(FileHelper.openW(filename));
+		this(filename, BinaryChannelElementCodec.getInstance());
+	}
+
+	public FileChannelElementWriter(Filename filename, ChannelElementCodec codec) throws FileNotFoundException, IOException {
+		this(filename, codec, CompressionType.NONE);
+	}
+
+	public FileChannelElementWriter(Filename filename, ChannelElementCodec codec, CompressionType compressionType) throws FileNotFoundException, IOException {
+		OutputStream outputStream = FileHelper.openChannelW(filename);
+
+		// Uncompressed files carry sync markers, so that they can be read in byte ranges
+
+		int syncInterval = ChannelElementOutputStream.DEFAULT_SYNC_INTERVAL;
+
+		if(compressionType != CompressionType.NONE) {
+			outputStream = new BlockCompressedOutputStream(outputStream, compressionType);
+
+			syncInterval = 0;
+		}
+
+		channelElementOutputStream = new ChannelElementOutputStream(outputStream, codec, ChannelElementOutputStream.DEFAULT_BUFFER_SIZE, syncInterval);
+	}
+
+	public synchronized void setSerializationPolicy(SerializationPolicy serializationPolicy) {
+		channelElementOutputStream.setSerializationPolicy(serializationPolicy);
+	}
+
+	public synchronized SerializationStatistics getSerializationStatistics() {
+		return channelElementOutputStream.getSerializationStatistics();
 	}
 
 	public synchronized boolean write(ChannelElement channelElement) throws IOException {
@@ -35,6 +75,26 @@ public final class FileChannelElementWriter implements ChannelElementWriter {
 		return true;
 	}
 
+	public synchronized boolean write(List<? extends ChannelElement> channelElements) throws IOException {
+		for(ChannelElement channelElement: channelElements) {
+			channelElementOutputStream.writeChannelElement(channelElement);
+		}
+
+		return true;
+	}
+
+	public synchronized boolean writeEncoded(EncodedChannelElement encodedChannelElement) throws IOException {
+		byte[] frame = encodedChannelElement.getFrame(channelElementOutputStream.getCodec());
+
+		if(frame == null) {
+			return write(encodedChannelElement.getChannelElement());
+		}
+
+		channelElementOutputStream.writeFrame(frame);
+
+		return true;
+	}
+
 	public synchronized boolean flush() throws IOException {
 		channelElementOutputStream.flush();
 
@@ -0,0 +1,544 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package communication.writers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import utilities.filesystem.FileHelper;
+import utilities.filesystem.Filename;
+
+import utilities.compression.BlockCompressedOutputStream;
+
+import communication.channel.ChannelElement;
+import communication.codecs.BinaryChannelElementCodec;
+import communication.codecs.CodecHelper;
+import communication.codecs.EncodedChannelElement;
+import communication.interfaces.ChannelElementCodec;
+import communication.interfaces.ChannelElementWriter;
+import communication.interfaces.EncodedChannelElementWriter;
+import communication.interfaces.FramedChannelElement;
+
+import communication.streams.ChannelElementOutputStream;
+
+import enums.CompressionType;
+
+/**
+ * Writer of a partitioned file, shared by the partitioned output channels of a node that target the same file.
+ * 
+ * Elements are kept as context-free frames, and sorted by the informed comparator inside each partition. When the
+ * buffered frames exceed the sort buffer size, they are spilled to a temporary sorted run. Once the writers of all
+ * partitions are closed, the runs and the buffered frames are merged into the final file: every partition is written
+ * as a complete channel stream (optionally compressed on its own), and the partition offsets are written to an index
+ * file, named after the data file with the INDEX_SUFFIX appended.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public final class PartitionedFileChannelElementWriter {
+	public static final String INDEX_SUFFIX = ".index";
+
+	// Approximate memory used by a buffered entry besides its frame (entry, element and key objects)
+
+	private static final int ENTRY_OVERHEAD = 96;
+
+	private final Filename filename;
+
+	private final ChannelElementCodec codec;
+	private final CompressionType compressionType;
+
+	private final Comparator<Entry> comparator;
+
+	private final long sortBufferSize;
+
+	private final String spillDirectory;
+
+	private final List<List<Entry>> partitions;
+
+	private final boolean[] closedPartitions;
+	private int openPartitions;
+
+	private long bufferedBytes;
+
+	private final List<Run> runs;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param filename The partitioned file.
+	 * @param numberPartitions Number of partitions of the file.
+	 * @param comparator Comparator that sorts the elements inside each partition.
+	 * @param codec Codec that encodes the elements.
+	 * @param compressionType Compression applied to each partition.
+	 * @param sortBufferSize Bytes of frames buffered before a sorted run is spilled.
+	 * @param spillDirectory Local directory that receives the sorted runs.
+	 */
+	public PartitionedFileChannelElementWriter(Filename filename, int numberPartitions, Comparator<ChannelElement> comparator, ChannelElementCodec codec, CompressionType compressionType, long sortBufferSize, String spillDirectory) {
+		this.filename = filename;
+
+		this.codec = codec;
+		this.compressionType = compressionType;
+
+		this.comparator = new EntryComparator(comparator);
+
+		this.sortBufferSize = sortBufferSize;
+
+		this.spillDirectory = spillDirectory;
+
+		this.partitions = new ArrayList<List<Entry>>(numberPartitions);
+
+		for(int i = 0; i < numberPartitions; i++) {
+			partitions.add(new ArrayList<Entry>());
+		}
+
+		this.closedPartitions = new boolean[numberPartitions];
+		this.openPartitions = numberPartitions;
+
+		this.runs = new ArrayList<Run>();
+	}
+
+	/**
+	 * Obtains the index file that accompanies a partitioned file.
+	 * 
+	 * @param filename The partitioned file.
+	 * 
+	 * @return The index file of the partitioned file.
+	 */
+	public static Filename getIndexFilename(Filename filename) {
+		return new Filename(filename.getLocation() + INDEX_SUFFIX, filename.getProtocol());
+	}
+
+	/**
+	 * Obtains the writer for one partition of the file. The file is written when the writers of all partitions are closed.
+	 * 
+	 * @param partition The partition.
+	 * 
+	 * @return The writer for the partition.
+	 */
+	public ChannelElementWriter getPartitionWriter(int partition) {
+		return new PartitionWriter(partition);
+	}
+
+	private synchronized boolean add(int partition, EncodedChannelElement encodedChannelElement) throws IOException {
+		if(closedPartitions[partition]) {
+			throw new IOException("Partition " + partition + " of " + filename + " was already closed");
+		}
+
+		byte[] frame = encodedChannelElement.getFrame(codec);
+
+		if(frame == null) {
+			frame = new EncodedChannelElement(encodedChannelElement.getChannelElement()).getFrame(codec);
+		}
+
+		partitions.get(partition).add(createEntry(frame));
+
+		bufferedBytes += frame.length + ENTRY_OVERHEAD;
+
+		if(bufferedBytes > sortBufferSize) {
+			spill();
+		}
+
+		return true;
+	}
+
+	private synchronized boolean close(int partition) throws IOException {
+		if(closedPartitions[partition]) {
+			return true;
+		}
+
+		closedPartitions[partition] = true;
+
+		if(--openPartitions == 0) {
+			finish();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Writes the buffered entries, sorted, to a temporary run.
+	 */
+	private void spill() throws IOException {
+		File file = File.createTempFile("hammr-shuffle-", ".run", new File(spillDirectory));
+
+		file.deleteOnExit();
+
+		int[] counts = new int[partitions.size()];
+
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), ChannelElementOutputStream.DEFAULT_BUFFER_SIZE));
+
+		try {
+			for(int i = 0; i < partitions.size(); i++) {
+				List<Entry> entries = partitions.get(i);
+
+				Collections.sort(entries, comparator);
+
+				for(Entry entry: entries) {
+					CodecHelper.writeVarInt(output, entry.frame.length);
+
+					output.write(entry.frame);
+				}
+
+				counts[i] = entries.size();
+
+				entries.clear();
+			}
+		} finally {
+			output.close();
+		}
+
+		runs.add(new Run(file, counts));
+
+		bufferedBytes = 0L;
+	}
+
+	/**
+	 * Merges the runs and the buffered entries into the partitioned file, and writes its index.
+	 */
+	private void finish() throws IOException {
+		long[] offsets = new long[partitions.size() + 1];
+
+		RegionOutputStream fileOutput = new RegionOutputStream(FileHelper.openChannelW(filename));
+
+		try {
+			for(Run run: runs) {
+				run.open();
+			}
+
+			for(int i = 0; i < partitions.size(); i++) {
+				offsets[i] = fileOutput.getPosition();
+
+				OutputStream regionOutput = fileOutput;
+
+				if(compressionType != CompressionType.NONE) {
+					regionOutput = new BlockCompressedOutputStream(regionOutput, compressionType);
+				}
+
+				ChannelElementOutputStream channelElementOutputStream = new ChannelElementOutputStream(regionOutput, codec);
+
+				merge(i, channelElementOutputStream);
+
+				// Only closes the region; the file itself stays open for the next partition
+
+				channelElementOutputStream.close();
+			}
+
+			offsets[partitions.size()] = fileOutput.getPosition();
+		} finally {
+			for(Run run: runs) {
+				run.close();
+			}
+
+			runs.clear();
+
+			fileOutput.release();
+		}
+
+		DataOutputStream indexOutput = new DataOutputStream(new BufferedOutputStream(FileHelper.openW(getIndexFilename(filename))));
+
+		try {
+			indexOutput.writeInt(partitions.size());
+
+			for(long offset: offsets) {
+				indexOutput.writeLong(offset);
+			}
+		} finally {
+			indexOutput.close();
+		}
+	}
+
+	private void merge(int partition, ChannelElementOutputStream output) throws IOException {
+		List<Entry> entries = partitions.get(partition);
+
+		Collections.sort(entries, comparator);
+
+		if(runs.isEmpty()) {
+			for(Entry entry: entries) {
+				output.writeFrame(entry.frame);
+			}
+
+			entries.clear();
+
+			return;
+		}
+
+		// Ties are broken by source, so that equal keys keep the order in which they were written
+
+		PriorityQueue<Source> queue = new PriorityQueue<Source>(runs.size() + 1, new SourceComparator(comparator));
+
+		for(int i = 0; i < runs.size(); i++) {
+			Source source = new RunSource(i, runs.get(i), runs.get(i).counts[partition]);
+
+			if(source.advance()) {
+				queue.add(source);
+			}
+		}
+
+		Source bufferedSource = new BufferedSource(runs.size(), entries.iterator());
+
+		if(bufferedSource.advance()) {
+			queue.add(bufferedSource);
+		}
+
+		while(!queue.isEmpty()) {
+			Source source = queue.poll();
+
+			output.writeFrame(source.current.frame);
+
+			if(source.advance()) {
+				queue.add(source);
+			}
+		}
+
+		entries.clear();
+	}
+
+	private Entry createEntry(byte[] frame) throws IOException {
+		ChannelElement channelElement = null;
+
+		if(codec instanceof BinaryChannelElementCodec) {
+			channelElement = ((BinaryChannelElementCodec) codec).decodeLazily(frame, 0, frame.length);
+		}
+
+		if(channelElement == null) {
+			channelElement = codec.decode(new DataInputStream(new ByteArrayInputStream(frame)));
+		}
+
+		// Lazily decoded elements keep a copy of the frame, which is shared by the entry
+
+		if(channelElement instanceof FramedChannelElement && ((FramedChannelElement) channelElement).getFrame() != null) {
+			frame = ((FramedChannelElement) channelElement).getFrame();
+		}
+
+		return new Entry(frame, channelElement);
+	}
+
+	private class PartitionWriter implements EncodedChannelElementWriter {
+		private final int partition;
+
+		public PartitionWriter(int partition) {
+			this.partition = partition;
+		}
+
+		public boolean write(ChannelElement channelElement) throws IOException {
+			return add(partition, EncodedChannelElement.wrap(channelElement));
+		}
+
+		public boolean write(List<? extends ChannelElement> channelElements) throws IOException {
+			for(ChannelElement channelElement: channelElements) {
+				add(partition, EncodedChannelElement.wrap(channelElement));
+			}
+
+			return true;
+		}
+
+		public boolean writeEncoded(EncodedChannelElement encodedChannelElement) throws IOException {
+			return add(partition, encodedChannelElement);
+		}
+
+		public boolean flush() throws IOException {
+			// Nothing is written before all partitions are closed
+
+			return true;
+		}
+
+		public boolean close() throws IOException {
+			return PartitionedFileChannelElementWriter.this.close(partition);
+		}
+	}
+
+	private static class Entry {
+		private final byte[] frame;
+		private final ChannelElement channelElement;
+
+		public Entry(byte[] frame, ChannelElement channelElement) {
+			this.frame = frame;
+			this.channelElement = channelElement;
+		}
+	}
+
+	private static class EntryComparator implements Comparator<Entry> {
+		private final Comparator<ChannelElement> comparator;
+
+		public EntryComparator(Comparator<ChannelElement> comparator) {
+			this.comparator = comparator;
+		}
+
+		public int compare(Entry first, Entry second) {
+			return comparator.compare(first.channelElement, second.channelElement);
+		}
+	}
+
+	private class Run {
+		private final File file;
+		private final int[] counts;
+
+		private DataInputStream input;
+
+		public Run(File file, int[] counts) {
+			this.file = file;
+			this.counts = counts;
+		}
+
+		public void open() throws IOException {
+			input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), ChannelElementOutputStream.DEFAULT_BUFFER_SIZE));
+		}
+
+		public Entry read() throws IOException {
+			byte[] frame = new byte[CodecHelper.readVarInt(input)];
+
+			input.readFully(frame);
+
+			return createEntry(frame);
+		}
+
+		public void close() {
+			try {
+				if(input != null) {
+					input.close();
+				}
+			} catch (IOException exception) {
+				System.err.println("Error closing sorted run " + file);
+
+				exception.printStackTrace();
+			}
+
+			file.delete();
+		}
+	}
+
+	private static abstract class Source {
+		protected final int order;
+
+		protected Entry current;
+
+		public Source(int order) {
+			this.order = order;
+		}
+
+		public abstract boolean advance() throws IOException;
+	}
+
+	private static class RunSource extends Source {
+		private final Run run;
+
+		private int remaining;
+
+		public RunSource(int order, Run run, int remaining) {
+			super(order);
+
+			this.run = run;
+
+			this.remaining = remaining;
+		}
+
+		public boolean advance() throws IOException {
+			if(remaining == 0) {
+				return false;
+			}
+
+			remaining--;
+
+			current = run.read();
+
+			return true;
+		}
+	}
+
+	private static class BufferedSource extends Source {
+		private final Iterator<Entry> iterator;
+
+		public BufferedSource(int order, Iterator<Entry> iterator) {
+			super(order);
+
+			this.iterator = iterator;
+		}
+
+		public boolean advance() {
+			if(!iterator.hasNext()) {
+				return false;
+			}
+
+			current = iterator.next();
+
+			return true;
+		}
+	}
+
+	private static class SourceComparator implements Comparator<Source> {
+		private final Comparator<Entry> comparator;
+
+		public SourceComparator(Comparator<Entry> comparator) {
+			this.comparator = comparator;
+		}
+
+		public int compare(Source first, Source second) {
+			int result = comparator.compare(first.current, second.current);
+
+			if(result != 0) {
+				return result;
+			}
+
+			return (first.order < second.order ? -1 : (first.order == second.order ? 0 : 1));
+		}
+	}
+
+	/**
+	 * Stream that tracks the position in the partitioned file, and that is not closed along with the partition streams.
+	 */
+	private static class RegionOutputStream extends FilterOutputStream {
+		private long position;
+
+		public RegionOutputStream(OutputStream outputStream) {
+			super(outputStream);
+		}
+
+		public long getPosition() {
+			return position;
+		}
+
+		public void write(int value) throws IOException {
+			out.write(value);
+
+			position++;
+		}
+
+		public void write(byte[] buffer, int offset, int length) throws IOException {
+			out.write(buffer, offset, length);
+
+			position += length;
+		}
+
+		public void close() throws IOException {
+			flush();
+		}
+
+		public void release() throws IOException {
+			out.close();
+		}
+	}
+}
@@ -13,6 +13,8 @@ package communication.writers;
 
 import java.io.IOException;
 
+import java.util.List;
+
 import communication.channel.ChannelElement;
 import communication.interfaces.ChannelElementWriter;
 
@@ -34,6 +36,10 @@ public class SHMChannelElementWriter implements ChannelElementWriter {
 		return true;
 	}
 
+	public boolean write(List<? extends ChannelElement> channelElements) throws IOException {
+		return channelElementMultiplexer.write(name, channelElements);
+	}
+
 	public boolean flush() throws IOException {
 		return true;
 	}
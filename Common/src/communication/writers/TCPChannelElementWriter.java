@@ -11,28 +11,42 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package communication.writers;
 
-import java.net.Socket;
 import java.net.InetSocketAddress;
 
 import java.io.IOException;
 
+import java.util.List;
+
 import communication.channel.ChannelElement;
-import communication.interfaces.ChannelElementWriter;
+import communication.codecs.BinaryChannelElementCodec;
+import communication.codecs.EncodedChannelElement;
+import communication.codecs.SerializationPolicy;
+import communication.codecs.SerializationStatistics;
+import communication.connections.TCPConnectionManager;
+import communication.connections.TCPStream;
+import communication.interfaces.ChannelElementCodec;
+import communication.interfaces.EncodedChannelElementWriter;
+
+import enums.CompressionType;
+
+public class TCPChannelElementWriter implements EncodedChannelElementWriter {
+	private String name;
+	private TCPStream stream;
 
-import communication.streams.ChannelElementOutputStream;
+	public TCPChannelElementWriter(String name, String target, InetSocketAddress socketAddress) throws IOException {
+		this(name, target, socketAddress, BinaryChannelElementCodec.getInstance());
+	}
 
-public class TCPChannelElementWriter implements ChannelElementWriter {
-	private String name;
-	private ChannelElementOutputStream channelElementOutputStream;
+	public TCPChannelElementWriter(String name, String target, InetSocketAddress socketAddress, ChannelElementCodec codec) throws IOException {
+		this(name, target, socketAddress, codec, CompressionType.NONE);
+	}
 
-	public TCPChannelElementWriter(String name, InetSocketAddress socketAddress) throws IOException {
+	public TCPChannelElementWriter(String name, String target, InetSocketAddress socketAddress, ChannelElementCodec codec, CompressionType compressionType) throws IOException {
 		this.name = name;
 
-		Socket socket = new Socket(socketAddress.getAddress(), socketAddress.getPort());
-
-		this.channelElementOutputStream = new ChannelElementOutputStream(socket.getOutputStream());
+		// The edge is multiplexed with all the others directed to the same launcher
 
-		channelElementOutputStream.writeObject(name);
+		this.stream = TCPConnectionManager.getInstance().openStream(socketAddress, target, name, codec, compressionType);
 	}
 
 	public String getName() {
@@ -43,23 +57,67 @@ public class TCPChannelElementWriter implements ChannelElementWriter {
 		this.name = name;
 	}
 
+	/**
+	 * Getter for the time this writer spent blocked waiting for credits from the receiver.
+	 * 
+	 * @return The time spent waiting for credits, in nanoseconds.
+	 */
+	public long getBlockedTime() {
+		return stream.getBlockedTime();
+	}
+
+	/**
+	 * Setter for the bounds on the state kept by the Java serialization fallback of this writer.
+	 * 
+	 * @param serializationPolicy The bounds on the state kept by the Java serialization fallback.
+	 */
+	public void setSerializationPolicy(SerializationPolicy serializationPolicy) {
+		stream.setSerializationPolicy(serializationPolicy);
+	}
+
+	/**
+	 * Getter for the counters of the Java serialization fallback of this writer.
+	 * 
+	 * @return The counters of the Java serialization fallback.
+	 */
+	public SerializationStatistics getSerializationStatistics() {
+		return stream.getSerializationStatistics();
+	}
+
 	public boolean write(ChannelElement channelElement) throws IOException {
-		channelElementOutputStream.writeChannelElement(channelElement);
+		stream.write(channelElement);
+
+		return true;
+	}
+
+	public boolean write(List<? extends ChannelElement> channelElements) throws IOException {
+		for(ChannelElement channelElement: channelElements) {
+			stream.write(channelElement);
+		}
+
+		return true;
+	}
+
+	public boolean writeEncoded(EncodedChannelElement encodedChannelElement) throws IOException {
+		byte[] frame = encodedChannelElement.getFrame(stream.getCodec());
+
+		if(frame == null) {
+			return write(encodedChannelElement.getChannelElement());
+		}
+
+		stream.writeFrame(frame, frame.length);
 
 		return true;
 	}
 
 	public boolean flush() throws IOException {
-		channelElementOutputStream.flush();
-		channelElementOutputStream.reset();
+		stream.flush();
 
 		return true;
 	}
 
 	public boolean close() throws IOException {
-		channelElementOutputStream.flush();
-
-		channelElementOutputStream.close();
+		stream.close();
 
 		return true;
 	}
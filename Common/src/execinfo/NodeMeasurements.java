@@ -11,8 +11,15 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package execinfo;
 
+import java.util.Collections;
+
+import java.util.Map;
+import java.util.HashMap;
+
 import java.io.Serializable;
 
+import communication.codecs.SerializationStatistics;
+
 /**
  * This class packages the whole set of node measurements.
  * 
@@ -25,6 +32,18 @@ public class NodeMeasurements implements Serializable {
 	private long cpuTime;
 	private long userTime;
 
+	// Maps SHM input channels to their close latencies, in nanoseconds
+	private Map<String, Long> channelCloseLatencies;
+
+	// Maps TCP output channels to the time spent waiting for credits, in nanoseconds
+	private Map<String, Long> channelBlockedTimes;
+
+	// Maps TCP output channels to the counters of their Java serialization fallback
+	private Map<String, SerializationStatistics> channelSerializationStatistics;
+
+	// Counters reported by the Node itself
+	private Map<String, Long> counters;
+
 	/**
 	 * Constructor method.
 	 * 
@@ -33,9 +52,75 @@ public class NodeMeasurements implements Serializable {
 	 * @param userTime User time associated with the Node run.
 	 */
 	public NodeMeasurements(long realTime, long cpuTime, long userTime) {
+		this(realTime, cpuTime, userTime, null, null);
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param realTime Real time associated with the Node run.
+	 * @param cpuTime CPU time associated with the Node run.
+	 * @param userTime User time associated with the Node run.
+	 * @param channelCloseLatencies Close latencies of the SHM input channels of the Node, in nanoseconds.
+	 * @param channelBlockedTimes Time the TCP output channels of the Node spent waiting for credits, in nanoseconds.
+	 */
+	public NodeMeasurements(long realTime, long cpuTime, long userTime, Map<String, Long> channelCloseLatencies, Map<String, Long> channelBlockedTimes) {
+		this(realTime, cpuTime, userTime, channelCloseLatencies, channelBlockedTimes, null);
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param realTime Real time associated with the Node run.
+	 * @param cpuTime CPU time associated with the Node run.
+	 * @param userTime User time associated with the Node run.
+	 * @param channelCloseLatencies Close latencies of the SHM input channels of the Node, in nanoseconds.
+	 * @param channelBlockedTimes Time the TCP output channels of the Node spent waiting for credits, in nanoseconds.
+	 * @param channelSerializationStatistics Counters of the Java serialization fallback of the TCP output channels of the Node.
+	 */
+	public NodeMeasurements(long realTime, long cpuTime, long userTime, Map<String, Long> channelCloseLatencies, Map<String, Long> channelBlockedTimes, Map<String, SerializationStatistics> channelSerializationStatistics) {
+		this(realTime, cpuTime, userTime, channelCloseLatencies, channelBlockedTimes, channelSerializationStatistics, null);
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param realTime Real time associated with the Node run.
+	 * @param cpuTime CPU time associated with the Node run.
+	 * @param userTime User time associated with the Node run.
+	 * @param channelCloseLatencies Close latencies of the SHM input channels of the Node, in nanoseconds.
+	 * @param channelBlockedTimes Time the TCP output channels of the Node spent waiting for credits, in nanoseconds.
+	 * @param channelSerializationStatistics Counters of the Java serialization fallback of the TCP output channels of the Node.
+	 * @param counters Counters reported by the Node itself.
+	 */
+	public NodeMeasurements(long realTime, long cpuTime, long userTime, Map<String, Long> channelCloseLatencies, Map<String, Long> channelBlockedTimes, Map<String, SerializationStatistics> channelSerializationStatistics, Map<String, Long> counters) {
 		this.realTime = realTime;
 		this.cpuTime = cpuTime;
 		this.userTime = userTime;
+
+		this.channelCloseLatencies = new HashMap<String, Long>();
+
+		if(channelCloseLatencies != null) {
+			this.channelCloseLatencies.putAll(channelCloseLatencies);
+		}
+
+		this.channelBlockedTimes = new HashMap<String, Long>();
+
+		if(channelBlockedTimes != null) {
+			this.channelBlockedTimes.putAll(channelBlockedTimes);
+		}
+
+		this.channelSerializationStatistics = new HashMap<String, SerializationStatistics>();
+
+		if(channelSerializationStatistics != null) {
+			this.channelSerializationStatistics.putAll(channelSerializationStatistics);
+		}
+
+		this.counters = new HashMap<String, Long>();
+
+		if(counters != null) {
+			this.counters.putAll(counters);
+		}
 	}
 
 	/**
@@ -50,7 +135,7 @@ public class NodeMeasurements implements Serializable {
 	/**
 	 * Getter for the CPU time associated with the Node run.
 	 * 
-	 * @return The CPU time associated with the Node run.
+	 * @return The CPU time associated with the Node run, or -1 if it was not measured (Nodes run on virtual threads).
 	 */
 	public long getCpuTime() {
 		return cpuTime;
@@ -59,9 +144,48 @@ public class NodeMeasurements implements Serializable {
 	/**
 	 * Getter for the user time associated with the Node run.
 	 * 
-	 * @return The user time associated with the Node run.
+	 * @return The user time associated with the Node run, or -1 if it was not measured (Nodes run on virtual threads).
 	 */
 	public long getUserTime() {
 		return userTime;
 	}
+
+	/**
+	 * Getter for the close latencies of the SHM input channels of the Node, that is, the time
+	 * between each writer closing the channel and the Node observing its end of stream.
+	 * 
+	 * @return A map from input channel names to close latencies, in nanoseconds.
+	 */
+	public Map<String, Long> getChannelCloseLatencies() {
+		return Collections.unmodifiableMap(channelCloseLatencies);
+	}
+
+	/**
+	 * Getter for the time the TCP output channels of the Node spent blocked, waiting for the
+	 * receivers to grant credits.
+	 * 
+	 * @return A map from output channel names to blocked times, in nanoseconds.
+	 */
+	public Map<String, Long> getChannelBlockedTimes() {
+		return Collections.unmodifiableMap(channelBlockedTimes);
+	}
+
+	/**
+	 * Getter for the counters of the Java serialization fallback of the TCP output channels of the Node:
+	 * how often their object streams were reset, and how large their handle tables grew.
+	 * 
+	 * @return A map from output channel names to serialization counters.
+	 */
+	public Map<String, SerializationStatistics> getChannelSerializationStatistics() {
+		return Collections.unmodifiableMap(channelSerializationStatistics);
+	}
+
+	/**
+	 * Getter for the counters reported by the Node itself (e.g. keys split by a mapper to counter skew).
+	 * 
+	 * @return A map from counter names to values.
+	 */
+	public Map<String, Long> getCounters() {
+		return Collections.unmodifiableMap(counters);
+	}
 }
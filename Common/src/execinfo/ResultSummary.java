@@ -26,6 +26,9 @@ public class ResultSummary implements Serializable {
 
 	private long nodeGroupTiming;
 
+	// CPU time of the launcher process while the NodeGroup ran, or -1 if unavailable
+	private long nodeGroupCpuTime = -1;
+
 	// Maps nodes to individual measurements
 	private Map<String, NodeMeasurements> measurements;
 
@@ -72,6 +75,14 @@ public class ResultSummary implements Serializable {
 		this.nodeGroupTiming = nodeGroupTiming;
 	}
 
+	public long getNodeGroupCpuTime() {
+		return nodeGroupCpuTime;
+	}
+
+	public void setNodeGroupCpuTime(long nodeGroupCpuTime) {
+		this.nodeGroupCpuTime = nodeGroupCpuTime;
+	}
+
 	public Set<String> getNodeNames() {
 		return measurements.keySet();
 	}
@@ -11,17 +11,32 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package mapreduce.appspecs;
 
+import java.util.Comparator;
+
 import appspecs.ApplicationSpecification;
+import appspecs.Edge;
 import appspecs.Node;
 
+import communication.channel.ChannelElement;
+
 import enums.CommunicationMode;
 
 import utilities.filesystem.Directory;
+import utilities.filesystem.FileHelper;
 import utilities.filesystem.Filename;
 
 import exceptions.InexistentInputException;
 import exceptions.OverlapingFilesException;
 
+import mapreduce.communication.MRChannelElementKeyComparator;
+
+import mapreduce.partitioners.Partitioner;
+import mapreduce.partitioners.RangePartitioner;
+
+import mapreduce.programs.GroupingReducer;
+import mapreduce.programs.Mapper;
+import mapreduce.programs.SkewPolicy;
+
 public class MapReduceSpecification extends ApplicationSpecification {
 	private static final long serialVersionUID = 1L;
 
@@ -46,6 +61,30 @@ public class MapReduceSpecification extends ApplicationSpecification {
 		insertEdges(splitStage, mapStage, CommunicationMode.FILE);
 	}
 
+	/**
+	 * Inserts mappers that read disjoint byte ranges of the same input, without a splitter stage.
+	 * The input has to be an uncompressed file written with sync markers.
+	 * 
+	 * @param input The input file.
+	 * @param mappers The mappers; each reads about the same number of bytes.
+	 */
+	public void insertMappers(Filename input, Node[] mappers) throws InexistentInputException {
+		if(!FileHelper.exists(input)) {
+			throw new InexistentInputException(input);
+		}
+
+		stageMappers(mappers);
+
+		long length = FileHelper.length(input);
+
+		for(int i = 0; i < mappers.length; i++) {
+			long start = (length * i) / mappers.length;
+			long end = (length * (i + 1)) / mappers.length;
+
+			addInput(mappers[i], input, start, end - start);
+		}
+	}
+
 	public void insertMappers(Filename[] inputs, Node[] mappers) throws InexistentInputException {
 		stageMappers(mappers);
 
@@ -72,6 +111,78 @@ public class MapReduceSpecification extends ApplicationSpecification {
 		}
 	}
 
+	/**
+	 * Sets the partitioner of all the mappers. With a RangePartitioner and reducers that sort their outputs,
+	 * the reducer outputs are globally sorted in reducer order, and can be used without a final merger.
+	 * Range partitioners cannot be combined with a skew policy, which spreads keys outside their ranges.
+	 * 
+	 * @param partitioner The partitioner that assigns keys to reducers.
+	 * 
+	 * @throws IllegalStateException If the mappers were not inserted yet, or a range partitioner is set on mappers with a skew policy.
+	 */
+	@SuppressWarnings("unchecked")
+	public void setPartitioner(Partitioner<?> partitioner) {
+		checkMappers();
+
+		if(partitioner instanceof RangePartitioner) {
+			for(Node mapper: mapStage) {
+				if(mapper instanceof Mapper && ((Mapper<?,?>) mapper).getSkewPolicy() != null) {
+					throw new IllegalStateException("Range partitioners cannot be used with a skew policy, which spreads keys outside their ranges");
+				}
+			}
+		}
+
+		for(Node mapper: mapStage) {
+			if(mapper instanceof Mapper) {
+				((Mapper<Object,?>) mapper).setPartitioner((Partitioner<Object>) partitioner);
+			}
+		}
+	}
+
+	/**
+	 * Sets how all the mappers detect hot keys and split them across reducers. The partial results of split
+	 * keys are combined by the merger inserted with insertReducers(Filename, Node, Node[]), so the reducers
+	 * should be inserted that way first. Reducers should extend Reducer (grouping reducers do not mark split
+	 * keys), and mappers should not use range partitioners.
+	 * 
+	 * @param skewPolicy How hot keys are detected and split, or null to never split keys.
+	 * 
+	 * @throws IllegalStateException If the mappers or the merger were not inserted yet, or the stages cannot handle split keys.
+	 */
+	public void setSkewPolicy(SkewPolicy skewPolicy) {
+		checkMappers();
+
+		if(skewPolicy != null) {
+			if(mergeStage == null) {
+				throw new IllegalStateException("Split keys are only combined by a merger; insert the reducers with insertReducers(Filename, Node, Node[]) first");
+			}
+
+			for(Node mapper: mapStage) {
+				if(mapper instanceof Mapper && ((Mapper<?,?>) mapper).getPartitioner() instanceof RangePartitioner) {
+					throw new IllegalStateException("Skew policies cannot be used with range partitioners, since split keys leave their ranges");
+				}
+			}
+
+			for(Node reducer: reduceStage) {
+				if(reducer instanceof GroupingReducer) {
+					throw new IllegalStateException("Grouping reducers do not mark split keys, so they cannot be used with a skew policy");
+				}
+			}
+		}
+
+		for(Node mapper: mapStage) {
+			if(mapper instanceof Mapper) {
+				((Mapper<?,?>) mapper).setSkewPolicy(skewPolicy);
+			}
+		}
+	}
+
+	private void checkMappers() {
+		if(mapStage == null) {
+			throw new IllegalStateException("Mappers should be inserted with insertMappers() first");
+		}
+	}
+
 	public void setupCommunication(boolean useTCP) throws OverlapingFilesException {
 		if(useTCP) {
 			insertEdges(mapStage, reduceStage, CommunicationMode.TCP);
@@ -83,6 +194,39 @@ public class MapReduceSpecification extends ApplicationSpecification {
 		finalize();
 	}
 
+	/**
+	 * Sets up a sorted shuffle between mappers and reducers, with keys compared by their natural order.
+	 * 
+	 * @see #setupSortedCommunication(Comparator)
+	 */
+	public void setupSortedCommunication() throws OverlapingFilesException {
+		setupSortedCommunication(new MRChannelElementKeyComparator<Object>());
+	}
+
+	/**
+	 * Sets up a sorted shuffle between mappers and reducers. Each mapper writes a single file with one partition
+	 * per reducer, sorted by the informed comparator, instead of one file per reducer; each reducer reads its
+	 * partition of every mapper file, so a GroupingReducer sees the keys grouped.
+	 * 
+	 * The comparator may also order the values of each key, but should keep equal keys together (that is, compare
+	 * by key first), since a GroupingReducer presents each run of equal keys in a separate reduction.
+	 * 
+	 * @param comparator The comparator that sorts each partition, which should be serializable.
+	 */
+	public void setupSortedCommunication(Comparator<ChannelElement> comparator) throws OverlapingFilesException {
+		for(Node mapper: mapStage) {
+			for(int i = 0; i < reduceStage.length; i++) {
+				Edge edge = new Edge(CommunicationMode.FILE);
+
+				edge.setPartition(i, reduceStage.length, comparator);
+
+				addEdge(mapper, reduceStage[i], edge);
+			}
+		}
+
+		finalize();
+	}
+
 	private void stageSplitter(Node splitter) {
 		nameGenerationString = "splitter-";
 		nameGenerationCounter = 0L;
@@ -0,0 +1,52 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mapreduce.communication;
+
+/**
+ * MapReduce channel element whose value is a primitive double, so that numeric values are
+ * accumulated and transferred without boxing.
+ * 
+ * The boxed accessors inherited from MRChannelElement remain available for generic code.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class DoubleMRChannelElement<O> extends MRChannelElement<O,Double> {
+	private static final long serialVersionUID = 1L;
+
+	private double doubleValue;
+
+	public DoubleMRChannelElement(O object, double doubleValue) {
+		super(object, null);
+
+		this.doubleValue = doubleValue;
+	}
+
+	public double getDoubleValue() {
+		return doubleValue;
+	}
+
+	public void setDoubleValue(double doubleValue) {
+		this.doubleValue = doubleValue;
+	}
+
+	public void addToValue(double amount) {
+		this.doubleValue += amount;
+	}
+
+	public Double getValue() {
+		return doubleValue;
+	}
+
+	public void setValue(Double value) {
+		this.doubleValue = value;
+	}
+}
@@ -0,0 +1,180 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package mapreduce.communication;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+
+import communication.channel.ChannelElement;
+
+import communication.codecs.BinaryChannelElementCodec;
+import communication.codecs.CodecHelper;
+
+import communication.interfaces.ChannelElementCodec;
+import communication.interfaces.FramedChannelElement;
+
+/**
+ * MapReduce channel element that is decoded from its frame as its parts are accessed.
+ * 
+ * Frames contain the key, the description and the value, in that order, so routing and comparing by key
+ * only decodes the key, and replacing the value never decodes the previous one. Elements that were not
+ * modified are written downstream with the frame they were read from.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class LazyMRChannelElement<O,V> extends MRChannelElement<O,V> implements FramedChannelElement {
+	private static final long serialVersionUID = 1L;
+
+	private static final int DECODED_NONE = 0;
+	private static final int DECODED_KEY = 1;
+	private static final int DECODED_DESCRIPTION = 2;
+	private static final int DECODED_VALUE = 3;
+
+	private transient byte[] frame;
+
+	private transient BinaryChannelElementCodec codec;
+
+	// Parts of the frame already decoded, and the position of the first part not decoded yet
+	private transient int decoded;
+	private transient int position;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param frame Frame of a MapReduce channel element, which is not copied and should not be modified afterwards.
+	 * @param offset Offset of the key in the frame, after the tag.
+	 * @param codec Codec that encoded the frame.
+	 */
+	public LazyMRChannelElement(byte[] frame, int offset, BinaryChannelElementCodec codec) {
+		super(null, null);
+
+		this.frame = frame;
+
+		this.codec = codec;
+
+		this.decoded = DECODED_NONE;
+		this.position = offset;
+	}
+
+	public byte[] getFrame() {
+		return frame;
+	}
+
+	public ChannelElementCodec getCodec() {
+		return codec;
+	}
+
+	public ChannelElement getChannelElement() {
+		return this;
+	}
+
+	public O getObject() {
+		decode(DECODED_KEY);
+
+		return super.getObject();
+	}
+
+	public void setObject(Object object) {
+		decode(DECODED_VALUE);
+
+		super.setObject(object);
+
+		frame = null;
+	}
+
+	public String getDescription() {
+		decode(DECODED_DESCRIPTION);
+
+		return super.getDescription();
+	}
+
+	public void setDescription(String description) {
+		decode(DECODED_VALUE);
+
+		super.setDescription(description);
+
+		frame = null;
+	}
+
+	public V getValue() {
+		decode(DECODED_VALUE);
+
+		return super.getValue();
+	}
+
+	public void setValue(V value) {
+		// The previous value is not needed, so it is not decoded
+
+		decode(DECODED_DESCRIPTION);
+
+		decoded = DECODED_VALUE;
+
+		super.setValue(value);
+
+		frame = null;
+	}
+
+	public String toString() {
+		decode(DECODED_KEY);
+
+		return super.toString();
+	}
+
+	/**
+	 * Decodes the frame up to the informed part, if not decoded yet.
+	 * 
+	 * @param part Last part of the frame that should be decoded.
+	 */
+	@SuppressWarnings("unchecked")
+	private void decode(int part) {
+		if(decoded >= part) {
+			return;
+		}
+
+		ByteArrayInputStream frameInputStream = new ByteArrayInputStream(frame, position, frame.length - position);
+
+		DataInputStream frameDataInputStream = new DataInputStream(frameInputStream);
+
+		try {
+			if(decoded < DECODED_KEY) {
+				super.setObject(codec.readValue(frameDataInputStream));
+			}
+
+			if(decoded < DECODED_DESCRIPTION && part >= DECODED_DESCRIPTION) {
+				super.setDescription(CodecHelper.readNullableString(frameDataInputStream));
+			}
+
+			if(decoded < DECODED_VALUE && part >= DECODED_VALUE) {
+				super.setValue((V) codec.readValue(frameDataInputStream));
+			}
+		} catch (IOException exception) {
+			throw new IllegalStateException("Error decoding MapReduce channel element frame", exception);
+		}
+
+		decoded = part;
+
+		position = frame.length - frameInputStream.available();
+	}
+
+	// Serialized as a regular element, since the frame is only meaningful with its codec
+
+	private Object writeReplace() throws ObjectStreamException {
+		MRChannelElement<O,V> result = new MRChannelElement<O,V>(getObject(), getValue());
+
+		result.setDescription(getDescription());
+
+		return result;
+	}
+}
@@ -0,0 +1,52 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mapreduce.communication;
+
+/**
+ * MapReduce channel element whose value is a primitive long, so that numeric values are
+ * accumulated and transferred without boxing.
+ * 
+ * The boxed accessors inherited from MRChannelElement remain available for generic code.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class LongMRChannelElement<O> extends MRChannelElement<O,Long> {
+	private static final long serialVersionUID = 1L;
+
+	private long longValue;
+
+	public LongMRChannelElement(O object, long longValue) {
+		super(object, null);
+
+		this.longValue = longValue;
+	}
+
+	public long getLongValue() {
+		return longValue;
+	}
+
+	public void setLongValue(long longValue) {
+		this.longValue = longValue;
+	}
+
+	public void addToValue(long amount) {
+		this.longValue += amount;
+	}
+
+	public Long getValue() {
+		return longValue;
+	}
+
+	public void setValue(Long value) {
+		this.longValue = value;
+	}
+}
@@ -16,6 +16,10 @@ import communication.channel.ChannelElement;
 public class MRChannelElement<O,V> extends ChannelElement {
 	private static final long serialVersionUID = 1L;
 
+	// Description of the elements whose key was split across reducers, so that their partial results are combined later
+	public static final String SPLIT_KEY_DESCRIPTION = "hammr:split-key";
+	public static final String SPLIT_KEY_ANNOUNCEMENT_DESCRIPTION = "hammr:split-key-announcement";
+
 	private V value;
 
 	public MRChannelElement(O object, V value) {
@@ -36,4 +40,37 @@ public class MRChannelElement<O,V> extends ChannelElement {
 	public void setValue(V value) {
 		this.value = value;
 	}
+
+	/**
+	 * Checks if the key of this element was split across reducers, as marked by markSplitKey().
+	 * 
+	 * @return True if the key of this element was split across reducers.
+	 */
+	public boolean isSplitKey() {
+		return SPLIT_KEY_DESCRIPTION.equals(getDescription());
+	}
+
+	/**
+	 * Marks the key of this element as split across reducers. This replaces the description of the element.
+	 */
+	public void markSplitKey() {
+		setDescription(SPLIT_KEY_DESCRIPTION);
+	}
+
+	/**
+	 * Checks if this element only announces that its key was split across reducers, as marked by markSplitKeyAnnouncement().
+	 * Announcements carry no value, and should not be reduced.
+	 * 
+	 * @return True if this element only announces that its key was split across reducers.
+	 */
+	public boolean isSplitKeyAnnouncement() {
+		return SPLIT_KEY_ANNOUNCEMENT_DESCRIPTION.equals(getDescription());
+	}
+
+	/**
+	 * Marks this element as an announcement that its key was split across reducers. This replaces the description of the element.
+	 */
+	public void markSplitKeyAnnouncement() {
+		setDescription(SPLIT_KEY_ANNOUNCEMENT_DESCRIPTION);
+	}
 }
@@ -0,0 +1,55 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mapreduce.communication;
+
+import java.io.Serializable;
+
+import java.util.Comparator;
+
+import communication.channel.ChannelElement;
+
+/**
+ * Compares MapReduce elements by their keys, used to sort the partitions of a sorted shuffle. Keys are compared
+ * by the informed key comparator, or by their natural order if none is informed.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class MRChannelElementKeyComparator<O> implements Comparator<ChannelElement>, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private Comparator<? super O> keyComparator;
+
+	public MRChannelElementKeyComparator() {
+		this(null);
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param keyComparator The comparator for the keys, which should be serializable; or null for their natural order.
+	 */
+	public MRChannelElementKeyComparator(Comparator<? super O> keyComparator) {
+		this.keyComparator = keyComparator;
+	}
+
+	@SuppressWarnings("unchecked")
+	public int compare(ChannelElement first, ChannelElement second) {
+		O firstKey = ((MRChannelElement<O,?>) first).getObject();
+		O secondKey = ((MRChannelElement<O,?>) second).getObject();
+
+		if(keyComparator != null) {
+			return keyComparator.compare(firstKey, secondKey);
+		}
+
+		return ((Comparable<? super O>) firstKey).compareTo(secondKey);
+	}
+}
@@ -0,0 +1,126 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mapreduce.partitioners;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import communication.channel.ChannelElement;
+
+import communication.streams.ChannelElementInputStream;
+
+import enums.DecodingMode;
+
+import mapreduce.communication.MRChannelElement;
+
+import utilities.filesystem.FileHelper;
+import utilities.filesystem.Filename;
+
+/**
+ * Sampling pass over the inputs of a MapReduce application, used to compute the boundaries of a RangePartitioner.
+ * 
+ * The keys are obtained from MapReduce elements, decoded lazily, and chosen by reservoir sampling,
+ * so the sample is uniform over all the records read regardless of their order.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class InputSampler<O> {
+	private int sampleSize;
+
+	private long maximumRecords;
+
+	private Random random;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param sampleSize The number of keys in the sample.
+	 * @param maximumRecords The maximum number of records read from each input, or a negative number to read the entire inputs.
+	 * @param seed Seed for the random choices.
+	 */
+	public InputSampler(int sampleSize, long maximumRecords, long seed) {
+		this.sampleSize = sampleSize;
+
+		this.maximumRecords = maximumRecords;
+
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Samples the keys of the informed inputs.
+	 * 
+	 * @param inputs The inputs, written as channel streams of MapReduce elements.
+	 * 
+	 * @return The sampled keys.
+	 * 
+	 * @throws IOException If an input cannot be read.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<O> sample(Filename... inputs) throws IOException {
+		List<O> sample = new ArrayList<O>(sampleSize);
+
+		long seen = 0L;
+
+		for(Filename input: inputs) {
+			ChannelElementInputStream channelElementInputStream = new ChannelElementInputStream(FileHelper.openChannelR(input));
+
+			channelElementInputStream.setDecodingMode(DecodingMode.LAZY);
+
+			try {
+				for(long read = 0L; maximumRecords < 0 || read < maximumRecords; read++) {
+					ChannelElement channelElement = channelElementInputStream.readChannelElement();
+
+					O object = ((MRChannelElement<O,?>) channelElement).getObject();
+
+					if(sample.size() < sampleSize) {
+						sample.add(object);
+					}
+					else {
+						long position = (long) (random.nextDouble() * (seen + 1));
+
+						if(position < sampleSize) {
+							sample.set((int) position, object);
+						}
+					}
+
+					seen++;
+				}
+			} catch (EOFException exception) {
+				// End of this input
+			} finally {
+				channelElementInputStream.close();
+			}
+		}
+
+		return sample;
+	}
+
+	/**
+	 * Creates a range partitioner from a sample of the informed inputs.
+	 * 
+	 * @param numberPartitions The number of partitions.
+	 * @param comparator The comparator for the keys, which should be serializable; or null for their natural order.
+	 * @param inputs The inputs, written as channel streams of MapReduce elements.
+	 * 
+	 * @return The range partitioner.
+	 * 
+	 * @throws IOException If an input cannot be read.
+	 */
+	public RangePartitioner<O> createRangePartitioner(int numberPartitions, Comparator<? super O> comparator, Filename... inputs) throws IOException {
+		return RangePartitioner.fromSample(sample(inputs), numberPartitions, comparator);
+	}
+}
@@ -0,0 +1,108 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mapreduce.partitioners;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Partitioner that assigns contiguous ranges of keys to the partitions, in order. If every reducer sorts
+ * its output, the concatenation of the reducer outputs is sorted, so no final merge is needed.
+ * 
+ * Partition i receives the keys between boundary i - 1 (inclusive) and boundary i (exclusive). The
+ * boundaries are usually obtained from a sample of the keys (see InputSampler).
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class RangePartitioner<O> implements Partitioner<O> {
+	private static final long serialVersionUID = 1L;
+
+	private ArrayList<O> boundaries;
+
+	private Comparator<? super O> comparator;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param boundaries The boundaries between partitions, sorted; one less than the number of partitions.
+	 * @param comparator The comparator for the keys, which should be serializable; or null for their natural order.
+	 */
+	public RangePartitioner(List<O> boundaries, Comparator<? super O> comparator) {
+		this.boundaries = new ArrayList<O>(boundaries);
+
+		this.comparator = comparator;
+	}
+
+	/**
+	 * Creates a range partitioner whose partitions receive approximately the same number of sampled keys.
+	 * 
+	 * @param sample A sample of the keys, which is sorted by this method.
+	 * @param numberPartitions The number of partitions.
+	 * @param comparator The comparator for the keys, which should be serializable; or null for their natural order.
+	 * 
+	 * @return The range partitioner.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <O> RangePartitioner<O> fromSample(List<O> sample, int numberPartitions, Comparator<? super O> comparator) {
+		if(comparator != null) {
+			Collections.sort(sample, comparator);
+		}
+		else {
+			Collections.sort((List<Comparable<Object>>) sample);
+		}
+
+		List<O> boundaries = new ArrayList<O>(numberPartitions - 1);
+
+		if(!sample.isEmpty()) {
+			for(int i = 1; i < numberPartitions; i++) {
+				boundaries.add(sample.get((int) (((long) i * sample.size()) / numberPartitions)));
+			}
+		}
+
+		return new RangePartitioner<O>(boundaries, comparator);
+	}
+
+	public List<O> getBoundaries() {
+		return Collections.unmodifiableList(boundaries);
+	}
+
+	public int getPartition(O object, int numberPartitions) {
+		// Binary search for the first boundary greater than the key
+
+		int low = 0;
+		int high = boundaries.size();
+
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+
+			if(compare(boundaries.get(middle), object) <= 0) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+
+		return Math.min(low, numberPartitions - 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare(O first, O second) {
+		if(comparator != null) {
+			return comparator.compare(first, second);
+		}
+
+		return ((Comparable<? super O>) first).compareTo(second);
+	}
+}
@@ -0,0 +1,143 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mapreduce.programs;
+
+import java.io.Serializable;
+
+import java.util.Comparator;
+
+import utilities.collections.DoubleCursor;
+import utilities.collections.HashLongTable;
+import utilities.collections.LongCursor;
+import utilities.collections.LongOperator;
+import utilities.collections.LongTable;
+
+/**
+ * Combiner for primitive double values. The partial aggregates are kept in a LongTable, as the raw
+ * bits of each double, and updated in place, so adding a value to an existing key allocates nothing.
+ * 
+ * By default, the aggregates are kept in a HashLongTable; for string keys, a StringLongTable keeps them
+ * in primitive arrays instead, with a fraction of the heap footprint.
+ * 
+ * Once the aggregates exceed the memory budget of the spill policy, they are spilled to a sorted run in a
+ * local scratch file, and merged back when they are iterated. Spilling requires keys that are comparable,
+ * or a comparator.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public abstract class DoubleCombiner<O> implements LongOperator, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private LongTable<O> currentValues;
+
+	private LongSpiller<O> spiller;
+
+	public DoubleCombiner() {
+		this(new HashLongTable<O>());
+	}
+
+	public DoubleCombiner(LongTable<O> currentValues) {
+		this.currentValues = currentValues;
+
+		this.spiller = new LongSpiller<O>(null, null);
+	}
+
+	public SpillPolicy getSpillPolicy() {
+		return spiller.getSpillPolicy();
+	}
+
+	/**
+	 * Setter for the memory budget of the partial aggregates, and where they are spilled once it is exceeded.
+	 * 
+	 * @param spillPolicy The memory budget and scratch directory, or null to use the default policy of the launcher.
+	 */
+	public void setSpillPolicy(SpillPolicy spillPolicy) {
+		spiller.setSpillPolicy(spillPolicy);
+	}
+
+	/**
+	 * Setter for the order in which spilled keys are sorted.
+	 * 
+	 * @param comparator The order of the keys (must be serializable), or null to use their natural ordering.
+	 */
+	public void setComparator(Comparator<? super O> comparator) {
+		spiller.setComparator(comparator);
+	}
+
+	public void add(O object, double newValue) {
+		currentValues.merge(object, Double.doubleToRawLongBits(newValue), this);
+
+		spiller.check(currentValues);
+	}
+
+	/**
+	 * Returns whether a key has a partial aggregate in memory. Aggregates that were spilled are not considered.
+	 * 
+	 * @param object The key.
+	 * 
+	 * @return True if the key has a partial aggregate in memory; false otherwise.
+	 */
+	public boolean contains(O object) {
+		return currentValues.containsKey(object);
+	}
+
+	/**
+	 * Returns the partial aggregate of a key kept in memory. Aggregates that were spilled are not considered.
+	 * 
+	 * @param object The key.
+	 * @param missingValue Value returned if no value was added for the key.
+	 * 
+	 * @return The partial aggregate of the key, or missingValue if no value was added for it.
+	 */
+	public double get(O object, double missingValue) {
+		return Double.longBitsToDouble(currentValues.get(object, Double.doubleToRawLongBits(missingValue)));
+	}
+
+	/**
+	 * Returns the number of partial aggregates kept in memory.
+	 * 
+	 * @return The number of partial aggregates kept in memory.
+	 */
+	public int size() {
+		return currentValues.size();
+	}
+
+	/**
+	 * Returns a cursor over the partial aggregates, merging any spilled runs. No value should be added while the
+	 * cursor is in use, and if some run was spilled, the aggregates can only be iterated once.
+	 * 
+	 * @return A cursor positioned before the first aggregate.
+	 */
+	public DoubleCursor<O> cursor() {
+		final LongCursor<O> cursor = spiller.cursor(currentValues, this);
+
+		return new DoubleCursor<O>() {
+			public boolean next() {
+				return cursor.next();
+			}
+
+			public O getKey() {
+				return cursor.getKey();
+			}
+
+			public double getValue() {
+				return Double.longBitsToDouble(cursor.getValue());
+			}
+		};
+	}
+
+	public final long apply(long oldValue, long newValue) {
+		return Double.doubleToRawLongBits(combine(Double.longBitsToDouble(oldValue), Double.longBitsToDouble(newValue)));
+	}
+
+	public abstract double combine(double oldValue, double newValue);
+}
@@ -0,0 +1,109 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mapreduce.programs;
+
+import java.util.List;
+
+import communication.channel.ChannelElement;
+
+import mapreduce.communication.MRChannelElement;
+import mapreduce.communication.DoubleMRChannelElement;
+
+import utilities.collections.DoubleCursor;
+
+/**
+ * Mapper that produces primitive double values, emitted as DoubleMRChannelElement and combined
+ * with a DoubleCombiner, without boxing.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public abstract class DoubleMapper<O> extends Mapper<O,Double> {
+	private static final long serialVersionUID = 1L;
+
+	protected DoubleCombiner<O> doubleCombiner;
+
+	public DoubleMapper(int numberReducers) {
+		this(numberReducers, null);
+	}
+
+	public DoubleMapper(int numberReducers, DoubleCombiner<O> doubleCombiner) {
+		super(numberReducers);
+
+		this.doubleCombiner = doubleCombiner;
+	}
+
+	public DoubleCombiner<O> getDoubleCombiner() {
+		return doubleCombiner;
+	}
+
+	public void setDoubleCombiner(DoubleCombiner<O> doubleCombiner) {
+		this.doubleCombiner = doubleCombiner;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void run() {
+		List<List<ChannelElement>> outgoing = createBatches();
+
+		List<ChannelElement> channelElements;
+
+		while((channelElements = readSomeoneBatch(DEFAULT_BATCH_SIZE)) != null) {
+			for(ChannelElement element: channelElements) {
+				MRChannelElement<O,?> channelElement = (MRChannelElement<O,?>) element;
+
+				O object = channelElement.getObject();
+
+				observe(object);
+
+				double value = mapDouble(object);
+
+				if(doubleCombiner == null) {
+					DoubleMRChannelElement<O> result = new DoubleMRChannelElement<O>(object, value);
+
+					result.setDescription(channelElement.getDescription());
+
+					enqueue(outgoing, result);
+				}
+				else {
+					doubleCombiner.add(object, value);
+				}
+			}
+
+			flush(outgoing);
+		}
+
+		finalizeMapping();
+
+		reportSplitKeys();
+
+		shutdown();
+	}
+
+	protected final Double map(O object) {
+		return mapDouble(object);
+	}
+
+	protected abstract double mapDouble(O object);
+
+	protected void finalizeMapping() {
+		if(doubleCombiner != null) {
+			List<List<ChannelElement>> outgoing = createBatches();
+
+			DoubleCursor<O> cursor = doubleCombiner.cursor();
+
+			while(cursor.next()) {
+				enqueue(outgoing, new DoubleMRChannelElement<O>(cursor.getKey(), cursor.getValue()));
+			}
+
+			flush(outgoing);
+		}
+	}
+}
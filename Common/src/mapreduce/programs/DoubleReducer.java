@@ -0,0 +1,65 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mapreduce.programs;
+
+import java.util.List;
+
+import communication.channel.ChannelElement;
+
+import mapreduce.communication.MRChannelElement;
+import mapreduce.communication.DoubleMRChannelElement;
+
+/**
+ * Reducer that consumes primitive double values. Elements that are not DoubleMRChannelElement
+ * have their boxed values unboxed.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public abstract class DoubleReducer<O> extends Reducer<O,Double> {
+	private static final long serialVersionUID = 1L;
+
+	@SuppressWarnings("unchecked")
+	public void run() {
+		List<ChannelElement> channelElements;
+
+		while((channelElements = readSomeoneBatch(DEFAULT_BATCH_SIZE)) != null) {
+			for(ChannelElement element: channelElements) {
+				if(element instanceof DoubleMRChannelElement) {
+					DoubleMRChannelElement<O> channelElement = (DoubleMRChannelElement<O>) element;
+
+					observeSplitKey(channelElement);
+
+					reduceDouble(channelElement.getObject(), channelElement.getDoubleValue());
+				}
+				else {
+					MRChannelElement<O,Double> channelElement = (MRChannelElement<O,Double>) element;
+
+					if(observeSplitKey(channelElement)) {
+						continue;
+					}
+
+					reduceDouble(channelElement.getObject(), channelElement.getValue());
+				}
+			}
+		}
+
+		finalizeReduce();
+
+		shutdown();
+	}
+
+	protected final void reduce(O object, Double value) {
+		reduceDouble(object, value);
+	}
+
+	protected abstract void reduceDouble(O object, double value);
+}
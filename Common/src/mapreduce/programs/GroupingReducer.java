@@ -0,0 +1,186 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mapreduce.programs;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import java.util.Set;
+
+import java.util.PriorityQueue;
+
+import appspecs.Node;
+
+import communication.channel.ChannelElement;
+import communication.channel.InputChannel;
+import communication.channel.PartitionedFileInputChannel;
+
+import mapreduce.communication.MRChannelElement;
+import mapreduce.communication.MRChannelElementKeyComparator;
+
+/**
+ * Reducer for sorted shuffles, which merges its inputs by key and presents all the values of a key together.
+ * 
+ * Every input should be sorted in the same order, as the partitions written by a sorted shuffle
+ * (see MapReduceSpecification.setupSortedCommunication()). The inputs are merged in the order of the shuffle
+ * when they are its partitions, and in the order of the key comparator otherwise; values are always grouped
+ * by key, so a shuffle that also sorts the values of each key still presents them in a single reduction.
+ * The order of the shuffle should keep equal keys together, that is, compare by key first. Inputs found out
+ * of order stop the reducer, instead of splitting groups silently. Values are read from the inputs while
+ * they are iterated, so the memory used does not depend on the number of values for each key.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public abstract class GroupingReducer<O,V> extends Node {
+	private static final long serialVersionUID = 1L;
+
+	private transient PriorityQueue<Head> heads;
+
+	// Order of the inputs, and equality of keys
+	private transient Comparator<ChannelElement> comparator;
+	private transient Comparator<ChannelElement> keyComparator;
+
+	public void run() {
+		Set<String> inputs = getInputChannelNames();
+
+		keyComparator = new MRChannelElementKeyComparator<O>(getKeyComparator());
+
+		comparator = obtainComparator();
+
+		heads = new PriorityQueue<Head>(Math.max(inputs.size(), 1), new HeadComparator());
+
+		for(String input: inputs) {
+			advance(new Head(input));
+		}
+
+		while(!heads.isEmpty()) {
+			MRChannelElement<O,V> first = heads.peek().channelElement;
+
+			O object = first.getObject();
+
+			ValueIterator values = new ValueIterator(first);
+
+			reduce(object, values);
+
+			// Values not consumed by the reduction are skipped
+
+			while(values.hasNext()) {
+				values.next();
+			}
+		}
+
+		finalizeReduce();
+
+		shutdown();
+	}
+
+	/**
+	 * Obtains the comparator of the keys, which tells equal keys apart for grouping and, when the inputs are not
+	 * partitions of a sorted shuffle, also gives their order. By default, keys are compared by their natural order.
+	 * 
+	 * @return The comparator used to sort the keys, or null for their natural order.
+	 */
+	protected Comparator<? super O> getKeyComparator() {
+		return null;
+	}
+
+	/**
+	 * Reduces all the values of a key. The iterator is only valid during the call.
+	 * 
+	 * @param object The key.
+	 * @param values The values of the key, read from the inputs as they are iterated.
+	 */
+	protected abstract void reduce(O object, Iterator<V> values);
+	protected abstract void finalizeReduce();
+
+	/**
+	 * Obtains the order of the inputs: the comparator that sorted the partitions of the shuffle, if the inputs
+	 * are partitions, or the key comparator otherwise.
+	 * 
+	 * @return The comparator of the elements of the inputs.
+	 */
+	private Comparator<ChannelElement> obtainComparator() {
+		for(InputChannel inputChannel: getInputChannels()) {
+			if(inputChannel instanceof PartitionedFileInputChannel) {
+				Comparator<ChannelElement> partitionComparator = ((PartitionedFileInputChannel) inputChannel).getComparator();
+
+				if(partitionComparator != null) {
+					return partitionComparator;
+				}
+			}
+		}
+
+		return keyComparator;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void advance(Head head) {
+		MRChannelElement<O,V> previous = head.channelElement;
+
+		head.channelElement = (MRChannelElement<O,V>) read(head.input);
+
+		if(head.channelElement != null) {
+			if(previous != null && comparator.compare(head.channelElement, previous) < 0) {
+				throw new IllegalStateException("Input " + head.input + " of " + getName() + " is not sorted in the order of the reducer");
+			}
+
+			heads.add(head);
+		}
+	}
+
+	private class Head {
+		private final String input;
+
+		private MRChannelElement<O,V> channelElement;
+
+		public Head(String input) {
+			this.input = input;
+		}
+	}
+
+	private class HeadComparator implements Comparator<Head> {
+		public int compare(Head first, Head second) {
+			return comparator.compare(first.channelElement, second.channelElement);
+		}
+	}
+
+	private class ValueIterator implements Iterator<V> {
+		private final MRChannelElement<O,V> first;
+
+		public ValueIterator(MRChannelElement<O,V> first) {
+			this.first = first;
+		}
+
+		public boolean hasNext() {
+			return !heads.isEmpty() && keyComparator.compare(heads.peek().channelElement, first) == 0;
+		}
+
+		public V next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			Head head = heads.poll();
+
+			V value = head.channelElement.getValue();
+
+			advance(head);
+
+			return value;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mapreduce.programs;
+
+import java.util.List;
+
+import communication.channel.ChannelElement;
+
+import mapreduce.communication.MRChannelElement;
+import mapreduce.communication.LongMRChannelElement;
+
+import utilities.collections.LongCursor;
+
+/**
+ * Mapper that produces primitive long values, emitted as LongMRChannelElement and combined
+ * with a LongCombiner, without boxing.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public abstract class LongMapper<O> extends Mapper<O,Long> {
+	private static final long serialVersionUID = 1L;
+
+	protected LongCombiner<O> longCombiner;
+
+	public LongMapper(int numberReducers) {
+		this(numberReducers, null);
+	}
+
+	public LongMapper(int numberReducers, LongCombiner<O> longCombiner) {
+		super(numberReducers);
+
+		this.longCombiner = longCombiner;
+	}
+
+	public LongCombiner<O> getLongCombiner() {
+		return longCombiner;
+	}
+
+	public void setLongCombiner(LongCombiner<O> longCombiner) {
+		this.longCombiner = longCombiner;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void run() {
+		List<List<ChannelElement>> outgoing = createBatches();
+
+		List<ChannelElement> channelElements;
+
+		while((channelElements = readSomeoneBatch(DEFAULT_BATCH_SIZE)) != null) {
+			for(ChannelElement element: channelElements) {
+				MRChannelElement<O,?> channelElement = (MRChannelElement<O,?>) element;
+
+				O object = channelElement.getObject();
+
+				observe(object);
+
+				long value = mapLong(object);
+
+				if(longCombiner == null) {
+					LongMRChannelElement<O> result = new LongMRChannelElement<O>(object, value);
+
+					result.setDescription(channelElement.getDescription());
+
+					enqueue(outgoing, result);
+				}
+				else {
+					longCombiner.add(object, value);
+				}
+			}
+
+			flush(outgoing);
+		}
+
+		finalizeMapping();
+
+		reportSplitKeys();
+
+		shutdown();
+	}
+
+	protected final Long map(O object) {
+		return mapLong(object);
+	}
+
+	protected abstract long mapLong(O object);
+
+	protected void finalizeMapping() {
+		if(longCombiner != null) {
+			List<List<ChannelElement>> outgoing = createBatches();
+
+			LongCursor<O> cursor = longCombiner.cursor();
+
+			while(cursor.next()) {
+				enqueue(outgoing, new LongMRChannelElement<O>(cursor.getKey(), cursor.getValue()));
+			}
+
+			flush(outgoing);
+		}
+	}
+}
@@ -0,0 +1,363 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mapreduce.programs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import java.util.PriorityQueue;
+
+import communication.streams.ChannelElementInputStream;
+import communication.streams.ChannelElementOutputStream;
+
+import mapreduce.communication.LongMRChannelElement;
+
+import utilities.collections.LongCursor;
+import utilities.collections.LongOperator;
+import utilities.collections.LongTable;
+
+/**
+ * Bounds the memory taken by the partial aggregates of a combiner.
+ * 
+ * Once the table of aggregates exceeds its memory budget, its entries are written to a scratch file as a
+ * run sorted by key, and the table is cleared. When the aggregates are iterated, the runs and the entries
+ * still in memory are merged by key, and the values of equal keys are combined.
+ * 
+ * Keys are ordered by the informed comparator, or by their natural ordering if none is informed.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class LongSpiller<O> implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private SpillPolicy spillPolicy;
+
+	private Comparator<? super O> comparator;
+
+	private transient List<File> runs;
+
+	// Set if the keys turned out not to be comparable, in which case they are kept in memory
+	private transient boolean disabled;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param spillPolicy Memory budget and scratch directory, or null to use the default policy of the launcher.
+	 * @param comparator Order of the keys (must be serializable), or null to use their natural ordering.
+	 */
+	public LongSpiller(SpillPolicy spillPolicy, Comparator<? super O> comparator) {
+		this.spillPolicy = spillPolicy;
+
+		this.comparator = comparator;
+	}
+
+	public SpillPolicy getSpillPolicy() {
+		return (spillPolicy != null ? spillPolicy : SpillPolicy.getDefault());
+	}
+
+	public void setSpillPolicy(SpillPolicy spillPolicy) {
+		this.spillPolicy = spillPolicy;
+	}
+
+	public Comparator<? super O> getComparator() {
+		return comparator;
+	}
+
+	public void setComparator(Comparator<? super O> comparator) {
+		this.comparator = comparator;
+	}
+
+	public int getNumberRuns() {
+		return (runs != null ? runs.size() : 0);
+	}
+
+	/**
+	 * Spills the table if it exceeds the memory budget.
+	 * 
+	 * @param table The table of aggregates.
+	 */
+	public void check(LongTable<O> table) {
+		if(disabled || table.getMemoryUsage() <= getSpillPolicy().getMemoryBudget() || table.size() == 0) {
+			return;
+		}
+
+		try {
+			spill(table);
+		} catch (ClassCastException exception) {
+			System.err.println("Combiner keys are not comparable and no comparator was informed; keeping them in memory");
+
+			disabled = true;
+		} catch (IOException exception) {
+			System.err.println("Error spilling combiner aggregates to " + getSpillPolicy().getDirectory() + "; keeping them in memory");
+
+			exception.printStackTrace();
+
+			// Later spills would most likely fail the same way, after sorting the whole table again
+
+			disabled = true;
+		}
+	}
+
+	/**
+	 * Returns a cursor that merges the spilled runs with the table. Runs are deleted as they are consumed, so
+	 * the aggregates can only be iterated once if some run was spilled.
+	 * 
+	 * @param table The table of aggregates.
+	 * @param operator Operation that combines the values of equal keys.
+	 * 
+	 * @return A cursor over the aggregates, in key order if some run was spilled.
+	 */
+	public LongCursor<O> cursor(LongTable<O> table, LongOperator operator) {
+		if(runs == null || runs.isEmpty()) {
+			return table.cursor();
+		}
+
+		List<File> spilledRuns = runs;
+
+		runs = null;
+
+		try {
+			return new MergeCursor(spilledRuns, table, operator);
+		} catch (IOException exception) {
+			throw new IllegalStateException("Error reading spilled combiner aggregates", exception);
+		}
+	}
+
+	private void spill(LongTable<O> table) throws IOException {
+		Object[] keys = sortKeys(table);
+
+		File file = File.createTempFile("hammr-combiner-", ".run", new File(getSpillPolicy().getDirectory()));
+
+		file.deleteOnExit();
+
+		boolean spilled = false;
+
+		try {
+			ChannelElementOutputStream outputStream = new ChannelElementOutputStream(new FileOutputStream(file));
+
+			try {
+				for(Object key: keys) {
+					@SuppressWarnings("unchecked")
+					O object = (O) key;
+
+					outputStream.writeChannelElement(new LongMRChannelElement<O>(object, table.get(object, 0L)));
+				}
+			} finally {
+				outputStream.close();
+			}
+
+			spilled = true;
+		} finally {
+			// Incomplete runs are discarded; the table keeps all its aggregates
+
+			if(!spilled) {
+				file.delete();
+			}
+		}
+
+		if(runs == null) {
+			runs = new ArrayList<File>();
+		}
+
+		runs.add(file);
+
+		table.clear();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object[] sortKeys(LongTable<O> table) {
+		Object[] keys = new Object[table.size()];
+
+		LongCursor<O> cursor = table.cursor();
+
+		for(int i = 0; cursor.next(); i++) {
+			keys[i] = cursor.getKey();
+		}
+
+		if(comparator != null) {
+			Arrays.sort(keys, (Comparator<Object>) comparator);
+		}
+		else {
+			Arrays.sort(keys);
+		}
+
+		return keys;
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare(O first, O second) {
+		if(comparator != null) {
+			return comparator.compare(first, second);
+		}
+
+		return ((Comparable<Object>) first).compareTo(second);
+	}
+
+	/**
+	 * Sorted sequence of aggregates, positioned on its current entry.
+	 * 
+	 * @author Hammurabi Mendes (hmendes)
+	 */
+	private abstract class Run {
+		protected O key;
+		protected long value;
+
+		public abstract boolean advance() throws IOException;
+
+		public void close() throws IOException {
+		}
+	}
+
+	private class TableRun extends Run {
+		private LongTable<O> table;
+
+		private Object[] keys;
+
+		private int position;
+
+		public TableRun(LongTable<O> table) {
+			this.table = table;
+
+			this.keys = sortKeys(table);
+		}
+
+		@SuppressWarnings("unchecked")
+		public boolean advance() {
+			if(position == keys.length) {
+				return false;
+			}
+
+			key = (O) keys[position++];
+			value = table.get(key, 0L);
+
+			return true;
+		}
+	}
+
+	private class FileRun extends Run {
+		private File file;
+
+		private ChannelElementInputStream inputStream;
+
+		public FileRun(File file) throws IOException {
+			this.file = file;
+
+			this.inputStream = new ChannelElementInputStream(new FileInputStream(file));
+		}
+
+		@SuppressWarnings("unchecked")
+		public boolean advance() throws IOException {
+			LongMRChannelElement<O> channelElement;
+
+			try {
+				channelElement = (LongMRChannelElement<O>) inputStream.readChannelElement();
+			} catch (EOFException exception) {
+				return false;
+			}
+
+			key = channelElement.getObject();
+			value = channelElement.getLongValue();
+
+			return true;
+		}
+
+		public void close() throws IOException {
+			inputStream.close();
+
+			if(!file.delete()) {
+				System.err.println("Error deleting spilled combiner run " + file);
+			}
+		}
+	}
+
+	private class MergeCursor implements LongCursor<O> {
+		private PriorityQueue<Run> queue;
+
+		private LongOperator operator;
+
+		private O key;
+		private long value;
+
+		public MergeCursor(List<File> files, LongTable<O> table, LongOperator operator) throws IOException {
+			this.queue = new PriorityQueue<Run>(files.size() + 1, new Comparator<Run>() {
+				public int compare(Run first, Run second) {
+					return LongSpiller.this.compare(first.key, second.key);
+				}
+			});
+
+			this.operator = operator;
+
+			for(File file: files) {
+				enqueue(new FileRun(file));
+			}
+
+			enqueue(new TableRun(table));
+		}
+
+		public boolean next() {
+			if(queue.isEmpty()) {
+				return false;
+			}
+
+			try {
+				Run run = queue.poll();
+
+				key = run.key;
+				value = run.value;
+
+				enqueue(run);
+
+				// Each run holds a key at most once, so equal keys come from different runs
+
+				while(!queue.isEmpty() && compare(queue.peek().key, key) == 0) {
+					run = queue.poll();
+
+					value = operator.apply(value, run.value);
+
+					enqueue(run);
+				}
+			} catch (IOException exception) {
+				throw new IllegalStateException("Error reading spilled combiner aggregates", exception);
+			}
+
+			return true;
+		}
+
+		public O getKey() {
+			return key;
+		}
+
+		public long getValue() {
+			return value;
+		}
+
+		private void enqueue(Run run) throws IOException {
+			if(run.advance()) {
+				queue.add(run);
+			}
+			else {
+				run.close();
+			}
+		}
+	}
+}
@@ -13,11 +13,25 @@ package mapreduce.programs;
 
 import java.util.Set;
 import java.util.Map;
+import java.util.HashMap;
+
+import java.util.List;
+import java.util.ArrayList;
 
 import appspecs.Node;
 
+import communication.channel.ChannelElement;
+import communication.channel.OutputChannel;
+
+import enums.DecodingMode;
+
 import mapreduce.communication.MRChannelElement;
 
+import mapreduce.partitioners.HashPartitioner;
+import mapreduce.partitioners.Partitioner;
+
+import utilities.collections.HeavyHitters;
+
 public abstract class Mapper<O,V> extends Node {
 	private static final long serialVersionUID = 1L;
 
@@ -25,6 +39,20 @@ public abstract class Mapper<O,V> extends Node {
 
 	protected Combiner<O,V> combiner;
 
+	protected Partitioner<? super O> partitioner = new HashPartitioner<O>();
+
+	protected SkewPolicy skewPolicy;
+
+	// Output channel of each partition, resolved once by name
+
+	private transient OutputChannel[] destinations;
+
+	// Approximate key frequencies, and the keys split across reducers
+
+	private transient HeavyHitters<O> keyFrequencies;
+
+	private transient Map<O, SplitKey> splitKeys;
+
 	public Mapper(int numberReducers) {
 		this(numberReducers, null);
 	}
@@ -33,6 +61,10 @@ public abstract class Mapper<O,V> extends Node {
 		this.numberReducers = numberReducers;
 
 		this.combiner = combiner;
+
+		// Mappers only need the keys of their inputs
+
+		setDecodingMode(DecodingMode.LAZY);
 	}
 
 	public int getNumberReducers() {
@@ -51,56 +83,308 @@ public abstract class Mapper<O,V> extends Node {
 		this.combiner = combiner;
 	}
 
+	public SkewPolicy getSkewPolicy() {
+		return skewPolicy;
+	}
+
+	/**
+	 * Setter for how hot keys are detected and split across reducers. Split keys should be combined
+	 * by the final Merger (see Merger.combine()).
+	 * 
+	 * @param skewPolicy How hot keys are detected and split, or null to never split keys.
+	 */
+	public void setSkewPolicy(SkewPolicy skewPolicy) {
+		this.skewPolicy = skewPolicy;
+	}
+
+	public Partitioner<? super O> getPartitioner() {
+		return partitioner;
+	}
+
+	/**
+	 * Setter for the partitioner that assigns keys to reducers. By default, keys are spread by their hash codes.
+	 * 
+	 * @param partitioner The partitioner that assigns keys to reducers.
+	 */
+	public void setPartitioner(Partitioner<? super O> partitioner) {
+		this.partitioner = partitioner;
+	}
+
 	@SuppressWarnings("unchecked")
 	public void run() {
-		MRChannelElement<O,V> channelElement;
+		// Elements are read in batches, and the results bound to each destination are written together
 
-		while(true) {
-			channelElement = (MRChannelElement<O,V>) readSomeone();
+		List<List<ChannelElement>> outgoing = createBatches();
 
-			if(channelElement == null) {
-				break;
-			}
+		List<ChannelElement> channelElements;
 
-			O object = channelElement.getObject();
+		while((channelElements = readSomeoneBatch(DEFAULT_BATCH_SIZE)) != null) {
+			for(ChannelElement element: channelElements) {
+				MRChannelElement<O,V> channelElement = (MRChannelElement<O,V>) element;
 
-			V value = map(object);
+				O object = channelElement.getObject();
 
-			if(combiner == null) {
-				channelElement.setValue(value);
+				observe(object);
 
-				String destination = calculateDestination(object);
+				V value = map(object);
 
-				write(channelElement, destination);
-			}
-			else {
-				combiner.add(object, value);
+				if(combiner == null) {
+					channelElement.setValue(value);
+
+					enqueue(outgoing, channelElement);
+				}
+				else {
+					combiner.add(object, value);
+				}
 			}
+
+			flush(outgoing);
 		}
 
 		finalizeMapping();
 
+		reportSplitKeys();
+
 		shutdown();
 	}
 
-	protected String calculateDestination(O object) {
-		return "reducer-" + Math.abs(object.hashCode() % numberReducers);
+	protected int calculatePartition(O object) {
+		return partitioner.getPartition(object, numberReducers);
+	}
+
+	/**
+	 * Obtains the output channel of a partition.
+	 * 
+	 * @param partition The partition.
+	 * 
+	 * @return The output channel of the partition, or null if the corresponding reducer is not connected.
+	 */
+	protected OutputChannel getDestination(int partition) {
+		if(destinations == null || destinations.length != numberReducers) {
+			destinations = new OutputChannel[numberReducers];
+
+			for(int i = 0; i < numberReducers; i++) {
+				destinations[i] = getOutputChannel("reducer-" + i);
+			}
+		}
+
+		return destinations[partition];
 	}
 
 	protected abstract V map(O object);
 
+	/**
+	 * Accounts for a record in the key frequencies, if hot keys are split.
+	 * 
+	 * @param object The key of the record.
+	 */
+	protected void observe(O object) {
+		if(skewPolicy == null) {
+			return;
+		}
+
+		if(keyFrequencies == null) {
+			keyFrequencies = new HeavyHitters<O>(skewPolicy.getSketchCapacity());
+
+			splitKeys = new HashMap<O, SplitKey>();
+		}
+
+		keyFrequencies.offer(object, 1L);
+	}
+
+	/**
+	 * Obtains the partition of an element whose key may be split. The records of a split key are spread
+	 * round-robin over the reducers following its partition, and are marked as such. Other mappers may not
+	 * split the same key, and send it unmarked to its partition; therefore the reducer of its partition is
+	 * always told about the split (see enqueue()), so that its result is combined by the merger as well.
+	 * 
+	 * @param channelElement The element.
+	 * @param partition The partition of the key of the element.
+	 * 
+	 * @return The partition the element is sent to.
+	 */
+	protected int calculateSplitPartition(MRChannelElement<O,V> channelElement, int partition) {
+		int splitFactor = Math.min(skewPolicy.getSplitFactor(), numberReducers);
+
+		if(keyFrequencies == null || splitFactor <= 1) {
+			return partition;
+		}
+
+		O object = channelElement.getObject();
+
+		SplitKey splitKey = splitKeys.get(object);
+
+		if(splitKey == null) {
+			long total = keyFrequencies.getTotal();
+
+			if(total < skewPolicy.getMinimumRecords() || keyFrequencies.estimate(object) < skewPolicy.getHotKeyFraction() * total) {
+				return partition;
+			}
+
+			// Mappers start at different reducers, so that keys emitted once per mapper (e.g. combined) are also spread
+
+			splitKey = new SplitKey(Math.abs((getName() == null ? 0 : getName().hashCode()) % splitFactor));
+
+			splitKeys.put(object, splitKey);
+		}
+
+		int offset = splitKey.next;
+
+		splitKey.next = (offset + 1) % splitFactor;
+		splitKey.records++;
+
+		channelElement.markSplitKey();
+
+		return (partition + offset) % numberReducers;
+	}
+
+	/**
+	 * Reports the keys split by this mapper, and how many of their records were spread, as node counters.
+	 */
+	protected void reportSplitKeys() {
+		if(splitKeys == null) {
+			return;
+		}
+
+		for(Map.Entry<O, SplitKey> entry: splitKeys.entrySet()) {
+			addToCounter("split key \"" + entry.getKey() + "\"", entry.getValue().records);
+		}
+	}
+
 	protected void finalizeMapping() {
 		if(combiner != null) {
+			List<List<ChannelElement>> outgoing = createBatches();
+
 			Set<Map.Entry<O,V>> currentEntries = combiner.getCurrentEntries();
 
 			for(Map.Entry<O,V> currentEntry: currentEntries) {
 				O object = currentEntry.getKey();
 				V value = currentEntry.getValue();
 
-				String destination = calculateDestination(object);
+				enqueue(outgoing, new MRChannelElement<O,V>(object, value));
+			}
 
-				write(new MRChannelElement<O,V>(object, value), destination);
+			flush(outgoing);
+		}
+	}
+
+	/**
+	 * Creates an empty batch of elements for each partition.
+	 * 
+	 * @return Batches of elements, by partition.
+	 */
+	protected List<List<ChannelElement>> createBatches() {
+		List<List<ChannelElement>> outgoing = new ArrayList<List<ChannelElement>>(numberReducers);
+
+		for(int i = 0; i < numberReducers; i++) {
+			outgoing.add(new ArrayList<ChannelElement>());
+		}
+
+		return outgoing;
+	}
+
+	/**
+	 * Adds an element to the batch of its partition, writing the batch once it is full.
+	 * 
+	 * @param outgoing Batches of elements, by partition.
+	 * @param channelElement The element.
+	 */
+	protected void enqueue(List<List<ChannelElement>> outgoing, MRChannelElement<O,V> channelElement) {
+		int partition = calculatePartition(channelElement.getObject());
+
+		if(skewPolicy != null) {
+			int basePartition = partition;
+
+			partition = calculateSplitPartition(channelElement, basePartition);
+
+			if(channelElement.isSplitKey()) {
+				announceSplitKey(outgoing, channelElement.getObject(), basePartition, partition);
 			}
 		}
+
+		List<ChannelElement> batch = outgoing.get(partition);
+
+		batch.add(channelElement);
+
+		if(batch.size() >= DEFAULT_BATCH_SIZE) {
+			write(batch, partition);
+		}
+	}
+
+	/**
+	 * Tells the reducer of the partition of a split key that the key was split, once per key. The reducer then
+	 * marks its own result for the key, which may include records of mappers that did not split it.
+	 * 
+	 * @param outgoing Batches of elements, by partition.
+	 * @param object The split key.
+	 * @param basePartition The partition of the key.
+	 * @param partition The partition the current record of the key is sent to.
+	 */
+	private void announceSplitKey(List<List<ChannelElement>> outgoing, O object, int basePartition, int partition) {
+		SplitKey splitKey = splitKeys.get(object);
+
+		if(splitKey.announced) {
+			return;
+		}
+
+		splitKey.announced = true;
+
+		// A marked record sent to the partition of the key already announces the split
+
+		if(partition == basePartition) {
+			return;
+		}
+
+		MRChannelElement<O,V> announcement = new MRChannelElement<O,V>(object, null);
+
+		announcement.markSplitKeyAnnouncement();
+
+		List<ChannelElement> batch = outgoing.get(basePartition);
+
+		batch.add(announcement);
+
+		if(batch.size() >= DEFAULT_BATCH_SIZE) {
+			write(batch, basePartition);
+		}
+	}
+
+	/**
+	 * Writes and empties every batch of elements.
+	 * 
+	 * @param outgoing Batches of elements, by partition.
+	 */
+	protected void flush(List<List<ChannelElement>> outgoing) {
+		for(int i = 0; i < outgoing.size(); i++) {
+			List<ChannelElement> batch = outgoing.get(i);
+
+			if(!batch.isEmpty()) {
+				write(batch, i);
+			}
+		}
+	}
+
+	private void write(List<ChannelElement> batch, int partition) {
+		OutputChannel destination = getDestination(partition);
+
+		if(destination != null) {
+			writeBatch(batch, destination);
+		}
+		else {
+			System.err.println("Couldn't find output channel for partition " + partition + " for node " + this);
+		}
+
+		batch.clear();
+	}
+
+	private static class SplitKey {
+		private int next;
+
+		private long records;
+
+		private boolean announced;
+
+		public SplitKey(int next) {
+			this.next = next;
+		}
 	}
 }
@@ -13,63 +13,428 @@ package mapreduce.programs;
 
 import java.util.Comparator;
 
-import java.util.Set;
+import java.util.Collections;
 
+import java.util.List;
 import java.util.Map;
+
+import java.util.ArrayList;
 import java.util.HashMap;
 
-import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import mapreduce.communication.MRChannelElement;
 
 import appspecs.Node;
 
+import communication.channel.ChannelElement;
+import communication.channel.InputChannel;
+
+import utilities.collections.LoserTree;
+
+import enums.DecodingMode;
+
+/**
+ * Merges the sorted outputs of the reducers with a loser tree indexed by input position. Each input is read
+ * in batches; when the number of inputs exceeds the parallel merge threshold, groups of inputs are merged by
+ * separate threads, and their outputs are merged again by the node.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
 public abstract class Merger<O,V> extends Node {
 	private static final long serialVersionUID = 1L;
 
-	@SuppressWarnings("unchecked")
+	public static final int DEFAULT_PARALLEL_MERGE_THRESHOLD = 16;
+
+	// Number of merged batches each group thread keeps ahead of the final merge
+
+	private static final int GROUP_QUEUE_CAPACITY = 4;
+
+	private int parallelMergeThreshold = DEFAULT_PARALLEL_MERGE_THRESHOLD;
+
+	public Merger() {
+		// Elements are only compared, and then forwarded as they were read
+
+		setDecodingMode(DecodingMode.LAZY);
+	}
+
+	/**
+	 * Sets the number of inputs above which groups of inputs are merged in parallel.
+	 * 
+	 * @param parallelMergeThreshold The number of inputs above which the merge has two levels.
+	 */
+	public void setParallelMergeThreshold(int parallelMergeThreshold) {
+		this.parallelMergeThreshold = parallelMergeThreshold;
+	}
+
+	public int getParallelMergeThreshold() {
+		return parallelMergeThreshold;
+	}
+
 	public void run() {
-		Set<String> inputs = getInputChannelNames();
+		List<MergeSource> sources = new ArrayList<MergeSource>();
+
+		// Partial results of keys split across reducers come first in every input, and are combined before the merge
+
+		Map<O,MRChannelElement<O,V>> splitElements = new HashMap<O,MRChannelElement<O,V>>();
 
-		PriorityQueue<MRChannelElement<O,V>> channelElements = new PriorityQueue<MRChannelElement<O,V>>(inputs.size(), getComparator());
+		List<MRChannelElement<O,V>> separateElements = new ArrayList<MRChannelElement<O,V>>();
 
-		Map<MRChannelElement<O,V>,String> backwardMapping = new HashMap<MRChannelElement<O,V>,String>();
+		for(String input: getInputChannelNames()) {
+			InputSource source = new InputSource(getInputChannel(input));
 
-		MRChannelElement<O,V> channelElement;
+			MRChannelElement<O,V> channelElement = source.next();
 
-		for(String input: inputs) {
-			channelElement = (MRChannelElement<O,V>) read(input);
+			while(channelElement != null && channelElement.isSplitKey()) {
+				combineSplitKey(splitElements, channelElement, separateElements);
+
+				channelElement = source.next();
+			}
 
 			if(channelElement != null) {
-				channelElements.add(channelElement);
+				source.pushBack();
 
-				backwardMapping.put(channelElement, input);
+				sources.add(source);
 			}
 		}
 
-		String input;
+		if(!splitElements.isEmpty()) {
+			addToCounter("combined split keys", splitElements.size());
+		}
 
-		while(channelElements.size() > 0) {
-			channelElement = channelElements.poll();
+		// Combined elements form one more sorted input, which is merged by the node
 
-			writeSomeone(channelElement);
+		separateElements.addAll(splitElements.values());
 
-			input = backwardMapping.remove(channelElement);
+		for(MRChannelElement<O,V> separateElement: separateElements) {
+			separateElement.setDescription(null);
+		}
 
-			channelElement = (MRChannelElement<O,V>) read(input);
+		Collections.sort(separateElements, getComparator());
 
-			if(channelElement != null) {
-				channelElements.add(channelElement);
+		List<MergeSource> finalSources = new ArrayList<MergeSource>();
+
+		List<GroupSource> groupSources = new ArrayList<GroupSource>();
+
+		if(sources.size() > parallelMergeThreshold) {
+			// Groups of about the square root of the number of inputs balance both merge levels
+
+			int groupSize = (int) Math.ceil(Math.sqrt(sources.size()));
+
+			for(int i = 0; i < sources.size(); i += groupSize) {
+				GroupSource groupSource = new GroupSource(sources.subList(i, Math.min(i + groupSize, sources.size())));
 
-				backwardMapping.put(channelElement, input);
+				groupSource.start(getName() + " merge group " + (i / groupSize));
+
+				groupSources.add(groupSource);
+
+				finalSources.add(groupSource);
+			}
+		}
+		else {
+			finalSources.addAll(sources);
+		}
+
+		if(separateElements.size() > 0) {
+			finalSources.add(new ListSource(separateElements));
+		}
+
+		try {
+			LoserTree<MRChannelElement<O,V>> loserTree = createLoserTree(finalSources);
+
+			int winner;
+
+			while((winner = loserTree.getWinner()) >= 0) {
+				writeSomeone(loserTree.peek());
+
+				loserTree.replace(finalSources.get(winner).next());
+			}
+		} finally {
+			// If the final merge failed, the groups not drained yet would stay blocked handing over their elements
+
+			for(GroupSource groupSource: groupSources) {
+				groupSource.cancel();
+			}
+
+			for(GroupSource groupSource: groupSources) {
+				groupSource.join();
 			}
 		}
 
 		shutdown();
 	}
 
+	private LoserTree<MRChannelElement<O,V>> createLoserTree(List<MergeSource> sources) {
+		LoserTree<MRChannelElement<O,V>> loserTree = new LoserTree<MRChannelElement<O,V>>(sources.size(), getComparator());
+
+		for(int i = 0; i < sources.size(); i++) {
+			loserTree.set(i, sources.get(i).next());
+		}
+
+		loserTree.build();
+
+		return loserTree;
+	}
+
 	public abstract Comparator<MRChannelElement<O,V>> getComparator();
 
+	/**
+	 * Combines two partial results of a key split across reducers. By default, partial results are not combined.
+	 * 
+	 * @param object The key.
+	 * @param first The first partial result.
+	 * @param second The second partial result.
+	 * 
+	 * @return The combined result, or null if the partial results should be written separately.
+	 */
+	protected V combine(O object, V first, V second) {
+		return null;
+	}
+
+	/**
+	 * Combines a partial result into the results of the split keys seen so far.
+	 * 
+	 * @param splitElements The combined results of the split keys, by key.
+	 * @param channelElement The partial result.
+	 * @param separateElements The partial results that cannot be combined, which are merged separately.
+	 */
+	private void combineSplitKey(Map<O,MRChannelElement<O,V>> splitElements, MRChannelElement<O,V> channelElement, List<MRChannelElement<O,V>> separateElements) {
+		O object = channelElement.getObject();
+
+		MRChannelElement<O,V> splitElement = splitElements.get(object);
+
+		if(splitElement == null) {
+			splitElements.put(object, channelElement);
+
+			return;
+		}
+
+		V value = combine(object, splitElement.getValue(), channelElement.getValue());
+
+		if(value == null) {
+			separateElements.add(channelElement);
+		}
+		else {
+			splitElement.setValue(value);
+		}
+	}
+
+	/**
+	 * Sorted sequence of elements merged by a loser tree.
+	 */
+	private abstract class MergeSource {
+		/**
+		 * Obtains the next element of the sequence.
+		 * 
+		 * @return The next element, or null if the sequence is exhausted.
+		 */
+		public abstract MRChannelElement<O,V> next();
+	}
+
+	/**
+	 * Input channel read in batches.
+	 */
+	private class InputSource extends MergeSource {
+		private InputChannel inputChannel;
+
+		private List<ChannelElement> batch;
+		private int position;
+
+		public InputSource(InputChannel inputChannel) {
+			this.inputChannel = inputChannel;
+		}
+
+		@SuppressWarnings("unchecked")
+		public MRChannelElement<O,V> next() {
+			if(batch == null || position == batch.size()) {
+				if(inputChannel == null) {
+					return null;
+				}
+
+				batch = readBatch(inputChannel, DEFAULT_BATCH_SIZE);
+				position = 0;
+
+				if(batch == null || batch.size() == 0) {
+					inputChannel = null;
+
+					return null;
+				}
+			}
+
+			return (MRChannelElement<O,V>) batch.get(position++);
+		}
+
+		/**
+		 * Returns the element just obtained with next() to the sequence.
+		 */
+		public void pushBack() {
+			position--;
+		}
+	}
+
+	private class ListSource extends MergeSource {
+		private List<MRChannelElement<O,V>> elements;
+		private int position;
+
+		public ListSource(List<MRChannelElement<O,V>> elements) {
+			this.elements = elements;
+		}
+
+		public MRChannelElement<O,V> next() {
+			return (position < elements.size() ? elements.get(position++) : null);
+		}
+	}
+
+	/**
+	 * Group of sources merged by a separate thread, which hands the merged elements over in batches.
+	 */
+	private class GroupSource extends MergeSource implements Runnable {
+		private List<MergeSource> sources;
+
+		private BlockingQueue<List<MRChannelElement<O,V>>> queue;
+
+		private List<MRChannelElement<O,V>> batch;
+		private int position;
+
+		private boolean finished;
+
+		private Thread thread;
+
+		// Failure of the group thread, rethrown by the final merge
+
+		private volatile Throwable failure;
+
+		// Set when the final merge stops before draining the group
+
+		private volatile boolean cancelled;
+
+		public GroupSource(List<MergeSource> sources) {
+			this.sources = new ArrayList<MergeSource>(sources);
+
+			this.queue = new ArrayBlockingQueue<List<MRChannelElement<O,V>>>(GROUP_QUEUE_CAPACITY);
+		}
+
+		public void start(String name) {
+			thread = new Thread(this, name);
+
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * Stops the thread of the group if the final merge did not take all its elements, discarding the remaining ones.
+		 */
+		public void cancel() {
+			if(finished) {
+				return;
+			}
+
+			cancelled = true;
+
+			thread.interrupt();
+		}
+
+		public void join() {
+			try {
+				thread.join();
+			} catch (InterruptedException exception) {
+				System.err.println("Unexpected thread interruption while waiting for a merge group");
+
+				exception.printStackTrace();
+			}
+		}
+
+		public void run() {
+			List<MRChannelElement<O,V>> current = new ArrayList<MRChannelElement<O,V>>(DEFAULT_BATCH_SIZE);
+
+			try {
+				LoserTree<MRChannelElement<O,V>> loserTree = createLoserTree(sources);
+
+				int winner;
+
+				while(!cancelled && (winner = loserTree.getWinner()) >= 0) {
+					current.add(loserTree.peek());
+
+					if(current.size() == DEFAULT_BATCH_SIZE) {
+						put(current);
+
+						current = new ArrayList<MRChannelElement<O,V>>(DEFAULT_BATCH_SIZE);
+					}
+
+					loserTree.replace(sources.get(winner).next());
+				}
+			} catch (RuntimeException exception) {
+				failure = exception;
+			} catch (Error error) {
+				failure = error;
+			} finally {
+				if(current.size() > 0) {
+					put(current);
+				}
+
+				// An empty batch marks the end of the group
+
+				put(new ArrayList<MRChannelElement<O,V>>(0));
+			}
+		}
+
+		public MRChannelElement<O,V> next() {
+			if(batch == null || position == batch.size()) {
+				if(finished) {
+					return null;
+				}
+
+				batch = take();
+				position = 0;
+
+				if(batch.size() == 0) {
+					finished = true;
+
+					// The end marker is also queued when the group fails, so that the final merge does not block
+
+					if(failure != null) {
+						throw new IllegalStateException("Error merging a group of inputs", failure);
+					}
+
+					return null;
+				}
+			}
+
+			return batch.get(position++);
+		}
+
+		private void put(List<MRChannelElement<O,V>> elements) {
+			while(!cancelled) {
+				try {
+					queue.put(elements);
+
+					return;
+				} catch (InterruptedException exception) {
+					if(cancelled) {
+						return;
+					}
+
+					System.err.println("Unexpected thread interruption while handing over merged elements");
+
+					exception.printStackTrace();
+				}
+			}
+		}
+
+		private List<MRChannelElement<O,V>> take() {
+			while(true) {
+				try {
+					return queue.take();
+				} catch (InterruptedException exception) {
+					System.err.println("Unexpected thread interruption while waiting for merged elements");
+
+					exception.printStackTrace();
+				}
+			}
+		}
+	}
+
 	public class MRChannelElementComparatorObject<X extends Comparable<X>,Y> implements Comparator<MRChannelElement<X,Y>> {
 		public int compare(MRChannelElement<X,Y> first, MRChannelElement<X,Y> second) {
 			return first.getObject().compareTo(second.getObject());
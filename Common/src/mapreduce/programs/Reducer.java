@@ -11,25 +11,38 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package mapreduce.programs;
 
+import java.util.List;
+
+import java.util.Set;
+import java.util.HashSet;
+
 import appspecs.Node;
 
+import communication.channel.ChannelElement;
+
 import mapreduce.communication.MRChannelElement;
 
 public abstract class Reducer<O,V> extends Node {
 	private static final long serialVersionUID = 1L;
 
+	// Keys that were split across reducers by the mappers
+
+	private transient Set<O> splitKeys;
+
 	@SuppressWarnings("unchecked")
 	public void run() {
-		MRChannelElement<O,V> channelElement;
+		List<ChannelElement> channelElements;
 
-		while(true) {
-			channelElement = (MRChannelElement<O,V>) readSomeone();
+		while((channelElements = readSomeoneBatch(DEFAULT_BATCH_SIZE)) != null) {
+			for(ChannelElement element: channelElements) {
+				MRChannelElement<O,V> channelElement = (MRChannelElement<O,V>) element;
 
-			if(channelElement == null) {
-				break;
-			}
+				if(observeSplitKey(channelElement)) {
+					continue;
+				}
 
-			reduce(channelElement.getObject(), channelElement.getValue());
+				reduce(channelElement.getObject(), channelElement.getValue());
+			}
 		}
 
 		finalizeReduce();
@@ -37,6 +50,39 @@ public abstract class Reducer<O,V> extends Node {
 		shutdown();
 	}
 
+	/**
+	 * Records the key of an element if the mappers split it across reducers.
+	 * 
+	 * @param channelElement The element.
+	 * 
+	 * @return True if the element only announces the split of its key, and should not be reduced.
+	 */
+	protected boolean observeSplitKey(MRChannelElement<O,?> channelElement) {
+		boolean announcement = channelElement.isSplitKeyAnnouncement();
+
+		if(announcement || channelElement.isSplitKey()) {
+			if(splitKeys == null) {
+				splitKeys = new HashSet<O>();
+			}
+
+			splitKeys.add(channelElement.getObject());
+		}
+
+		return announcement;
+	}
+
+	/**
+	 * Checks if a key was split across reducers. The results of split keys are partial: they should be marked with
+	 * MRChannelElement.markSplitKey() and written before any other result, so that the Merger combines them.
+	 * 
+	 * @param object The key.
+	 * 
+	 * @return True if the key was split across reducers.
+	 */
+	protected boolean isSplitKey(O object) {
+		return splitKeys != null && splitKeys.contains(object);
+	}
+
 	protected abstract void reduce(O object, V value);
 	protected abstract void finalizeReduce();
 }
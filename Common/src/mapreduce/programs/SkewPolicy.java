@@ -0,0 +1,91 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mapreduce.programs;
+
+import java.io.Serializable;
+
+/**
+ * How mappers detect hot keys and split them across reducers.
+ * 
+ * Mappers track approximate key frequencies with a heavy-hitter summary of the informed capacity. After the
+ * minimum number of records, a key that accounts for at least the hot key fraction of the records is split:
+ * its following records are spread over the informed number of reducers, and the partial results are combined
+ * by the final Merger.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class SkewPolicy implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public static final int DEFAULT_SKETCH_CAPACITY = 64;
+	public static final double DEFAULT_HOT_KEY_FRACTION = 0.05;
+	public static final long DEFAULT_MINIMUM_RECORDS = 10000L;
+	public static final int DEFAULT_SPLIT_FACTOR = 4;
+
+	private int sketchCapacity;
+
+	private double hotKeyFraction;
+
+	private long minimumRecords;
+
+	private int splitFactor;
+
+	public SkewPolicy() {
+		this(DEFAULT_SKETCH_CAPACITY, DEFAULT_HOT_KEY_FRACTION, DEFAULT_MINIMUM_RECORDS, DEFAULT_SPLIT_FACTOR);
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param sketchCapacity Number of keys tracked by the heavy-hitter summary of each mapper.
+	 * @param hotKeyFraction Minimum share of the records of a mapper for a key to be split.
+	 * @param minimumRecords Number of records a mapper reads before splitting keys.
+	 * @param splitFactor Number of reducers that share each hot key.
+	 */
+	public SkewPolicy(int sketchCapacity, double hotKeyFraction, long minimumRecords, int splitFactor) {
+		if(sketchCapacity <= 0 || splitFactor <= 0) {
+			throw new IllegalArgumentException("Sketch capacity and split factor should be positive");
+		}
+
+		if(hotKeyFraction <= 0.0 || hotKeyFraction > 1.0) {
+			throw new IllegalArgumentException("Hot key fraction should be in (0, 1]");
+		}
+
+		this.sketchCapacity = sketchCapacity;
+
+		this.hotKeyFraction = hotKeyFraction;
+
+		this.minimumRecords = minimumRecords;
+
+		this.splitFactor = splitFactor;
+	}
+
+	public int getSketchCapacity() {
+		return sketchCapacity;
+	}
+
+	public double getHotKeyFraction() {
+		return hotKeyFraction;
+	}
+
+	public long getMinimumRecords() {
+		return minimumRecords;
+	}
+
+	public int getSplitFactor() {
+		return splitFactor;
+	}
+
+	public String toString() {
+		return "split keys above " + hotKeyFraction + " of the records into " + splitFactor + " reducers";
+	}
+}
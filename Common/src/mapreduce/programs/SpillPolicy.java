@@ -0,0 +1,89 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mapreduce.programs;
+
+import java.io.Serializable;
+
+/**
+ * Memory budget of a combiner, and where it spills its partial aggregates once the budget is exceeded.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class SpillPolicy implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024L * 1024L;
+
+	private static SpillPolicy defaultPolicy;
+
+	private long memoryBudget;
+
+	private String directory;
+
+	static {
+		long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+		String directory = System.getProperty("java.io.tmpdir");
+
+		String memoryBudgetProperty = System.getProperty("hammr.mapreduce.combiner_memory_budget");
+		String directoryProperty = System.getProperty("hammr.mapreduce.spill_directory");
+
+		if(memoryBudgetProperty != null) {
+			memoryBudget = Math.max(1L, Long.parseLong(memoryBudgetProperty));
+		}
+
+		if(directoryProperty != null) {
+			directory = directoryProperty;
+		}
+
+		defaultPolicy = new SpillPolicy(memoryBudget, directory);
+	}
+
+	/**
+	 * Returns the policy used by combiners without an explicit one, configurable through the properties
+	 * hammr.mapreduce.combiner_memory_budget (in bytes) and hammr.mapreduce.spill_directory. The default
+	 * policy is read on the launcher that runs the combiner.
+	 * 
+	 * @return The default policy.
+	 */
+	public static SpillPolicy getDefault() {
+		return defaultPolicy;
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param memoryBudget Estimated heap space, in bytes, above which the partial aggregates are spilled.
+	 * @param directory Local directory that receives the spilled aggregates.
+	 */
+	public SpillPolicy(long memoryBudget, String directory) {
+		if(memoryBudget <= 0L) {
+			throw new IllegalArgumentException("Combiner memory budget should be positive");
+		}
+
+		this.memoryBudget = memoryBudget;
+
+		this.directory = directory;
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	public String getDirectory() {
+		return directory;
+	}
+
+	public String toString() {
+		return "spill above " + memoryBudget + " bytes to " + directory;
+	}
+}
@@ -11,12 +11,22 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package mapreduce.programs.counting;
 
-import mapreduce.programs.Combiner;
+import mapreduce.programs.LongCombiner;
 
-public class CountingCombiner<O> extends Combiner<O,Long> {
+import utilities.collections.LongTable;
+
+public class CountingCombiner<O> extends LongCombiner<O> {
 	private static final long serialVersionUID = 1L;
 
-	public Long combine(Long oldValue, Long newValue) {
+	public CountingCombiner() {
+		super();
+	}
+
+	public CountingCombiner(LongTable<O> currentValues) {
+		super(currentValues);
+	}
+
+	public long combine(long oldValue, long newValue) {
 		return oldValue + newValue;
 	}
 }
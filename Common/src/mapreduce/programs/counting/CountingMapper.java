@@ -11,16 +11,28 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package mapreduce.programs.counting;
 
-import mapreduce.programs.Mapper;
+import mapreduce.programs.LongMapper;
 
-public class CountingMapper<O> extends Mapper<O,Long> {
+import utilities.collections.LongTable;
+
+public class CountingMapper<O> extends LongMapper<O> {
 	private static final long serialVersionUID = 1L;
 
 	public CountingMapper(int numberReducers) {
 		super(numberReducers, new CountingCombiner<O>());
 	}
 
-	public Long map(O object) {
+	/**
+	 * Constructor method.
+	 * 
+	 * @param numberReducers Number of reducers.
+	 * @param currentValues Table that keeps the partial counts (e.g. a StringLongTable for string keys).
+	 */
+	public CountingMapper(int numberReducers, LongTable<O> currentValues) {
+		super(numberReducers, new CountingCombiner<O>(currentValues));
+	}
+
+	public long mapLong(O object) {
 		return 1L;
 	}
 }
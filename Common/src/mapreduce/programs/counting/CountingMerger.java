@@ -13,6 +13,7 @@ package mapreduce.programs.counting;
 
 import java.util.Comparator;
 
+import mapreduce.communication.LongMRChannelElement;
 import mapreduce.communication.MRChannelElement;
 import mapreduce.programs.Merger;
 
@@ -20,12 +21,27 @@ public class CountingMerger<O> extends Merger<O,Long> {
 	private static final long serialVersionUID = 1L;
 
 	public Comparator<MRChannelElement<O, Long>> getComparator() {
-		return new MRChannelElementComparatorValue<O,Long>();
+		return new MRChannelElementComparator<O>();
+	}
+
+	protected Long combine(O object, Long first, Long second) {
+		return first + second;
 	}
 }
 
 class MRChannelElementComparator<O> implements Comparator<MRChannelElement<O,Long>> {
 	public int compare(MRChannelElement<O, Long> first, MRChannelElement<O, Long> second) {
-		return first.getValue().compareTo(second.getValue());
+		long firstValue = getLongValue(first);
+		long secondValue = getLongValue(second);
+
+		return (firstValue < secondValue ? -1 : (firstValue == secondValue ? 0 : 1));
+	}
+
+	private static long getLongValue(MRChannelElement<?, Long> channelElement) {
+		if(channelElement instanceof LongMRChannelElement) {
+			return ((LongMRChannelElement<?>) channelElement).getLongValue();
+		}
+
+		return channelElement.getValue();
 	}
 }
@@ -11,20 +11,17 @@ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
 
 package mapreduce.programs.counting;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
 
-import java.util.Map;
-import java.util.Map.Entry;
+import mapreduce.communication.LongMRChannelElement;
 
-import java.util.List;
-import java.util.ArrayList;
+import mapreduce.programs.LongReducer;
 
-import mapreduce.communication.MRChannelElement;
+import utilities.collections.LongCursor;
+import utilities.collections.LongTable;
 
-import mapreduce.programs.Reducer;
-
-public class CountingReducer<O> extends Reducer<O,Long> {
+public class CountingReducer<O> extends LongReducer<O> {
 	private static final long serialVersionUID = 1L;
 
 	private CountingCombiner<O> combiner;
@@ -33,26 +30,82 @@ public class CountingReducer<O> extends Reducer<O,Long> {
 		this.combiner = new CountingCombiner<O>();
 	}
 
-	public void reduce(O object, Long value) {
+	/**
+	 * Constructor method.
+	 * 
+	 * @param currentValues Table that keeps the counts (e.g. a StringLongTable for string keys).
+	 */
+	public CountingReducer(LongTable<O> currentValues) {
+		this.combiner = new CountingCombiner<O>(currentValues);
+	}
+
+	public void reduceLong(O object, long value) {
 		combiner.add(object, value);
 	}
 
+	@SuppressWarnings("unchecked")
 	public void finalizeReduce() {
-		List<Map.Entry<O,Long>> currentEntries = new ArrayList<Map.Entry<O,Long>>(combiner.getCurrentEntries());
+		// Counts are kept in parallel arrays, rather than as one entry object per key. The combiner
+		// may have spilled part of the counts, so its size only gives the initial length of the arrays
+
+		int size = 0;
+
+		Object[] objects = new Object[Math.max(16, combiner.size())];
+		long[] values = new long[objects.length];
+
+		LongCursor<O> cursor = combiner.cursor();
+
+		while(cursor.next()) {
+			// Partial counts of split keys go first, unsorted, to be combined by the merger
+
+			if(isSplitKey(cursor.getKey())) {
+				LongMRChannelElement<O> channelElement = new LongMRChannelElement<O>(cursor.getKey(), cursor.getValue());
+
+				channelElement.markSplitKey();
+
+				writeSomeone(channelElement);
+
+				continue;
+			}
+
+			if(size == objects.length) {
+				objects = Arrays.copyOf(objects, size << 1);
+				values = Arrays.copyOf(values, size << 1);
+			}
 
-		Collections.sort(currentEntries, new CountingEntryComparator<O>());
+			objects[size] = cursor.getKey();
+			values[size] = cursor.getValue();
 
-		for(Map.Entry<O,Long> currentEntry: currentEntries) {
-			O object = currentEntry.getKey();
-			Long value = currentEntry.getValue();
+			size++;
+		}
+
+		// Positions are sorted by count, keeping the order of the cursor among equal counts
+
+		Integer[] order = new Integer[size];
+
+		for(int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+
+		Arrays.sort(order, new CountComparator(values));
 
-			writeSomeone(new MRChannelElement<O,Long>(object, value));
+		for(int i = 0; i < size; i++) {
+			writeSomeone(new LongMRChannelElement<O>((O) objects[order[i]], values[order[i]]));
 		}
 	}
-}
 
-class CountingEntryComparator<O> implements Comparator<Map.Entry<O,Long>> {
-	public int compare(Entry<O, Long> first, Entry<O, Long> second) {
-		return first.getValue().compareTo(second.getValue());
+	private static class CountComparator implements Comparator<Integer> {
+		private long[] values;
+
+		public CountComparator(long[] values) {
+			this.values = values;
+		}
+
+		public int compare(Integer first, Integer second) {
+			long firstValue = values[first];
+			long secondValue = values[second];
+
+			return (firstValue < secondValue ? -1 : (firstValue == secondValue ? 0 : 1));
+		}
 	}
 }
@@ -13,9 +13,17 @@ package nodes;
 
 import communication.channel.ChannelElement;
 
+import enums.DecodingMode;
+
 public class ReaderSomeoneWriterEveryone extends StatefulNode {
 	private static final long serialVersionUID = 1L;
 
+	public ReaderSomeoneWriterEveryone() {
+		// Elements are forwarded as they are read, so they do not need to be decoded
+
+		setDecodingMode(DecodingMode.PASS_THROUGH);
+	}
+
 	protected boolean performInitialization() {
 		return true;
 	}
@@ -0,0 +1,104 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package utilities.collections;
+
+import java.util.Iterator;
+
+import java.util.Map;
+import java.util.HashMap;
+
+import utilities.MutableLong;
+
+/**
+ * LongTable backed by a HashMap, for keys of any type. Values are kept in mutable holders,
+ * so merging into an existing key allocates nothing.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class HashLongTable<K> implements LongTable<K> {
+	private static final long serialVersionUID = 1L;
+
+	// Estimated heap space per entry: the map entry, its bucket, the holder and a small key
+	private static final int ENTRY_SIZE = 112;
+
+	private Map<K,MutableLong> values;
+
+	public HashLongTable() {
+		values = new HashMap<K,MutableLong>();
+	}
+
+	public boolean containsKey(K key) {
+		return values.containsKey(key);
+	}
+
+	public long get(K key, long missingValue) {
+		MutableLong value = values.get(key);
+
+		return (value != null ? value.getValue() : missingValue);
+	}
+
+	public void put(K key, long value) {
+		MutableLong currentValue = values.get(key);
+
+		if(currentValue != null) {
+			currentValue.setValue(value);
+		}
+		else {
+			values.put(key, new MutableLong(value));
+		}
+	}
+
+	public void merge(K key, long value, LongOperator operator) {
+		MutableLong currentValue = values.get(key);
+
+		if(currentValue != null) {
+			currentValue.setValue(operator.apply(currentValue.getValue(), value));
+		}
+		else {
+			values.put(key, new MutableLong(value));
+		}
+	}
+
+	public int size() {
+		return values.size();
+	}
+
+	public long getMemoryUsage() {
+		return (long) values.size() * ENTRY_SIZE;
+	}
+
+	public void clear() {
+		values.clear();
+	}
+
+	public LongCursor<K> cursor() {
+		final Iterator<Map.Entry<K,MutableLong>> iterator = values.entrySet().iterator();
+
+		return new LongCursor<K>() {
+			private Map.Entry<K,MutableLong> current;
+
+			public boolean next() {
+				current = (iterator.hasNext() ? iterator.next() : null);
+
+				return (current != null);
+			}
+
+			public K getKey() {
+				return current.getKey();
+			}
+
+			public long getValue() {
+				return current.getValue().getValue();
+			}
+		};
+	}
+}
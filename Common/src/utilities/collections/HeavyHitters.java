@@ -0,0 +1,150 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package utilities.collections;
+
+import java.io.Serializable;
+
+import java.util.Iterator;
+
+import java.util.Map;
+import java.util.HashMap;
+
+import java.util.Set;
+import java.util.HashSet;
+
+import utilities.MutableLong;
+
+/**
+ * Approximate frequency counts of the most frequent keys of a stream, kept with the Misra-Gries summary
+ * in space proportional to its capacity.
+ * 
+ * The estimate of a key never exceeds its true count, and falls short of it by at most total / (capacity + 1).
+ * Therefore, every key that appears more than total / (capacity + 1) times is tracked.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class HeavyHitters<K> implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private int capacity;
+
+	private Map<K,MutableLong> counters;
+
+	private long total;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param capacity Maximum number of keys tracked.
+	 */
+	public HeavyHitters(int capacity) {
+		this.capacity = capacity;
+
+		this.counters = new HashMap<K,MutableLong>();
+	}
+
+	/**
+	 * Accounts for occurrences of a key.
+	 * 
+	 * @param key The key.
+	 * @param count Number of occurrences of the key.
+	 */
+	public void offer(K key, long count) {
+		total += count;
+
+		MutableLong counter = counters.get(key);
+
+		if(counter != null) {
+			counter.setValue(counter.getValue() + count);
+
+			return;
+		}
+
+		if(counters.size() < capacity) {
+			counters.put(key, new MutableLong(count));
+
+			return;
+		}
+
+		// Decrement every counter (and the new key) by the smallest count, discarding the counters that reach zero.
+		// The decrements never exceed the increments, so the amortized cost of an offer is constant
+
+		long decrement = count;
+
+		for(MutableLong current: counters.values()) {
+			decrement = Math.min(decrement, current.getValue());
+		}
+
+		Iterator<MutableLong> iterator = counters.values().iterator();
+
+		while(iterator.hasNext()) {
+			MutableLong current = iterator.next();
+
+			current.setValue(current.getValue() - decrement);
+
+			if(current.getValue() == 0) {
+				iterator.remove();
+			}
+		}
+
+		if(count > decrement) {
+			counters.put(key, new MutableLong(count - decrement));
+		}
+	}
+
+	/**
+	 * Obtains the estimated number of occurrences of a key.
+	 * 
+	 * @param key The key.
+	 * 
+	 * @return A lower bound on the number of occurrences of the key.
+	 */
+	public long estimate(K key) {
+		MutableLong counter = counters.get(key);
+
+		return (counter == null ? 0L : counter.getValue());
+	}
+
+	/**
+	 * Obtains the total number of occurrences offered.
+	 * 
+	 * @return The total number of occurrences offered.
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Obtains the keys whose estimated share of the occurrences is at least the informed fraction.
+	 * 
+	 * @param fraction The minimum share of the occurrences.
+	 * 
+	 * @return The keys whose estimated share of the occurrences is at least the informed fraction.
+	 */
+	public Set<K> getHeavyHitters(double fraction) {
+		Set<K> result = new HashSet<K>();
+
+		for(Map.Entry<K,MutableLong> entry: counters.entrySet()) {
+			if(entry.getValue().getValue() >= fraction * total) {
+				result.add(entry.getKey());
+			}
+		}
+
+		return result;
+	}
+
+	public void clear() {
+		counters.clear();
+
+		total = 0L;
+	}
+}
@@ -0,0 +1,63 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package utilities.collections;
+
+import java.io.Serializable;
+
+/**
+ * Map from keys to primitive long values.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public interface LongTable<K> extends Serializable {
+	public boolean containsKey(K key);
+
+	/**
+	 * Returns the value associated with a key.
+	 * 
+	 * @param key The key.
+	 * @param missingValue Value returned if the key is not present.
+	 * 
+	 * @return The value associated with the key, or missingValue if the key is not present.
+	 */
+	public long get(K key, long missingValue);
+
+	public void put(K key, long value);
+
+	/**
+	 * Associates a key with the informed value if the key is not present, or with the result of
+	 * merging its current value with the informed value otherwise.
+	 * 
+	 * @param key The key.
+	 * @param value The value.
+	 * @param operator Operation that merges the current value (first argument) and the informed value (second argument).
+	 */
+	public void merge(K key, long value, LongOperator operator);
+
+	public int size();
+
+	/**
+	 * Returns an estimate of the heap space taken by the table, excluding objects still referenced elsewhere.
+	 * 
+	 * @return The estimated heap space taken by the table, in bytes.
+	 */
+	public long getMemoryUsage();
+
+	public void clear();
+
+	/**
+	 * Returns a cursor over the entries of the table. The table must not be modified while the cursor is in use.
+	 * 
+	 * @return A cursor positioned before the first entry.
+	 */
+	public LongCursor<K> cursor();
+}
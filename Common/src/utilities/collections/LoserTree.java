@@ -0,0 +1,168 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package utilities.collections;
+
+import java.util.Comparator;
+
+/**
+ * Tournament tree of losers for k-way merges. Each source is identified by its position, and exposes one
+ * element at a time (its head); the tree keeps the position of the smallest head, and replacing the head of
+ * that position costs one comparison per level, without hashing or moving elements.
+ * 
+ * Exhausted sources have a null head, which loses to every element. Equal heads are won by the smallest
+ * position, so merges of sorted sources are stable.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ *
+ * @param <E> Type of the elements merged.
+ */
+public class LoserTree<E> {
+	private Comparator<? super E> comparator;
+
+	private int size;
+
+	private E[] heads;
+
+	// Position 0 holds the overall winner; the other positions hold the loser of each internal match.
+	// Source i is the leaf at position size + i, and the parent of position n is n / 2
+
+	private int[] tree;
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param size Number of sources.
+	 * @param comparator Comparator of the elements.
+	 */
+	@SuppressWarnings("unchecked")
+	public LoserTree(int size, Comparator<? super E> comparator) {
+		this.size = size;
+
+		this.comparator = comparator;
+
+		this.heads = (E[]) new Object[size];
+
+		this.tree = new int[Math.max(size, 1)];
+
+		this.tree[0] = -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Sets the head of a source, before the tree is built.
+	 * 
+	 * @param source The position of the source.
+	 * @param element The head of the source, or null if the source is exhausted.
+	 */
+	public void set(int source, E element) {
+		heads[source] = element;
+	}
+
+	/**
+	 * Plays all matches of the tree. Should be called after the initial heads are set.
+	 */
+	public void build() {
+		if(size == 0) {
+			return;
+		}
+
+		int[] winners = new int[2 * size];
+
+		for(int i = 0; i < size; i++) {
+			winners[size + i] = i;
+		}
+
+		for(int n = size - 1; n > 0; n--) {
+			int first = winners[2 * n];
+			int second = winners[2 * n + 1];
+
+			if(beats(first, second)) {
+				winners[n] = first;
+				tree[n] = second;
+			}
+			else {
+				winners[n] = second;
+				tree[n] = first;
+			}
+		}
+
+		tree[0] = winners[1];
+	}
+
+	/**
+	 * Obtains the position of the source with the smallest head.
+	 * 
+	 * @return The position of the source with the smallest head, or -1 if every source is exhausted.
+	 */
+	public int getWinner() {
+		int winner = tree[0];
+
+		if(winner < 0 || heads[winner] == null) {
+			return -1;
+		}
+
+		return winner;
+	}
+
+	/**
+	 * Obtains the smallest head.
+	 * 
+	 * @return The smallest head, or null if every source is exhausted.
+	 */
+	public E peek() {
+		int winner = tree[0];
+
+		return (winner < 0 ? null : heads[winner]);
+	}
+
+	/**
+	 * Replaces the head of the winning source, and replays its matches up to the root.
+	 * 
+	 * @param element The new head of the winning source, or null if the source is exhausted.
+	 */
+	public void replace(E element) {
+		int winner = tree[0];
+
+		heads[winner] = element;
+
+		for(int n = (size + winner) >>> 1; n > 0; n >>>= 1) {
+			if(beats(tree[n], winner)) {
+				int loser = winner;
+
+				winner = tree[n];
+				tree[n] = loser;
+			}
+		}
+
+		tree[0] = winner;
+	}
+
+	private boolean beats(int first, int second) {
+		E firstHead = heads[first];
+		E secondHead = heads[second];
+
+		if(secondHead == null) {
+			return firstHead != null || first < second;
+		}
+
+		if(firstHead == null) {
+			return false;
+		}
+
+		int result = comparator.compare(firstHead, secondHead);
+
+		return result < 0 || (result == 0 && first < second);
+	}
+}
@@ -0,0 +1,382 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package utilities.collections;
+
+import java.io.Serializable;
+
+import java.util.Arrays;
+
+/**
+ * LongTable for string keys, laid out in primitive arrays instead of one object graph per entry.
+ * 
+ * The table uses open addressing with linear probing. Each slot keeps the position of its key in a
+ * character arena, the hash and length of the key, and the value. Key characters are copied once into
+ * large arena segments, and lookups compare them directly against the informed string, so neither
+ * lookups nor merges into existing keys allocate anything.
+ * 
+ * Resizing is incremental: when the table becomes full, a table twice as large is allocated, and each
+ * subsequent update moves a few slots of the previous table into it. Lookups check the new table first,
+ * and then the previous one. Slots are never removed from the previous table while it is being moved, so
+ * its probe sequences stay valid; an entry that was already moved is always found in the new table first.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class StringLongTable implements LongTable<String> {
+	private static final long serialVersionUID = 1L;
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	// Number of characters in each arena segment (keys longer than that get a segment of their own)
+	private static final int SEGMENT_SIZE = 1 << 16;
+
+	// Number of slots of the previous table moved on each update during a resize
+	private static final int MIGRATION_STEP = 16;
+
+	private int initialCapacity;
+
+	private Slots slots;
+
+	private Slots previousSlots;
+	private int migratedSlots;
+
+	private int size;
+
+	private char[][] segments;
+	private int segmentCount;
+	private int segmentPosition;
+
+	private long arenaCapacity;
+
+	public StringLongTable() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor method. The arrays are only allocated on the first insertion, so that empty tables are cheap to ship with their nodes.
+	 * 
+	 * @param initialCapacity Number of entries the table holds before its first resize.
+	 */
+	public StringLongTable(int initialCapacity) {
+		int capacity = 16;
+
+		while(capacity - (capacity >> 2) < initialCapacity) {
+			capacity <<= 1;
+		}
+
+		this.initialCapacity = capacity;
+	}
+
+	public boolean containsKey(String key) {
+		int hash = hash(key);
+
+		return find(slots, key, hash) >= 0 || find(previousSlots, key, hash) >= 0;
+	}
+
+	public long get(String key, long missingValue) {
+		int hash = hash(key);
+
+		int index = find(slots, key, hash);
+
+		if(index >= 0) {
+			return slots.values[index];
+		}
+
+		index = find(previousSlots, key, hash);
+
+		if(index >= 0) {
+			return previousSlots.values[index];
+		}
+
+		return missingValue;
+	}
+
+	public void put(String key, long value) {
+		update(key, value, null);
+	}
+
+	public void merge(String key, long value, LongOperator operator) {
+		update(key, value, operator);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long getMemoryUsage() {
+		long result = arenaCapacity * 2;
+
+		if(slots != null) {
+			result += slots.getMemoryUsage();
+		}
+
+		if(previousSlots != null) {
+			result += previousSlots.getMemoryUsage();
+		}
+
+		return result;
+	}
+
+	public void clear() {
+		slots = null;
+
+		previousSlots = null;
+		migratedSlots = 0;
+
+		size = 0;
+
+		segments = null;
+		segmentCount = 0;
+		segmentPosition = 0;
+
+		arenaCapacity = 0L;
+	}
+
+	public LongCursor<String> cursor() {
+		finishMigration();
+
+		return new LongCursor<String>() {
+			private int index = -1;
+
+			public boolean next() {
+				if(slots == null) {
+					return false;
+				}
+
+				do {
+					index++;
+				} while(index < slots.references.length && slots.references[index] == 0L);
+
+				return index < slots.references.length;
+			}
+
+			public String getKey() {
+				long reference = slots.references[index] - 1;
+
+				return new String(segments[(int) (reference >>> 32)], (int) reference, slots.lengths[index]);
+			}
+
+			public long getValue() {
+				return slots.values[index];
+			}
+		};
+	}
+
+	private void update(String key, long value, LongOperator operator) {
+		int hash = hash(key);
+
+		int index = find(slots, key, hash);
+
+		if(index >= 0) {
+			slots.values[index] = (operator != null ? operator.apply(slots.values[index], value) : value);
+		}
+		else {
+			index = find(previousSlots, key, hash);
+
+			if(index >= 0) {
+				previousSlots.values[index] = (operator != null ? operator.apply(previousSlots.values[index], value) : value);
+			}
+			else {
+				insert(key, hash, value);
+			}
+		}
+
+		migrate(MIGRATION_STEP);
+	}
+
+	private void insert(String key, int hash, long value) {
+		if(slots == null) {
+			slots = new Slots(initialCapacity);
+		}
+
+		long reference = store(key);
+
+		slots.add(reference, hash, key.length(), value);
+
+		size++;
+
+		if(slots.count > slots.threshold) {
+			// A resize that is still in progress is finished before the next one starts
+
+			finishMigration();
+
+			previousSlots = slots;
+			migratedSlots = 0;
+
+			slots = new Slots(previousSlots.references.length << 1);
+		}
+	}
+
+	private void migrate(int amount) {
+		if(previousSlots == null) {
+			return;
+		}
+
+		int end = Math.min(migratedSlots + amount, previousSlots.references.length);
+
+		for(int index = migratedSlots; index < end; index++) {
+			long reference = previousSlots.references[index];
+
+			if(reference != 0L) {
+				slots.add(reference - 1, previousSlots.hashes[index], previousSlots.lengths[index], previousSlots.values[index]);
+			}
+		}
+
+		migratedSlots = end;
+
+		if(migratedSlots == previousSlots.references.length) {
+			previousSlots = null;
+		}
+	}
+
+	private void finishMigration() {
+		if(previousSlots != null) {
+			migrate(previousSlots.references.length);
+		}
+	}
+
+	private int find(Slots target, String key, int hash) {
+		if(target == null) {
+			return -1;
+		}
+
+		int length = key.length();
+
+		int index = hash & target.mask;
+
+		while(true) {
+			long reference = target.references[index];
+
+			if(reference == 0L) {
+				return -1;
+			}
+
+			if(target.hashes[index] == hash && target.lengths[index] == length && matches(reference - 1, key, length)) {
+				return index;
+			}
+
+			index = (index + 1) & target.mask;
+		}
+	}
+
+	private boolean matches(long reference, String key, int length) {
+		char[] segment = segments[(int) (reference >>> 32)];
+
+		int offset = (int) reference;
+
+		for(int i = 0; i < length; i++) {
+			if(segment[offset + i] != key.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Copies the characters of a key into the arena.
+	 * 
+	 * @param key The key.
+	 * 
+	 * @return The position of the key in the arena, with the segment in the upper 32 bits and the offset in the lower 32 bits.
+	 */
+	private long store(String key) {
+		int length = key.length();
+
+		if(segments == null) {
+			segments = new char[4][];
+		}
+
+		if(segmentCount == 0 || segmentPosition + length > segments[segmentCount - 1].length) {
+			if(segmentCount == segments.length) {
+				segments = Arrays.copyOf(segments, segments.length << 1);
+			}
+
+			segments[segmentCount++] = new char[Math.max(SEGMENT_SIZE, length)];
+
+			arenaCapacity += segments[segmentCount - 1].length;
+
+			segmentPosition = 0;
+		}
+
+		key.getChars(0, length, segments[segmentCount - 1], segmentPosition);
+
+		long reference = ((long) (segmentCount - 1) << 32) | segmentPosition;
+
+		segmentPosition += length;
+
+		return reference;
+	}
+
+	private static int hash(String key) {
+		// Spreads the bits of the string hash, since linear probing is sensitive to clustered hashes
+
+		int hash = key.hashCode();
+
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		hash *= 0xC2B2AE35;
+		hash ^= hash >>> 16;
+
+		return hash;
+	}
+
+	/**
+	 * Slot arrays of one table. A slot is empty if its reference is zero; otherwise, the reference is
+	 * the position of its key in the arena plus one.
+	 * 
+	 * @author Hammurabi Mendes (hmendes)
+	 */
+	private static class Slots implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final long[] references;
+		private final int[] hashes;
+		private final int[] lengths;
+		private final long[] values;
+
+		private final int mask;
+		private final int threshold;
+
+		private int count;
+
+		public Slots(int capacity) {
+			this.references = new long[capacity];
+			this.hashes = new int[capacity];
+			this.lengths = new int[capacity];
+			this.values = new long[capacity];
+
+			this.mask = capacity - 1;
+			this.threshold = capacity - (capacity >> 2);
+		}
+
+		public long getMemoryUsage() {
+			// References and values take 8 bytes per slot, hashes and lengths take 4
+			return (long) references.length * 24;
+		}
+
+		public void add(long reference, int hash, int length, long value) {
+			int index = hash & mask;
+
+			while(references[index] != 0L) {
+				index = (index + 1) & mask;
+			}
+
+			references[index] = reference + 1;
+			hashes[index] = hash;
+			lengths[index] = length;
+			values[index] = value;
+
+			count++;
+		}
+	}
+}
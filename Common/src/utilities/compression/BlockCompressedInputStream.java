@@ -0,0 +1,161 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package utilities.compression;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+
+import communication.codecs.CodecHelper;
+
+import enums.CompressionType;
+
+/**
+ * Input stream that reads data written by a BlockCompressedOutputStream.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class BlockCompressedInputStream extends InputStream {
+	private DataInputStream dataInputStream;
+
+	private CompressionType compressionType;
+
+	private BlockCompressor compressor;
+
+	private boolean headerRead;
+
+	private byte[] block;
+	private int blockPosition;
+	private int blockLength;
+
+	private byte[] compressed;
+
+	private boolean closed;
+
+	public BlockCompressedInputStream(InputStream inputStream, CompressionType compressionType) {
+		this.dataInputStream = new DataInputStream(inputStream);
+
+		this.compressionType = compressionType;
+
+		this.compressor = CompressionHelper.createCompressor(compressionType);
+
+		this.block = new byte[BlockCompressedOutputStream.DEFAULT_BLOCK_SIZE];
+		this.compressed = new byte[BlockCompressedOutputStream.DEFAULT_BLOCK_SIZE];
+	}
+
+	public int read() throws IOException {
+		if(blockPosition == blockLength && !readBlock()) {
+			return -1;
+		}
+
+		return block[blockPosition++] & 0xFF;
+	}
+
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if(length == 0) {
+			return 0;
+		}
+
+		if(blockPosition == blockLength && !readBlock()) {
+			return -1;
+		}
+
+		int amount = Math.min(length, blockLength - blockPosition);
+
+		System.arraycopy(block, blockPosition, buffer, offset, amount);
+
+		blockPosition += amount;
+
+		return amount;
+	}
+
+	public int available() throws IOException {
+		return blockLength - blockPosition;
+	}
+
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+
+		closed = true;
+
+		compressor.end();
+
+		dataInputStream.close();
+	}
+
+	/**
+	 * Reads and decompresses the next block.
+	 * 
+	 * @return True if a block was read; false at the end of the stream.
+	 */
+	private boolean readBlock() throws IOException {
+		// As with channel element streams, the header is only read on the first access, so that empty inputs behave as empty streams
+
+		if(!headerRead) {
+			int magic;
+
+			try {
+				magic = dataInputStream.readInt();
+			} catch (EOFException exception) {
+				return false;
+			}
+
+			if(magic != BlockCompressedOutputStream.STREAM_MAGIC) {
+				throw new StreamCorruptedException("Invalid compressed stream header: " + Integer.toHexString(magic));
+			}
+
+			int type = dataInputStream.readUnsignedByte();
+
+			if(type != compressionType.ordinal()) {
+				throw new StreamCorruptedException("Compressed stream uses compression type " + type + ", expected " + compressionType.ordinal() + " (" + compressionType + ")");
+			}
+
+			headerRead = true;
+		}
+
+		int firstByte = dataInputStream.read();
+
+		if(firstByte < 0) {
+			return false;
+		}
+
+		int length = CodecHelper.readVarInt(dataInputStream, firstByte);
+		int storedLength = CodecHelper.readVarInt(dataInputStream);
+
+		if(length > block.length) {
+			block = new byte[length];
+		}
+
+		if(storedLength == length) {
+			dataInputStream.readFully(block, 0, length);
+		}
+		else {
+			if(storedLength > compressed.length) {
+				compressed = new byte[storedLength];
+			}
+
+			dataInputStream.readFully(compressed, 0, storedLength);
+
+			compressor.decompress(compressed, 0, storedLength, block, 0, length);
+		}
+
+		blockPosition = 0;
+		blockLength = length;
+
+		return true;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package utilities.compression;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import communication.codecs.CodecHelper;
+
+import enums.CompressionType;
+
+/**
+ * Output stream that compresses its data in independent blocks.
+ * 
+ * The stream starts with a header (magic number and compression type), followed by a sequence of blocks.
+ * Each block has its uncompressed length and its stored length (both variable-length integers), followed
+ * by the stored bytes. Blocks that do not shrink are stored uncompressed, with equal lengths.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class BlockCompressedOutputStream extends FilterOutputStream {
+	public static final int STREAM_MAGIC = 0x484D525A;
+
+	public static final int DEFAULT_BLOCK_SIZE = 65536;
+
+	private DataOutputStream dataOutputStream;
+
+	private BlockCompressor compressor;
+
+	private byte[] block;
+	private int blockLength;
+
+	private byte[] compressed;
+
+	private boolean closed;
+
+	public BlockCompressedOutputStream(OutputStream outputStream, CompressionType compressionType) throws IOException {
+		this(outputStream, compressionType, DEFAULT_BLOCK_SIZE);
+	}
+
+	public BlockCompressedOutputStream(OutputStream outputStream, CompressionType compressionType, int blockSize) throws IOException {
+		super(outputStream);
+
+		this.dataOutputStream = new DataOutputStream(outputStream);
+
+		this.compressor = CompressionHelper.createCompressor(compressionType);
+
+		this.block = new byte[blockSize];
+		this.compressed = new byte[blockSize];
+
+		dataOutputStream.writeInt(STREAM_MAGIC);
+		dataOutputStream.writeByte(compressionType.ordinal());
+	}
+
+	public void write(int value) throws IOException {
+		if(blockLength == block.length) {
+			writeBlock();
+		}
+
+		block[blockLength++] = (byte) value;
+	}
+
+	public void write(byte[] buffer, int offset, int length) throws IOException {
+		while(length > 0) {
+			if(blockLength == block.length) {
+				writeBlock();
+			}
+
+			int amount = Math.min(length, block.length - blockLength);
+
+			System.arraycopy(buffer, offset, block, blockLength, amount);
+
+			blockLength += amount;
+
+			offset += amount;
+			length -= amount;
+		}
+	}
+
+	public void flush() throws IOException {
+		writeBlock();
+
+		dataOutputStream.flush();
+	}
+
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+
+		closed = true;
+
+		try {
+			flush();
+		} finally {
+			compressor.end();
+
+			dataOutputStream.close();
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		if(blockLength == 0) {
+			return;
+		}
+
+		int compressedLength = compressor.compress(block, 0, blockLength, compressed, 0, blockLength - 1);
+
+		CodecHelper.writeVarInt(dataOutputStream, blockLength);
+
+		if(compressedLength < 0) {
+			CodecHelper.writeVarInt(dataOutputStream, blockLength);
+
+			dataOutputStream.write(block, 0, blockLength);
+		}
+		else {
+			CodecHelper.writeVarInt(dataOutputStream, compressedLength);
+
+			dataOutputStream.write(compressed, 0, compressedLength);
+		}
+
+		blockLength = 0;
+	}
+}
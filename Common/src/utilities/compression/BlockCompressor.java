@@ -0,0 +1,56 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package utilities.compression;
+
+import java.io.IOException;
+
+/**
+ * Compresses and decompresses independent blocks of bytes. Implementations keep internal
+ * state (tables, zlib streams) and are not thread-safe.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public interface BlockCompressor {
+	/**
+	 * Compresses a block.
+	 * 
+	 * @param input Array containing the block.
+	 * @param inputOffset Offset of the block in the input array.
+	 * @param inputLength Length of the block.
+	 * @param output Array that receives the compressed block.
+	 * @param outputOffset Offset in the output array where the compressed block starts.
+	 * @param outputLength Space available in the output array.
+	 * 
+	 * @return The length of the compressed block, or -1 if it does not fit in the available space.
+	 */
+	public int compress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int outputLength);
+
+	/**
+	 * Decompresses a block.
+	 * 
+	 * @param input Array containing the compressed block.
+	 * @param inputOffset Offset of the compressed block in the input array.
+	 * @param inputLength Length of the compressed block.
+	 * @param output Array that receives the decompressed block.
+	 * @param outputOffset Offset in the output array where the decompressed block starts.
+	 * @param outputLength Exact length of the decompressed block.
+	 * 
+	 * @throws IOException If the compressed block is corrupted.
+	 */
+	public void decompress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int outputLength) throws IOException;
+
+	/**
+	 * Releases the resources held by the compressor (e.g. native zlib streams).
+	 */
+	public void end();
+}
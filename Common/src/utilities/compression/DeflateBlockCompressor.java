@@ -0,0 +1,90 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package utilities.compression;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * Block compressor backed by zlib (raw deflate, without headers or checksums).
+ * Slower than the LZ compressor, but with a better compression ratio.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class DeflateBlockCompressor implements BlockCompressor {
+	private Deflater deflater;
+	private Inflater inflater;
+
+	public DeflateBlockCompressor() {
+		this(Deflater.BEST_SPEED);
+	}
+
+	public DeflateBlockCompressor(int level) {
+		this.deflater = new Deflater(level, true);
+		this.inflater = new Inflater(true);
+	}
+
+	public int compress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int outputLength) {
+		deflater.reset();
+
+		deflater.setInput(input, inputOffset, inputLength);
+		deflater.finish();
+
+		int length = 0;
+
+		while(!deflater.finished() && length < outputLength) {
+			length += deflater.deflate(output, outputOffset + length, outputLength - length);
+		}
+
+		if(!deflater.finished()) {
+			return -1;
+		}
+
+		return length;
+	}
+
+	public void decompress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int outputLength) throws IOException {
+		inflater.reset();
+
+		inflater.setInput(input, inputOffset, inputLength);
+
+		int length = 0;
+
+		try {
+			while(length < outputLength) {
+				int inflated = inflater.inflate(output, outputOffset + length, outputLength - length);
+
+				if(inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+
+				length += inflated;
+			}
+		} catch (DataFormatException exception) {
+			throw new StreamCorruptedException("Invalid deflate block: " + exception.getMessage());
+		}
+
+		if(length != outputLength) {
+			throw new StreamCorruptedException("Compressed block shorter than announced");
+		}
+	}
+
+	public void end() {
+		deflater.end();
+		inflater.end();
+	}
+}
@@ -0,0 +1,245 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package utilities.compression;
+
+import java.util.Arrays;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * Fast LZ77 block compressor, in the style of LZ4. It trades compression ratio for speed: matches are
+ * found through a single hash table of 4-byte sequences, without chains or lazy matching.
+ * 
+ * A compressed block is a sequence of (literals, match) pairs. Each pair starts with a token whose high
+ * nibble is the number of literals and whose low nibble is the match length minus 4 (15 means that the
+ * length continues in the following bytes, added up until a byte different from 255). The literals follow
+ * the token, then the match offset (2 bytes, little endian) and the rest of the match length. The last
+ * pair has only literals.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class LZBlockCompressor implements BlockCompressor {
+	private static final int MINIMUM_MATCH = 4;
+
+	private static final int MAXIMUM_OFFSET = 65535;
+
+	// The last bytes of a block are always emitted as literals
+	private static final int LAST_LITERALS = 5;
+
+	private static final int HASH_BITS = 14;
+
+	private int[] table;
+
+	public LZBlockCompressor() {
+		this.table = new int[1 << HASH_BITS];
+	}
+
+	public int compress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int outputLength) {
+		// Positions are stored plus one, so that zero means an empty slot
+		Arrays.fill(table, 0);
+
+		int inputEnd = inputOffset + inputLength;
+		int matchLimit = inputEnd - LAST_LITERALS;
+
+		int outputEnd = outputOffset + outputLength;
+
+		int position = inputOffset;
+		int anchor = inputOffset;
+
+		int outputPosition = outputOffset;
+
+		while(position < matchLimit - MINIMUM_MATCH) {
+			int sequence = readInt(input, position);
+
+			int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+
+			int reference = table[hash] - 1;
+
+			table[hash] = position + 1;
+
+			if(reference < inputOffset || position - reference > MAXIMUM_OFFSET || readInt(input, reference) != sequence) {
+				position++;
+				continue;
+			}
+
+			int matchLength = MINIMUM_MATCH;
+
+			while(position + matchLength < matchLimit && input[reference + matchLength] == input[position + matchLength]) {
+				matchLength++;
+			}
+
+			outputPosition = writeSequence(input, anchor, position - anchor, position - reference, matchLength, output, outputPosition, outputEnd);
+
+			if(outputPosition < 0) {
+				return -1;
+			}
+
+			position += matchLength;
+			anchor = position;
+		}
+
+		outputPosition = writeSequence(input, anchor, inputEnd - anchor, 0, 0, output, outputPosition, outputEnd);
+
+		if(outputPosition < 0) {
+			return -1;
+		}
+
+		return outputPosition - outputOffset;
+	}
+
+	public void decompress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int outputLength) throws IOException {
+		int inputEnd = inputOffset + inputLength;
+		int outputEnd = outputOffset + outputLength;
+
+		int position = inputOffset;
+		int outputPosition = outputOffset;
+
+		try {
+			while(position < inputEnd) {
+				int token = input[position++] & 0xFF;
+
+				int literalLength = token >>> 4;
+
+				if(literalLength == 15) {
+					int current;
+
+					do {
+						current = input[position++] & 0xFF;
+
+						literalLength += current;
+					} while(current == 255);
+				}
+
+				if(outputPosition + literalLength > outputEnd || position + literalLength > inputEnd) {
+					throw new StreamCorruptedException("Literals exceed the compressed block");
+				}
+
+				System.arraycopy(input, position, output, outputPosition, literalLength);
+
+				position += literalLength;
+				outputPosition += literalLength;
+
+				if(position >= inputEnd) {
+					break;
+				}
+
+				int offset = (input[position] & 0xFF) | ((input[position + 1] & 0xFF) << 8);
+
+				position += 2;
+
+				int matchLength = token & 0x0F;
+
+				if(matchLength == 15) {
+					int current;
+
+					do {
+						current = input[position++] & 0xFF;
+
+						matchLength += current;
+					} while(current == 255);
+				}
+
+				matchLength += MINIMUM_MATCH;
+
+				int reference = outputPosition - offset;
+
+				if(offset == 0 || reference < outputOffset || outputPosition + matchLength > outputEnd) {
+					throw new StreamCorruptedException("Match exceeds the decompressed block");
+				}
+
+				// Byte by byte, since the match may overlap the bytes being produced
+				for(int i = 0; i < matchLength; i++) {
+					output[outputPosition++] = output[reference++];
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException exception) {
+			throw new StreamCorruptedException("Truncated compressed block");
+		}
+
+		if(outputPosition != outputEnd) {
+			throw new StreamCorruptedException("Compressed block shorter than announced");
+		}
+	}
+
+	public void end() {
+		// Nothing to release
+	}
+
+	/**
+	 * Writes a sequence (literals followed by an optional match).
+	 * 
+	 * @return The output position after the sequence, or -1 if it does not fit.
+	 */
+	private static int writeSequence(byte[] input, int literalOffset, int literalLength, int matchOffset, int matchLength, byte[] output, int outputPosition, int outputEnd) {
+		// Token, literals, their length continuation, offset and match length continuation
+		int required = 1 + literalLength + (literalLength / 255) + 1 + 2 + (matchLength / 255) + 1;
+
+		if(outputPosition + required > outputEnd) {
+			return -1;
+		}
+
+		int tokenPosition = outputPosition++;
+
+		int token;
+
+		if(literalLength >= 15) {
+			token = 15 << 4;
+
+			outputPosition = writeLength(literalLength - 15, output, outputPosition);
+		}
+		else {
+			token = literalLength << 4;
+		}
+
+		System.arraycopy(input, literalOffset, output, outputPosition, literalLength);
+
+		outputPosition += literalLength;
+
+		if(matchLength > 0) {
+			output[outputPosition++] = (byte) matchOffset;
+			output[outputPosition++] = (byte) (matchOffset >>> 8);
+
+			int remainingLength = matchLength - MINIMUM_MATCH;
+
+			if(remainingLength >= 15) {
+				token |= 15;
+
+				outputPosition = writeLength(remainingLength - 15, output, outputPosition);
+			}
+			else {
+				token |= remainingLength;
+			}
+		}
+
+		output[tokenPosition] = (byte) token;
+
+		return outputPosition;
+	}
+
+	private static int writeLength(int length, byte[] output, int outputPosition) {
+		while(length >= 255) {
+			output[outputPosition++] = (byte) 255;
+
+			length -= 255;
+		}
+
+		output[outputPosition++] = (byte) length;
+
+		return outputPosition;
+	}
+
+	private static int readInt(byte[] array, int position) {
+		return (array[position] & 0xFF) | ((array[position + 1] & 0xFF) << 8) | ((array[position + 2] & 0xFF) << 16) | ((array[position + 3] & 0xFF) << 24);
+	}
+}
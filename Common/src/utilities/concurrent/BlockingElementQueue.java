@@ -0,0 +1,57 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package utilities.concurrent;
+
+import java.util.Collection;
+import java.util.List;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class BlockingElementQueue<T> implements ElementQueue<T> {
+	private BlockingQueue<T> queue;
+
+	public BlockingElementQueue(int capacity) {
+		this.queue = new ArrayBlockingQueue<T>(capacity);
+	}
+
+	public void put(T element) throws InterruptedException {
+		queue.put(element);
+	}
+
+	public boolean offer(T element) {
+		return queue.offer(element);
+	}
+
+	public void putAll(List<? extends T> elements) throws InterruptedException {
+		for(T element: elements) {
+			queue.put(element);
+		}
+	}
+
+	public T poll() {
+		return queue.poll();
+	}
+
+	public T poll(long timeout, TimeUnit timeUnit) throws InterruptedException {
+		return queue.poll(timeout, timeUnit);
+	}
+
+	public int drainTo(Collection<? super T> collection, int maximum) {
+		return queue.drainTo(collection, maximum);
+	}
+
+	public T peek() {
+		return queue.peek();
+	}
+}
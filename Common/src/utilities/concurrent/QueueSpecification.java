@@ -0,0 +1,68 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package utilities.concurrent;
+
+import java.io.Serializable;
+
+import enums.QueueType;
+import enums.WaitStrategy;
+
+public class QueueSpecification implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public static final int DEFAULT_CAPACITY = 32;
+
+	private QueueType type;
+
+	private int capacity;
+
+	private WaitStrategy waitStrategy;
+
+	public QueueSpecification() {
+		this(QueueType.BLOCKING, DEFAULT_CAPACITY, WaitStrategy.PARK);
+	}
+
+	public QueueSpecification(QueueType type, int capacity, WaitStrategy waitStrategy) {
+		this.type = type;
+
+		this.capacity = capacity;
+
+		this.waitStrategy = waitStrategy;
+	}
+
+	public QueueType getType() {
+		return type;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	public <T> ElementQueue<T> createQueue() {
+		switch(type) {
+		case RING_BUFFER:
+			return new RingBufferElementQueue<T>(capacity, waitStrategy);
+		case BLOCKING:
+			return new BlockingElementQueue<T>(capacity);
+		default:
+			throw new IllegalStateException();
+		}
+	}
+
+	public String toString() {
+		return type + "(" + capacity + ", " + waitStrategy + ")";
+	}
+}
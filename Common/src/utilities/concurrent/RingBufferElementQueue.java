@@ -0,0 +1,323 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package utilities.concurrent;
+
+import java.util.Collection;
+import java.util.List;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import java.util.concurrent.locks.LockSupport;
+
+import enums.WaitStrategy;
+
+/**
+ * Bounded lock-free ring buffer. Producers claim slots (one or many at a time) by advancing the
+ * enqueue sequence with a CAS, and publish each slot by bumping its per-slot sequence number. No lock
+ * is ever taken, either by producers or by the consumer.
+ * 
+ * The queue is meant to be drained by a single consumer, but the consumer side is also CAS-based,
+ * since several relayers can read the same multiplexer concurrently.
+ * 
+ * Threads that find the queue full (producers) or empty (consumers) wait according to the wait strategy:
+ * SPIN keeps the core busy, YIELD gives it away between checks, and PARK spins briefly and then parks
+ * until the other side signals progress.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class RingBufferElementQueue<T> implements ElementQueue<T> {
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 200;
+
+	private static final long MAXIMUM_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final int capacity;
+	private final int mask;
+
+	private final AtomicReferenceArray<T> values;
+	private final AtomicLongArray sequences;
+
+	private final PaddedAtomicLong enqueuePosition;
+	private final PaddedAtomicLong dequeuePosition;
+
+	private final WaitStrategy waitStrategy;
+
+	private final Queue<Thread> parkedProducers;
+	private final Queue<Thread> parkedConsumers;
+
+	public RingBufferElementQueue(int requestedCapacity, WaitStrategy waitStrategy) {
+		int capacity = 2;
+
+		while(capacity < requestedCapacity) {
+			capacity <<= 1;
+		}
+
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+
+		this.values = new AtomicReferenceArray<T>(capacity);
+		this.sequences = new AtomicLongArray(capacity);
+
+		for(int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+
+		this.enqueuePosition = new PaddedAtomicLong(0L);
+		this.dequeuePosition = new PaddedAtomicLong(0L);
+
+		this.waitStrategy = waitStrategy;
+
+		this.parkedProducers = new ConcurrentLinkedQueue<Thread>();
+		this.parkedConsumers = new ConcurrentLinkedQueue<Thread>();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public void put(T element) throws InterruptedException {
+		long position = claim(1);
+
+		publish(position, element);
+
+		signal(parkedConsumers);
+	}
+
+	public boolean offer(T element) {
+		while(true) {
+			long position = enqueuePosition.get();
+
+			if(position + 1 - dequeuePosition.get() > capacity) {
+				return false;
+			}
+
+			if(enqueuePosition.compareAndSet(position, position + 1)) {
+				publish(position, element);
+
+				signal(parkedConsumers);
+
+				return true;
+			}
+		}
+	}
+
+	public void putAll(List<? extends T> elements) throws InterruptedException {
+		int offset = 0;
+
+		while(offset < elements.size()) {
+			int amount = Math.min(capacity, elements.size() - offset);
+
+			long position = claim(amount);
+
+			for(int i = 0; i < amount; i++) {
+				publish(position + i, elements.get(offset + i));
+			}
+
+			offset += amount;
+
+			signal(parkedConsumers);
+		}
+	}
+
+	public T poll() {
+		while(true) {
+			long position = dequeuePosition.get();
+
+			int index = (int) (position & mask);
+
+			long difference = sequences.get(index) - (position + 1);
+
+			if(difference < 0) {
+				// Empty, or the producer that claimed the slot did not publish it yet
+				return null;
+			}
+
+			if(difference == 0 && dequeuePosition.compareAndSet(position, position + 1)) {
+				T element = values.get(index);
+
+				values.lazySet(index, null);
+
+				// Releases the slot for the producer one lap ahead
+				sequences.set(index, position + capacity);
+
+				signal(parkedProducers);
+
+				return element;
+			}
+		}
+	}
+
+	public T poll(long timeout, TimeUnit timeUnit) throws InterruptedException {
+		long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+
+		int tries = 0;
+
+		while(true) {
+			T element = poll();
+
+			if(element != null) {
+				return element;
+			}
+
+			long remaining = deadline - System.nanoTime();
+
+			if(remaining <= 0) {
+				return null;
+			}
+
+			tries = await(tries, remaining, parkedConsumers, false);
+		}
+	}
+
+	public int drainTo(Collection<? super T> collection, int maximum) {
+		while(true) {
+			long position = dequeuePosition.get();
+
+			// Published slots are contiguous from the dequeue position, so the whole run is claimed with one CAS
+
+			int available = 0;
+
+			while(available < maximum && sequences.get((int) ((position + available) & mask)) == position + available + 1) {
+				available++;
+			}
+
+			if(available == 0) {
+				return 0;
+			}
+
+			if(dequeuePosition.compareAndSet(position, position + available)) {
+				for(int i = 0; i < available; i++) {
+					int index = (int) ((position + i) & mask);
+
+					collection.add(values.get(index));
+
+					values.lazySet(index, null);
+
+					sequences.set(index, position + i + capacity);
+				}
+
+				signal(parkedProducers);
+
+				return available;
+			}
+		}
+	}
+
+	public T peek() {
+		long position = dequeuePosition.get();
+
+		int index = (int) (position & mask);
+
+		if(sequences.get(index) != position + 1) {
+			return null;
+		}
+
+		return values.get(index);
+	}
+
+	private long claim(int amount) throws InterruptedException {
+		int tries = 0;
+
+		while(true) {
+			long position = enqueuePosition.get();
+
+			if(position + amount - dequeuePosition.get() <= capacity) {
+				if(enqueuePosition.compareAndSet(position, position + amount)) {
+					return position;
+				}
+
+				continue;
+			}
+
+			tries = await(tries, MAXIMUM_PARK_NANOS, parkedProducers, true);
+		}
+	}
+
+	private void publish(long position, T element) {
+		int index = (int) (position & mask);
+
+		// The consumer may still be releasing this slot from the previous lap
+		while(sequences.get(index) != position) {
+			Thread.yield();
+		}
+
+		values.lazySet(index, element);
+
+		sequences.set(index, position + 1);
+	}
+
+	private boolean hasSpace() {
+		return enqueuePosition.get() - dequeuePosition.get() < capacity;
+	}
+
+	private boolean hasElement() {
+		long position = dequeuePosition.get();
+
+		return sequences.get((int) (position & mask)) == position + 1;
+	}
+
+	private int await(int tries, long remaining, Queue<Thread> parked, boolean producer) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		switch(waitStrategy) {
+		case SPIN:
+			return tries + 1;
+		case YIELD:
+			Thread.yield();
+
+			return tries + 1;
+		case PARK:
+			if(tries < SPIN_TRIES) {
+				return tries + 1;
+			}
+
+			if(tries < SPIN_TRIES + YIELD_TRIES) {
+				Thread.yield();
+
+				return tries + 1;
+			}
+
+			Thread current = Thread.currentThread();
+
+			parked.add(current);
+
+			// Check again after registering, so that a signal sent in between is not lost
+			if(producer ? !hasSpace() : !hasElement()) {
+				LockSupport.parkNanos(this, Math.min(remaining, MAXIMUM_PARK_NANOS));
+			}
+
+			parked.remove(current);
+
+			return tries;
+		}
+
+		return tries + 1;
+	}
+
+	private void signal(Queue<Thread> parked) {
+		if(waitStrategy != WaitStrategy.PARK || parked.isEmpty()) {
+			return;
+		}
+
+		for(Thread thread: parked) {
+			LockSupport.unpark(thread);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package utilities.concurrent;
+
+import java.lang.reflect.Method;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import enums.ThreadMode;
+
+/**
+ * Creates the threads that run nodes and node groups in a launcher, according to the launcher thread mode.
+ * 
+ * The mode is given by the property hammr.launcher.thread_mode ("platform", the default, or "virtual").
+ * Virtual threads are obtained reflectively, so the code still builds for older targets; on runtimes without
+ * them, platform threads are used instead. Platform node threads can be given a smaller stack with the
+ * property hammr.launcher.node_stack_size (in bytes), so that a launcher can host many mostly-blocked nodes.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class ThreadHelper {
+	private static ThreadMode threadMode;
+
+	private static long nodeStackSize;
+
+	// Thread.ofVirtual(), Thread.Builder.name(), Thread.Builder.unstarted() and
+	// Executors.newVirtualThreadPerTaskExecutor(), when the runtime provides them
+	private static Method ofVirtual;
+	private static Method builderName;
+	private static Method builderUnstarted;
+	private static Method newVirtualThreadPerTaskExecutor;
+
+	static {
+		threadMode = ThreadMode.PLATFORM;
+
+		String threadModeProperty = System.getProperty("hammr.launcher.thread_mode");
+		String nodeStackSizeProperty = System.getProperty("hammr.launcher.node_stack_size");
+
+		if(threadModeProperty != null && threadModeProperty.equals("virtual")) {
+			try {
+				Class<?> builder = Class.forName("java.lang.Thread$Builder");
+
+				ofVirtual = Thread.class.getMethod("ofVirtual");
+				builderName = builder.getMethod("name", String.class);
+				builderUnstarted = builder.getMethod("unstarted", Runnable.class);
+				newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+
+				threadMode = ThreadMode.VIRTUAL;
+			} catch (Exception exception) {
+				System.err.println("Virtual threads are not supported by this runtime, using platform threads");
+			}
+		}
+
+		if(nodeStackSizeProperty != null) {
+			nodeStackSize = Long.parseLong(nodeStackSizeProperty);
+		}
+	}
+
+	public static ThreadMode getThreadMode() {
+		return threadMode;
+	}
+
+	/**
+	 * Creates an unstarted thread to run a node.
+	 * 
+	 * @param runnable Code to be run.
+	 * @param name Name of the thread.
+	 * 
+	 * @return The unstarted thread.
+	 */
+	public static Thread createNodeThread(Runnable runnable, String name) {
+		if(threadMode == ThreadMode.VIRTUAL) {
+			try {
+				Object builder = builderName.invoke(ofVirtual.invoke(null), name);
+
+				return (Thread) builderUnstarted.invoke(builder, runnable);
+			} catch (Exception exception) {
+				System.err.println("Error creating virtual thread, using a platform thread instead");
+
+				exception.printStackTrace();
+			}
+		}
+
+		return new Thread(null, runnable, name, nodeStackSize);
+	}
+
+	/**
+	 * Creates the executor that runs the node groups of a launcher.
+	 * 
+	 * @return A virtual thread per task executor in virtual mode; a cached thread pool otherwise.
+	 */
+	public static ExecutorService createExecutorService() {
+		if(threadMode == ThreadMode.VIRTUAL) {
+			try {
+				return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+			} catch (Exception exception) {
+				System.err.println("Error creating virtual thread executor, using a thread pool instead");
+
+				exception.printStackTrace();
+			}
+		}
+
+		return Executors.newCachedThreadPool();
+	}
+}
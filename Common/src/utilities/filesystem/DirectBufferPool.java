@@ -0,0 +1,102 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package utilities.filesystem;
+
+import java.nio.ByteBuffer;
+
+import java.util.Map;
+import java.util.Queue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct byte buffers, indexed by capacity. Direct buffers are expensive to allocate and
+ * are only reclaimed by the garbage collector, so file channels return them here when closed.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class DirectBufferPool {
+	private static final int DEFAULT_MAXIMUM_POOLED = 64;
+
+	private static DirectBufferPool instance;
+
+	private Map<Integer, Queue<ByteBuffer>> buffers;
+
+	private AtomicInteger pooled;
+
+	private int maximumPooled;
+
+	static {
+		instance = new DirectBufferPool(DEFAULT_MAXIMUM_POOLED);
+	}
+
+	public static DirectBufferPool getInstance() {
+		return instance;
+	}
+
+	public DirectBufferPool(int maximumPooled) {
+		this.buffers = new ConcurrentHashMap<Integer, Queue<ByteBuffer>>();
+
+		this.pooled = new AtomicInteger(0);
+
+		this.maximumPooled = maximumPooled;
+	}
+
+	public ByteBuffer acquire(int capacity) {
+		Queue<ByteBuffer> queue = buffers.get(capacity);
+
+		if(queue != null) {
+			ByteBuffer buffer = queue.poll();
+
+			if(buffer != null) {
+				pooled.decrementAndGet();
+
+				buffer.clear();
+
+				return buffer;
+			}
+		}
+
+		return ByteBuffer.allocateDirect(capacity);
+	}
+
+	public void release(ByteBuffer buffer) {
+		if(buffer == null || !buffer.isDirect()) {
+			return;
+		}
+
+		if(pooled.incrementAndGet() > maximumPooled) {
+			pooled.decrementAndGet();
+
+			return;
+		}
+
+		Queue<ByteBuffer> queue = buffers.get(buffer.capacity());
+
+		if(queue == null) {
+			synchronized(this) {
+				queue = buffers.get(buffer.capacity());
+
+				if(queue == null) {
+					queue = new ConcurrentLinkedQueue<ByteBuffer>();
+
+					buffers.put(buffer.capacity(), queue);
+				}
+			}
+		}
+
+		queue.offer(buffer);
+	}
+}
@@ -19,6 +19,7 @@ import java.io.OutputStream;
 
 import utilities.filesystem.Protocol;
 
+import utilities.filesystem.hdfs.HDFSBlockLocation;
 import utilities.filesystem.hdfs.HDFSDriver;
 import utilities.filesystem.posix.PosixDriver;
 
@@ -41,6 +42,34 @@ public class FileHelper {
 		return getFilesystemDriver(filename).openW(filename);
 	}
 
+	// Streams used for channel data. POSIX files are accessed through NIO file channels with large direct buffers
+
+	public static InputStream openChannelR(Filename filename) throws FileNotFoundException {
+		if(filename.getProtocol() == Protocol.POSIX_COMPATIBLE) {
+			return PosixDriver.getInstance().openChannelR(filename);
+		}
+
+		return openR(filename);
+	}
+
+	// Only POSIX files can be memory-mapped; other protocols fall back to regular channel streams
+
+	public static InputStream openMappedR(Filename filename) throws FileNotFoundException, IOException {
+		if(filename.getProtocol() == Protocol.POSIX_COMPATIBLE) {
+			return PosixDriver.getInstance().openMappedR(filename);
+		}
+
+		return openChannelR(filename);
+	}
+
+	public static OutputStream openChannelW(Filename filename) throws IOException {
+		if(filename.getProtocol() == Protocol.POSIX_COMPATIBLE) {
+			return PosixDriver.getInstance().openChannelW(filename);
+		}
+
+		return openW(filename);
+	}
+
 	public static boolean exists(Filename filename) {
 		return getFilesystemDriver(filename).exists(filename);
 	}
@@ -64,6 +93,10 @@ public class FileHelper {
 		return getFilesystemDriver(filename).remove(filename);
 	}
 
+	public static HDFSBlockLocation[] getFileBlockLocations(Filename filename) throws FileNotFoundException, IOException {
+		return getFilesystemDriver(filename).getFileBlockLocations(filename);
+	}
+
 	private static FilesystemDriver getFilesystemDriver(Filename filename) {
 		switch(filename.getProtocol()) {
 		case POSIX_COMPATIBLE:
@@ -17,6 +17,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import utilities.filesystem.hdfs.HDFSBlockLocation;
+
 public interface FilesystemDriver {
 	public InputStream openR(Filename filename) throws FileNotFoundException;
 
@@ -29,4 +31,13 @@ public interface FilesystemDriver {
 	public boolean move(Filename source, Filename target);
 
 	public boolean remove(Filename filename);
+
+	/**
+	 * Obtains the hosts that store each block of the file. Filesystems without data locality return no blocks.
+	 * 
+	 * @param filename The file.
+	 * 
+	 * @return The locations of the blocks of the file.
+	 */
+	public HDFSBlockLocation[] getFileBlockLocations(Filename filename) throws FileNotFoundException, IOException;
 }
@@ -18,7 +18,7 @@ public class HDFSBlockLocation {
 
 	private final long length;
 
-	HDFSBlockLocation(String[] hosts, long offset, long length){
+	public HDFSBlockLocation(String[] hosts, long offset, long length){
 		this.hosts = hosts;
 
 		this.offset = offset;
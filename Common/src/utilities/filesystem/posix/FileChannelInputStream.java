@@ -0,0 +1,258 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package utilities.filesystem.posix;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import utilities.filesystem.DirectBufferPool;
+
+/**
+ * Input stream that reads a FileChannel in large chunks into pooled direct buffers. If read-ahead
+ * is enabled, the next chunk is read by a helper thread while the current one is being consumed.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class FileChannelInputStream extends InputStream {
+	private static ExecutorService readAheadService;
+
+	private FileChannel fileChannel;
+
+	private ByteBuffer current;
+	private ByteBuffer next;
+
+	private boolean readAhead;
+
+	private Future<Integer> pendingRead;
+
+	private boolean endOfFile;
+
+	static {
+		readAheadService = Executors.newCachedThreadPool(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "FileChannelInputStream read-ahead");
+
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
+	}
+
+	public FileChannelInputStream(FileChannel fileChannel, int bufferSize, boolean readAhead) {
+		this.fileChannel = fileChannel;
+
+		this.readAhead = readAhead;
+
+		this.current = DirectBufferPool.getInstance().acquire(bufferSize);
+
+		// The current buffer starts empty, in reading position
+		this.current.limit(0);
+
+		if(readAhead) {
+			this.next = DirectBufferPool.getInstance().acquire(bufferSize);
+		}
+
+		this.endOfFile = false;
+	}
+
+	public int read() throws IOException {
+		if(!current.hasRemaining() && !refill()) {
+			return -1;
+		}
+
+		return current.get() & 0xFF;
+	}
+
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if(length == 0) {
+			return 0;
+		}
+
+		if(!current.hasRemaining() && !refill()) {
+			return -1;
+		}
+
+		int chunk = Math.min(length, current.remaining());
+
+		current.get(bytes, offset, chunk);
+
+		return chunk;
+	}
+
+	public int available() throws IOException {
+		return (current == null ? 0 : current.remaining());
+	}
+
+	// Skips inside the current chunk are served from the buffer; longer skips reposition the file channel
+
+	public long skip(long length) throws IOException {
+		if(current == null) {
+			throw new IOException("Stream closed");
+		}
+
+		if(length <= 0) {
+			return 0;
+		}
+
+		if(length <= current.remaining()) {
+			current.position(current.position() + (int) length);
+
+			return length;
+		}
+
+		if(pendingRead != null) {
+			awaitPendingRead();
+		}
+
+		int buffered = current.remaining() + (readAhead ? next.position() : 0);
+
+		long position = fileChannel.position() - buffered;
+		long target = Math.min(position + length, fileChannel.size());
+
+		fileChannel.position(target);
+
+		current.clear();
+		current.limit(0);
+
+		if(readAhead) {
+			next.clear();
+		}
+
+		endOfFile = false;
+
+		return target - position;
+	}
+
+	public void close() throws IOException {
+		if(current == null) {
+			return;
+		}
+
+		try {
+			if(pendingRead != null) {
+				awaitPendingRead();
+			}
+		} finally {
+			DirectBufferPool.getInstance().release(current);
+			DirectBufferPool.getInstance().release(next);
+
+			current = null;
+			next = null;
+
+			fileChannel.close();
+		}
+	}
+
+	private boolean refill() throws IOException {
+		if(current == null) {
+			throw new IOException("Stream closed");
+		}
+
+		if(endOfFile) {
+			return false;
+		}
+
+		if(!readAhead) {
+			int count = fill(current);
+
+			current.flip();
+
+			if(count < 0) {
+				endOfFile = true;
+			}
+
+			return current.hasRemaining();
+		}
+
+		if(pendingRead == null) {
+			pendingRead = scheduleFill(next);
+		}
+
+		int count = awaitPendingRead();
+
+		ByteBuffer swap = current;
+
+		current = next;
+		next = swap;
+
+		current.flip();
+
+		if(count < 0) {
+			endOfFile = true;
+		}
+		else {
+			// Start reading the following chunk while this one is consumed
+			pendingRead = scheduleFill(next);
+		}
+
+		return current.hasRemaining();
+	}
+
+	private int fill(ByteBuffer buffer) throws IOException {
+		buffer.clear();
+
+		int total = 0;
+
+		while(buffer.hasRemaining()) {
+			int count = fileChannel.read(buffer);
+
+			if(count < 0) {
+				return (total == 0 ? -1 : total);
+			}
+
+			total += count;
+		}
+
+		return total;
+	}
+
+	private Future<Integer> scheduleFill(final ByteBuffer buffer) {
+		return readAheadService.submit(new Callable<Integer>() {
+			public Integer call() throws IOException {
+				return fill(buffer);
+			}
+		});
+	}
+
+	private int awaitPendingRead() throws IOException {
+		try {
+			while(true) {
+				try {
+					return pendingRead.get();
+				} catch (InterruptedException exception) {
+					System.err.println("Unexpected thread interruption while waiting for a read-ahead");
+
+					exception.printStackTrace();
+				}
+			}
+		} catch (ExecutionException exception) {
+			if(exception.getCause() instanceof IOException) {
+				throw (IOException) exception.getCause();
+			}
+
+			throw new IOException("Error reading ahead from file channel", exception.getCause());
+		} finally {
+			pendingRead = null;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package utilities.filesystem.posix;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import utilities.filesystem.DirectBufferPool;
+
+/**
+ * Output stream that accumulates data in a pooled direct buffer and hands it to a FileChannel
+ * only when the buffer is full, flushed, or closed.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class FileChannelOutputStream extends OutputStream {
+	private FileChannel fileChannel;
+
+	private ByteBuffer buffer;
+
+	public FileChannelOutputStream(FileChannel fileChannel, int bufferSize) {
+		this.fileChannel = fileChannel;
+
+		this.buffer = DirectBufferPool.getInstance().acquire(bufferSize);
+	}
+
+	public void write(int value) throws IOException {
+		ensureOpen();
+
+		if(!buffer.hasRemaining()) {
+			drain();
+		}
+
+		buffer.put((byte) value);
+	}
+
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		ensureOpen();
+
+		while(length > 0) {
+			if(!buffer.hasRemaining()) {
+				drain();
+			}
+
+			int chunk = Math.min(length, buffer.remaining());
+
+			buffer.put(bytes, offset, chunk);
+
+			offset += chunk;
+			length -= chunk;
+		}
+	}
+
+	public void flush() throws IOException {
+		ensureOpen();
+
+		drain();
+	}
+
+	public void close() throws IOException {
+		if(buffer == null) {
+			return;
+		}
+
+		try {
+			drain();
+		} finally {
+			DirectBufferPool.getInstance().release(buffer);
+
+			buffer = null;
+
+			fileChannel.close();
+		}
+	}
+
+	private void drain() throws IOException {
+		buffer.flip();
+
+		while(buffer.hasRemaining()) {
+			fileChannel.write(buffer);
+		}
+
+		buffer.clear();
+	}
+
+	private void ensureOpen() throws IOException {
+		if(buffer == null) {
+			throw new IOException("Stream closed");
+		}
+	}
+}
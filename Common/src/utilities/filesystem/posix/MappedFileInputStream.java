@@ -0,0 +1,117 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package utilities.filesystem.posix;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Input stream over a read-only memory mapping of a file. The file is mapped one window at a time,
+ * so files larger than the maximum mapping size can be read, and windows already consumed can be
+ * reclaimed. Mappings are shared through the page cache with every other reader of the same file.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class MappedFileInputStream extends InputStream {
+	private FileChannel fileChannel;
+
+	private long size;
+
+	private int windowSize;
+
+	private long windowPosition;
+
+	private MappedByteBuffer window;
+
+	public MappedFileInputStream(FileChannel fileChannel, int windowSize) throws IOException {
+		this.fileChannel = fileChannel;
+
+		this.size = fileChannel.size();
+
+		this.windowSize = windowSize;
+
+		this.windowPosition = 0L;
+
+		this.window = null;
+	}
+
+	public int read() throws IOException {
+		if(!ensureWindow()) {
+			return -1;
+		}
+
+		return window.get() & 0xFF;
+	}
+
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if(length == 0) {
+			return 0;
+		}
+
+		if(!ensureWindow()) {
+			return -1;
+		}
+
+		int chunk = Math.min(length, window.remaining());
+
+		window.get(bytes, offset, chunk);
+
+		return chunk;
+	}
+
+	public long skip(long amount) throws IOException {
+		long skipped = 0L;
+
+		while(skipped < amount && ensureWindow()) {
+			int chunk = (int) Math.min(amount - skipped, window.remaining());
+
+			window.position(window.position() + chunk);
+
+			skipped += chunk;
+		}
+
+		return skipped;
+	}
+
+	public int available() throws IOException {
+		return (window == null ? 0 : window.remaining());
+	}
+
+	public void close() throws IOException {
+		window = null;
+
+		fileChannel.close();
+	}
+
+	private boolean ensureWindow() throws IOException {
+		if(window != null && window.hasRemaining()) {
+			return true;
+		}
+
+		if(window != null) {
+			windowPosition += window.capacity();
+		}
+
+		if(windowPosition >= size) {
+			return false;
+		}
+
+		long length = Math.min(windowSize, size - windowPosition);
+
+		window = fileChannel.map(FileChannel.MapMode.READ_ONLY, windowPosition, length);
+
+		return true;
+	}
+}
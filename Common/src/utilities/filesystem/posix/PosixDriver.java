@@ -25,17 +25,78 @@ import java.io.FileOutputStream;
 import utilities.filesystem.FilesystemDriver;
 import utilities.filesystem.Filename;
 
+import utilities.filesystem.hdfs.HDFSBlockLocation;
+
 public class PosixDriver implements FilesystemDriver {
+	private static final int DEFAULT_CHANNEL_BUFFER_SIZE = 1048576;
+
+	private static final int DEFAULT_MAPPED_WINDOW_SIZE = 268435456;
+
 	private static PosixDriver instance;
 
+	private int channelBufferSize;
+
+	private boolean channelReadAhead;
+
+	private int mappedWindowSize;
+
 	static {
 		instance = new PosixDriver();
+
+		String channelBufferSize = System.getProperty("hammr.filesystem.channel_buffer_size");
+		String channelReadAhead = System.getProperty("hammr.filesystem.channel_read_ahead");
+
+		String mappedWindowSize = System.getProperty("hammr.filesystem.mapped_window_size");
+
+		if(channelBufferSize != null) {
+			instance.setChannelBufferSize(Integer.parseInt(channelBufferSize));
+		}
+
+		if(channelReadAhead != null) {
+			instance.setChannelReadAhead(Boolean.parseBoolean(channelReadAhead));
+		}
+
+		if(mappedWindowSize != null) {
+			instance.setMappedWindowSize(Integer.parseInt(mappedWindowSize));
+		}
 	}
 
 	public static PosixDriver getInstance() {
 		return instance;
 	}
 
+	public PosixDriver() {
+		this.channelBufferSize = DEFAULT_CHANNEL_BUFFER_SIZE;
+
+		this.channelReadAhead = true;
+
+		this.mappedWindowSize = DEFAULT_MAPPED_WINDOW_SIZE;
+	}
+
+	public int getChannelBufferSize() {
+		return channelBufferSize;
+	}
+
+	public void setChannelBufferSize(int channelBufferSize) {
+		this.channelBufferSize = channelBufferSize;
+	}
+
+	public boolean isChannelReadAhead() {
+		return channelReadAhead;
+	}
+
+	public void setChannelReadAhead(boolean channelReadAhead) {
+		this.channelReadAhead = channelReadAhead;
+	}
+
+	public int getMappedWindowSize() {
+		return mappedWindowSize;
+	}
+
+	public void setMappedWindowSize(int mappedWindowSize) {
+		this.mappedWindowSize = mappedWindowSize;
+	}
+
 	public InputStream openR(Filename filename) throws FileNotFoundException {
 		return new FileInputStream(filename.getLocation());
 	}
@@ -44,6 +105,24 @@ public class PosixDriver implements FilesystemDriver {
 		return new FileOutputStream(filename.getLocation());
 	}
 
+	public InputStream openChannelR(Filename filename) throws FileNotFoundException {
+		FileInputStream fileInputStream = new FileInputStream(filename.getLocation());
+
+		return new FileChannelInputStream(fileInputStream.getChannel(), channelBufferSize, channelReadAhead);
+	}
+
+	public InputStream openMappedR(Filename filename) throws FileNotFoundException, IOException {
+		FileInputStream fileInputStream = new FileInputStream(filename.getLocation());
+
+		return new MappedFileInputStream(fileInputStream.getChannel(), mappedWindowSize);
+	}
+
+	public OutputStream openChannelW(Filename filename) throws IOException {
+		FileOutputStream fileOutputStream = new FileOutputStream(filename.getLocation());
+
+		return new FileChannelOutputStream(fileOutputStream.getChannel(), channelBufferSize);
+	}
+
 	public boolean exists(Filename filename) {
 		File file = new File(filename.getLocation());
 
@@ -68,4 +147,14 @@ public class PosixDriver implements FilesystemDriver {
 
 		return file.delete();
 	}
+
+	// POSIX files are assumed to be equally reachable from every host, so they report no block locations
+
+	public HDFSBlockLocation[] getFileBlockLocations(Filename filename) throws FileNotFoundException, IOException {
+		if(!exists(filename)) {
+			throw new FileNotFoundException();
+		}
+
+		return new HDFSBlockLocation[0];
+	}
 }
@@ -0,0 +1,136 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package communication.streams;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import communication.codecs.BinaryChannelElementCodec;
+import communication.codecs.SerializationPolicy;
+
+import mapreduce.communication.MRChannelElement;
+
+/**
+ * Round trips of channel streams with sync markers whose values go through the shared object stream.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class SyncMarkerRoundTripTest {
+	private static final int NUMBER_VALUES = 500;
+
+	@Test
+	public void readsFromStartWithResetEveryValue() throws IOException {
+		byte[] file = write(new SerializationPolicy(1, Integer.MAX_VALUE), 1);
+
+		assertEquals(expected(), read(file, 0, file.length));
+	}
+
+	@Test
+	public void readsSplitsWithResetEveryValue() throws IOException {
+		byte[] file = write(new SerializationPolicy(1, Integer.MAX_VALUE), 1);
+
+		checkSplits(file);
+	}
+
+	@Test
+	public void readsSplitsWithDefaultPolicy() throws IOException {
+		byte[] file = write(SerializationPolicy.getDefault(), 64);
+
+		assertEquals(expected(), read(file, 0, file.length));
+
+		checkSplits(file);
+	}
+
+	private void checkSplits(byte[] file) throws IOException {
+		for(int numberSplits: new int[] {2, 7, 64}) {
+			List<Integer> result = new ArrayList<Integer>();
+
+			long splitSize = (file.length + numberSplits - 1) / numberSplits;
+
+			for(long start = 0; start < file.length; start += splitSize) {
+				result.addAll(read(file, start, Math.min(start + splitSize, file.length)));
+			}
+
+			assertEquals("Elements read from " + numberSplits + " splits", expected(), result);
+		}
+	}
+
+	private byte[] write(SerializationPolicy serializationPolicy, int syncInterval) throws IOException {
+		ByteArrayOutputStream file = new ByteArrayOutputStream();
+
+		ChannelElementOutputStream outputStream = new ChannelElementOutputStream(file, BinaryChannelElementCodec.getInstance(), ChannelElementOutputStream.DEFAULT_BUFFER_SIZE, syncInterval);
+
+		outputStream.setSerializationPolicy(serializationPolicy);
+
+		for(int i = 0; i < NUMBER_VALUES; i++) {
+			outputStream.writeChannelElement(new MRChannelElement<String,Value>("key" + i, new Value(i)));
+		}
+
+		outputStream.close();
+
+		return file.toByteArray();
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Integer> read(byte[] file, long start, long end) throws IOException {
+		ChannelElementInputStream inputStream = new ChannelElementInputStream(new ByteArrayInputStream(file));
+
+		inputStream.setSplit(start, end);
+
+		List<Integer> result = new ArrayList<Integer>();
+
+		try {
+			while(true) {
+				result.add(((MRChannelElement<String,Value>) inputStream.readChannelElement()).getValue().number);
+			}
+		} catch (EOFException exception) {
+			// Reached the end of the split
+		}
+
+		inputStream.close();
+
+		return result;
+	}
+
+	private List<Integer> expected() {
+		List<Integer> result = new ArrayList<Integer>();
+
+		for(int i = 0; i < NUMBER_VALUES; i++) {
+			result.add(i);
+		}
+
+		return result;
+	}
+
+	// Not registered with the codec, so it is written through the shared object stream
+
+	private static class Value implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private int number;
+
+		public Value(int number) {
+			this.number = number;
+		}
+	}
+}
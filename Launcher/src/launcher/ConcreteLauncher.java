@@ -17,7 +17,6 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.HashMap;
 
-import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutorService;
 
 import java.io.IOException;
@@ -32,6 +31,7 @@ import execinfo.NodeGroup;
 import security.CollocationStatus;
 
 import utilities.RMIHelper;
+import utilities.concurrent.ThreadHelper;
 
 import interfaces.Launcher;
 import interfaces.Manager;
@@ -158,7 +158,7 @@ public class ConcreteLauncher implements Launcher {
 
 		launcherCache = Collections.synchronizedMap(new HashMap<String, Object>());
 
-		executorService = Executors.newCachedThreadPool();
+		executorService = ThreadHelper.createExecutorService();
 	}
 
 	/**
@@ -20,12 +20,16 @@ import java.util.Map;
 import java.util.HashMap;
 
 import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.lang.management.ThreadMXBean;
 
 import java.net.InetSocketAddress;
 
 import utilities.RMIHelper;
 
+import utilities.concurrent.QueueSpecification;
+import utilities.concurrent.ThreadHelper;
+
 import communication.channel.InputChannel;
 import communication.channel.OutputChannel;
 
@@ -38,8 +42,20 @@ import communication.channel.TCPOutputChannel;
 import communication.channel.FileInputChannel;
 import communication.channel.FileOutputChannel;
 
+import communication.channel.PartitionedFileInputChannel;
+import communication.channel.PartitionedFileOutputChannel;
+
+import communication.codecs.BinaryChannelElementCodec;
+import communication.codecs.SerializationStatistics;
+
+import communication.interfaces.ChannelElementCodec;
+import communication.interfaces.ChannelElementReader;
+
 import communication.readers.FileChannelElementReader;
+import communication.readers.MappedFileChannelElementReader;
+import communication.readers.PartitionedFileChannelElementReader;
 import communication.writers.FileChannelElementWriter;
+import communication.writers.PartitionedFileChannelElementWriter;
 
 import communication.readers.SHMChannelElementMultiplexer;
 import communication.readers.TCPChannelElementMultiplexer;
@@ -49,6 +65,10 @@ import communication.writers.TCPChannelElementWriter;
 
 import appspecs.Node;
 
+import mapreduce.programs.SpillPolicy;
+
+import enums.FileReaderMode;
+
 import execinfo.NodeGroup;
 import execinfo.ResultSummary;
 import execinfo.NodeMeasurements;
@@ -70,6 +90,12 @@ public class ExecutionHandler implements Runnable, Serializable {
 
 	protected NodeGroup nodeGroup;
 
+	// Maps node names to the SHM multiplexer that receives their inputs
+	protected transient Map<String, SHMChannelElementMultiplexer> mapChannelElementOutputStream;
+
+	// Maps node names to their TCP writers, indexed by output channel name
+	protected transient Map<String, Map<String, TCPChannelElementWriter>> mapTCPChannelElementWriters;
+
 	/**
 	 * Constructor.
 	 * 
@@ -152,10 +178,12 @@ public class ExecutionHandler implements Runnable, Serializable {
 	 *         3) Error creating or opening file channels.
 	 */
 	private void setupCommunication() throws Exception {
+		ChannelElementCodec codec = BinaryChannelElementCodec.getInstance();
+
 		// Create all the pipe handlers (readers and writers)
 		// If two pipe edges target the same node, only one pipe handler (and corresponding physical pipe) will be created
 
-		Map<String, SHMChannelElementMultiplexer> mapChannelElementOutputStream = new HashMap<String, SHMChannelElementMultiplexer>();
+		mapChannelElementOutputStream = new HashMap<String, SHMChannelElementMultiplexer>();
 
 		for(Node node: nodeGroup.getNodes()) {
 			SHMChannelElementMultiplexer shmChannelElementMultiplexer = null;
@@ -165,7 +193,7 @@ public class ExecutionHandler implements Runnable, Serializable {
 					SHMInputChannel shmInputChannel = (SHMInputChannel) inputChannel;
 
 					if(shmChannelElementMultiplexer == null) {
-						shmChannelElementMultiplexer = new SHMChannelElementMultiplexer(node.getInputChannelNames(SHMInputChannel.class));
+						shmChannelElementMultiplexer = new SHMChannelElementMultiplexer(node.getInputChannelNames(SHMInputChannel.class), obtainQueueSpecification(node));
 
 						// For SHM, when creating the input pipe, map the associated output pipe for other nodes
 						mapChannelElementOutputStream.put(node.getName(), shmChannelElementMultiplexer);
@@ -202,7 +230,9 @@ public class ExecutionHandler implements Runnable, Serializable {
 					TCPInputChannel tcpInputChannel = (TCPInputChannel) inputChannel;
 
 					if(tcpChannelElementMultiplexer == null) {
-						tcpChannelElementMultiplexer = new TCPChannelElementMultiplexer(node.getInputChannelNames(TCPInputChannel.class));
+						tcpChannelElementMultiplexer = new TCPChannelElementMultiplexer(obtainMultiplexerIdentifier(node.getName()), node.getInputChannelNames(TCPInputChannel.class));
+
+						tcpChannelElementMultiplexer.setDecodingMode(node.getDecodingMode());
 
 						tcpInputChannel.setSocketAddress(tcpChannelElementMultiplexer.getAddress());
 
@@ -222,7 +252,13 @@ public class ExecutionHandler implements Runnable, Serializable {
 			}
 		}
 
+		mapTCPChannelElementWriters = new HashMap<String, Map<String, TCPChannelElementWriter>>();
+
 		for(Node node: nodeGroup.getNodes()) {
+			Map<String, TCPChannelElementWriter> tcpChannelElementWriters = new HashMap<String, TCPChannelElementWriter>();
+
+			mapTCPChannelElementWriters.put(node.getName(), tcpChannelElementWriters);
+
 			for(OutputChannel outputChannel: node.getOutputChannels()) {
 				if(outputChannel instanceof TCPOutputChannel) {
 					TCPOutputChannel tcpOutputChannel = (TCPOutputChannel) outputChannel;
@@ -236,11 +272,17 @@ public class ExecutionHandler implements Runnable, Serializable {
 
 					tcpOutputChannel.setSocketAddress(socketAddress);
 
-					// For TCP, (2) all the outputs go to the unique server for each node
+					// For TCP, (2) all the outputs go to the unique multiplexer for each node, over the connections shared with its launcher
 
-					TCPChannelElementWriter tcpChannelElementWriter = new TCPChannelElementWriter(node.getName(), socketAddress);
+					TCPChannelElementWriter tcpChannelElementWriter = new TCPChannelElementWriter(node.getName(), obtainMultiplexerIdentifier(tcpOutputChannel.getName()), socketAddress, codec, tcpOutputChannel.getCompressionType());
+
+					if(tcpOutputChannel.getSerializationPolicy() != null) {
+						tcpChannelElementWriter.setSerializationPolicy(tcpOutputChannel.getSerializationPolicy());
+					}
 
 					tcpOutputChannel.setChannelElementWriter(tcpChannelElementWriter);
+
+					tcpChannelElementWriters.put(tcpOutputChannel.getName(), tcpChannelElementWriter);
 				}
 			}
 		}
@@ -253,17 +295,71 @@ public class ExecutionHandler implements Runnable, Serializable {
 				if(inputChannel instanceof FileInputChannel) {
 					FileInputChannel fileInputChannel = (FileInputChannel) inputChannel;
 
-					FileChannelElementReader fileChannelElementReader = new FileChannelElementReader(fileInputChannel.getFileInformation());
+					ChannelElementReader fileChannelElementReader;
+
+					if(fileInputChannel instanceof PartitionedFileInputChannel) {
+						PartitionedFileChannelElementReader partitionedFileChannelElementReader = new PartitionedFileChannelElementReader(fileInputChannel.getFileInformation(), ((PartitionedFileInputChannel) fileInputChannel).getPartition(), codec, fileInputChannel.getCompressionType());
+
+						partitionedFileChannelElementReader.setDecodingMode(node.getDecodingMode());
+
+						fileChannelElementReader = partitionedFileChannelElementReader;
+					}
+					else if(fileInputChannel.isSplit()) {
+						// Byte ranges are always streamed, since they have to be aligned to sync markers
+
+						FileChannelElementReader splitFileChannelElementReader = new FileChannelElementReader(fileInputChannel.getFileInformation(), codec, fileInputChannel.getCompressionType(), fileInputChannel.getSplitOffset(), fileInputChannel.getSplitLength());
+
+						splitFileChannelElementReader.setDecodingMode(node.getDecodingMode());
+
+						fileChannelElementReader = splitFileChannelElementReader;
+					}
+					else if(fileInputChannel.getReaderMode() == FileReaderMode.MAPPED) {
+						MappedFileChannelElementReader mappedFileChannelElementReader = new MappedFileChannelElementReader(fileInputChannel.getFileInformation(), codec, fileInputChannel.getCompressionType());
+
+						mappedFileChannelElementReader.setDecodingMode(node.getDecodingMode());
+
+						fileChannelElementReader = mappedFileChannelElementReader;
+					}
+					else {
+						FileChannelElementReader streamFileChannelElementReader = new FileChannelElementReader(fileInputChannel.getFileInformation(), codec, fileInputChannel.getCompressionType());
+
+						streamFileChannelElementReader.setDecodingMode(node.getDecodingMode());
+
+						fileChannelElementReader = streamFileChannelElementReader;
+					}
 
 					fileInputChannel.setChannelElementReader(fileChannelElementReader);
 				}
 			}
 
+			// Partitioned channels of a node that target the same file share a single writer, with one view per partition
+
+			Map<String, PartitionedFileChannelElementWriter> partitionedFileChannelElementWriters = new HashMap<String, PartitionedFileChannelElementWriter>();
+
 			for(OutputChannel outputChannel: node.getOutputChannels()) {
-				if(outputChannel instanceof FileOutputChannel) {
+				if(outputChannel instanceof PartitionedFileOutputChannel) {
+					PartitionedFileOutputChannel partitionedFileOutputChannel = (PartitionedFileOutputChannel) outputChannel;
+
+					String location = partitionedFileOutputChannel.getFileInformation().getLocation();
+
+					PartitionedFileChannelElementWriter partitionedFileChannelElementWriter = partitionedFileChannelElementWriters.get(location);
+
+					if(partitionedFileChannelElementWriter == null) {
+						partitionedFileChannelElementWriter = new PartitionedFileChannelElementWriter(partitionedFileOutputChannel.getFileInformation(), partitionedFileOutputChannel.getNumberPartitions(), partitionedFileOutputChannel.getComparator(), codec, partitionedFileOutputChannel.getCompressionType(), partitionedFileOutputChannel.getSortBufferSize(), SpillPolicy.getDefault().getDirectory());
+
+						partitionedFileChannelElementWriters.put(location, partitionedFileChannelElementWriter);
+					}
+
+					partitionedFileOutputChannel.setChannelElementWriter(partitionedFileChannelElementWriter.getPartitionWriter(partitionedFileOutputChannel.getPartition()));
+				}
+				else if(outputChannel instanceof FileOutputChannel) {
 					FileOutputChannel fileOutputChannel = (FileOutputChannel) outputChannel;
 
-					FileChannelElementWriter fileChannelElementWriter = new FileChannelElementWriter(fileOutputChannel.getFileInformation());
+					FileChannelElementWriter fileChannelElementWriter = new FileChannelElementWriter(fileOutputChannel.getFileInformation(), codec, fileOutputChannel.getCompressionType());
+
+					if(fileOutputChannel.getSerializationPolicy() != null) {
+						fileChannelElementWriter.setSerializationPolicy(fileOutputChannel.getSerializationPolicy());
+					}
 
 					fileOutputChannel.setChannelElementWriter(fileChannelElementWriter);
 				}
@@ -271,6 +367,37 @@ public class ExecutionHandler implements Runnable, Serializable {
 		}
 	}
 
+	/**
+	 * Obtains the identifier of the TCP multiplexer for a node, unique among the applications running in a launcher.
+	 * 
+	 * @param nodeName Name of the node.
+	 * 
+	 * @return The identifier of the TCP multiplexer for the node.
+	 */
+	private String obtainMultiplexerIdentifier(String nodeName) {
+		return nodeGroup.getApplication() + ":" + nodeName;
+	}
+
+	/**
+	 * Obtains the queue specification for the SHM multiplexer of a Node. All SHM inputs of a Node share
+	 * the same multiplexer, so the first specification found among its SHM input channels is used.
+	 * 
+	 * @param node Node that owns the SHM multiplexer.
+	 * 
+	 * @return The queue specification informed in one of the SHM edges, or the default specification if none was informed.
+	 */
+	private QueueSpecification obtainQueueSpecification(Node node) {
+		for(InputChannel inputChannel: node.getInputChannels(SHMInputChannel.class)) {
+			QueueSpecification queueSpecification = ((SHMInputChannel) inputChannel).getQueueSpecification();
+
+			if(queueSpecification != null) {
+				return queueSpecification;
+			}
+		}
+
+		return new QueueSpecification();
+	}
+
 	/**
 	 * Performs the execution of the Nodes, one per thread, and prepares the result summary to send back to the master.
 	 * 
@@ -283,6 +410,8 @@ public class ExecutionHandler implements Runnable, Serializable {
 
 		long globalTimerStart = System.currentTimeMillis();
 
+		long processCpuTimerStart = getProcessCpuTime();
+
 		for(int i = 0; i < nodeGroup.getSize(); i++) {
 			nodeHandlers[i] = new NodeHandler(iterator.next());
 
@@ -302,10 +431,18 @@ public class ExecutionHandler implements Runnable, Serializable {
 
 		long globalTimerFinish = System.currentTimeMillis();
 
+		long processCpuTimerFinish = getProcessCpuTime();
+
 		ResultSummary resultSummary = new ResultSummary(nodeGroup.getApplication(), nodeGroup.getSerialNumber(), ResultSummary.Type.SUCCESS);
 
 		resultSummary.setNodeGroupTiming(globalTimerFinish - globalTimerStart);
 
+		if(processCpuTimerStart >= 0 && processCpuTimerFinish >= 0) {
+			// We get results in milliseconds, not in nanoseconds
+
+			resultSummary.setNodeGroupCpuTime((processCpuTimerFinish - processCpuTimerStart) / 1000000);
+		}
+
 		for(int i = 0; i < nodeGroup.getSize(); i++) {
 			resultSummary.addNodeMeasurements(nodeHandlers[i].getNode().getName(), nodeHandlers[i].getNodeMeasurements());
 		}
@@ -313,6 +450,22 @@ public class ExecutionHandler implements Runnable, Serializable {
 		return resultSummary;
 	}
 
+	/**
+	 * Obtains the CPU time of the launcher process. Unlike thread CPU time, it is also available for
+	 * nodes run on virtual threads, but includes the other NodeGroups running in the same launcher.
+	 * 
+	 * @return The CPU time of the launcher process in nanoseconds, or -1 if unavailable.
+	 */
+	private long getProcessCpuTime() {
+		OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+
+		if(operatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) operatingSystem).getProcessCpuTime();
+		}
+
+		return -1;
+	}
+
 	/**
 	 * Sends the result summary of the NodeGroup back to the master, and clears the NodeGroup data from the launcher.
 	 * 
@@ -344,12 +497,15 @@ public class ExecutionHandler implements Runnable, Serializable {
 
 	/**
 	 * Class that executes a single Node in a separate thread, performing the appopriate measurements.
+	 * The thread is a platform or a virtual thread, according to the launcher thread mode (see ThreadHelper).
 	 * 
 	 * @author Hammurabi Mendes (hmendes)
 	 */
-	class NodeHandler extends Thread {
+	class NodeHandler implements Runnable {
 		private Node node;
 
+		private Thread thread;
+
 		private long realLocalTimerStart;
 		private long realLocalTimerFinish;
 
@@ -366,6 +522,24 @@ public class ExecutionHandler implements Runnable, Serializable {
 		 */
 		public NodeHandler(Node node) {
 			this.node = node;
+
+			this.thread = ThreadHelper.createNodeThread(this, node.getName());
+		}
+
+		/**
+		 * Starts running the Node.
+		 */
+		public void start() {
+			thread.start();
+		}
+
+		/**
+		 * Waits for the Node to finish running.
+		 * 
+		 * @throws InterruptedException If interrupted while waiting.
+		 */
+		public void join() throws InterruptedException {
+			thread.join();
 		}
 
 		/**
@@ -419,6 +593,12 @@ public class ExecutionHandler implements Runnable, Serializable {
 		 * @return The CPU time to execute the Node.
 		 */
 		public long getCpuTime() {
+			// CPU time is not measured for virtual threads
+
+			if(cpuLocalTimerStart < 0 || cpuLocalTimerFinish < 0) {
+				return -1;
+			}
+
 			// We get results in milliseconds, not in nanoseconds
 
 			return (cpuLocalTimerFinish - cpuLocalTimerStart) / 1000000;
@@ -430,6 +610,12 @@ public class ExecutionHandler implements Runnable, Serializable {
 		 * @return The user time to execute the Node.
 		 */
 		public long getUserTime() {
+			// User time is not measured for virtual threads
+
+			if(userLocalTimerStart < 0 || userLocalTimerFinish < 0) {
+				return -1;
+			}
+
 			// We get results in milliseconds, not in nanoseconds
 
 			return (userLocalTimerFinish - userLocalTimerStart) / 1000000;
@@ -441,7 +627,27 @@ public class ExecutionHandler implements Runnable, Serializable {
 		 * @return The whole set of node measurements.
 		 */
 		public NodeMeasurements getNodeMeasurements() {
-			return new NodeMeasurements(getRealTime(), getCpuTime(), getUserTime());
+			Map<String, Long> channelCloseLatencies = null;
+
+			SHMChannelElementMultiplexer shmChannelElementMultiplexer = mapChannelElementOutputStream.get(node.getName());
+
+			if(shmChannelElementMultiplexer != null) {
+				channelCloseLatencies = shmChannelElementMultiplexer.getCloseLatencies();
+			}
+
+			Map<String, Long> channelBlockedTimes = new HashMap<String, Long>();
+			Map<String, SerializationStatistics> channelSerializationStatistics = new HashMap<String, SerializationStatistics>();
+
+			Map<String, TCPChannelElementWriter> tcpChannelElementWriters = mapTCPChannelElementWriters.get(node.getName());
+
+			if(tcpChannelElementWriters != null) {
+				for(String outputChannelName: tcpChannelElementWriters.keySet()) {
+					channelBlockedTimes.put(outputChannelName, tcpChannelElementWriters.get(outputChannelName).getBlockedTime());
+					channelSerializationStatistics.put(outputChannelName, tcpChannelElementWriters.get(outputChannelName).getSerializationStatistics());
+				}
+			}
+
+			return new NodeMeasurements(getRealTime(), getCpuTime(), getUserTime(), channelCloseLatencies, channelBlockedTimes, channelSerializationStatistics, node.getCounters());
 		}
 	}
 }
@@ -0,0 +1,179 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import communication.channel.ChannelElement;
+import communication.channel.SHMInputChannel;
+import communication.channel.SHMOutputChannel;
+
+import appspecs.Node;
+
+import enums.ThreadMode;
+
+import execinfo.NodeGroup;
+import execinfo.NodeMeasurements;
+import execinfo.ResultSummary;
+
+import utilities.concurrent.ThreadHelper;
+
+/**
+ * Runs a NodeGroup with the launcher in virtual thread mode, on runtimes that provide virtual threads.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class VirtualThreadExecutionTest {
+	private static final int NUMBER_ELEMENTS = 100000;
+
+	static {
+		// Read once, when ThreadHelper is loaded
+
+		System.setProperty("hammr.launcher.thread_mode", "virtual");
+	}
+
+	@Test
+	public void measuresNodeGroupOnVirtualThreads() throws Exception {
+		Method isVirtual = null;
+
+		try {
+			Thread.class.getMethod("ofVirtual");
+
+			isVirtual = Thread.class.getMethod("isVirtual");
+		} catch (NoSuchMethodException exception) {
+			Assume.assumeTrue("Virtual threads are not supported by this runtime", false);
+		}
+
+		Assume.assumeTrue("Thread mode was chosen before the test set it", ThreadHelper.getThreadMode() == ThreadMode.VIRTUAL);
+
+		Producer producer = new Producer();
+		producer.setName("producer");
+
+		Consumer consumer = new Consumer();
+		consumer.setName("consumer");
+
+		producer.addOutputChannel(consumer.getName(), new SHMOutputChannel(consumer.getName()), false);
+		consumer.addInputChannel(producer.getName(), new SHMInputChannel(producer.getName()), false);
+
+		Set<Node> nodes = new HashSet<Node>();
+
+		nodes.add(producer);
+		nodes.add(consumer);
+
+		RecordingExecutionHandler executionHandler = new RecordingExecutionHandler(new NodeGroup("virtual-test", nodes));
+
+		executionHandler.run();
+
+		ResultSummary resultSummary = executionHandler.getResultSummary();
+
+		assertNotNull("Result summary not reported", resultSummary);
+		assertEquals(ResultSummary.Type.SUCCESS, resultSummary.getType());
+
+		assertTrue("Producer did not run on a virtual thread", (Boolean) isVirtual.invoke(producer.getThread()));
+		assertTrue("Consumer did not run on a virtual thread", (Boolean) isVirtual.invoke(consumer.getThread()));
+
+		for(String nodeName: new String[] {"producer", "consumer"}) {
+			NodeMeasurements nodeMeasurements = resultSummary.getNodeMeasurement(nodeName);
+
+			assertNotNull("Measurements missing for " + nodeName, nodeMeasurements);
+
+			assertTrue("Real time not measured for " + nodeName, nodeMeasurements.getRealTime() >= 0);
+
+			// Thread CPU time is not available for virtual threads, and is reported as unmeasured
+
+			assertEquals(-1, nodeMeasurements.getCpuTime());
+			assertEquals(-1, nodeMeasurements.getUserTime());
+		}
+
+		assertTrue("Process CPU time not measured for the NodeGroup", resultSummary.getNodeGroupCpuTime() >= 0);
+
+		assertEquals(Long.valueOf(NUMBER_ELEMENTS), resultSummary.getNodeMeasurement("consumer").getCounters().get("elements"));
+	}
+
+	/**
+	 * Keeps the result summary instead of reporting it to a launcher and a manager.
+	 */
+	private static class RecordingExecutionHandler extends ExecutionHandler {
+		private static final long serialVersionUID = 1L;
+
+		private ResultSummary resultSummary;
+
+		public RecordingExecutionHandler(NodeGroup nodeGroup) {
+			super(null, nodeGroup);
+		}
+
+		protected boolean finishExecution(ResultSummary resultSummary) {
+			this.resultSummary = resultSummary;
+
+			return true;
+		}
+
+		public ResultSummary getResultSummary() {
+			return resultSummary;
+		}
+	}
+
+	private static class Producer extends Node {
+		private static final long serialVersionUID = 1L;
+
+		private transient Thread thread;
+
+		public void run() {
+			thread = Thread.currentThread();
+
+			for(long i = 0; i < NUMBER_ELEMENTS; i++) {
+				writeSomeone(new ChannelElement(i));
+			}
+
+			shutdown();
+		}
+
+		public Thread getThread() {
+			return thread;
+		}
+	}
+
+	private static class Consumer extends Node {
+		private static final long serialVersionUID = 1L;
+
+		private transient Thread thread;
+
+		public void run() {
+			thread = Thread.currentThread();
+
+			ChannelElement channelElement;
+
+			while((channelElement = readSomeone()) != null) {
+				if(channelElement.getObject() instanceof Long) {
+					addToCounter("elements", 1);
+				}
+			}
+
+			shutdown();
+		}
+
+		public Thread getThread() {
+			return thread;
+		}
+	}
+}
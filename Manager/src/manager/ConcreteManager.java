@@ -451,6 +451,45 @@ public class ConcreteManager implements Manager {
 		}
 	}
 
+	/**
+	 * Runs the scheduler of an application again, so that NodeGroups it deferred are retried. This is called
+	 * by the scheduler itself when their waits expire.
+	 * 
+	 * @param application Name of the application.
+	 * 
+	 * @return True if the scheduler ran normally; false otherwise.
+	 */
+	public boolean retrySchedule(String application) {
+		ApplicationInformationHolder applicationInformationHolder = applicationInformationHolders.get(application);
+
+		if(applicationInformationHolder == null || applicationInformationHolder.getApplicationScheduler() == null) {
+			// The application already finished
+
+			return false;
+		}
+
+		try {
+			applicationInformationHolder.getApplicationScheduler().schedule();
+
+			return true;
+		} catch (RuntimeGlobalPlacementException exception) {
+			System.err.println("Unable to proceed scheduling for application " + application + ":" + exception.toString() + " Aborting application...");
+
+			finishApplication(application);
+			return false;
+		} catch (RuntimeNodeGroupPlacementException exception) {
+			System.err.println("Unable to proceed scheduling for application " + application + ":" + exception.toString() + " Aborting application...");
+
+			finishApplication(application);
+			return false;
+		} catch (InsufficientLaunchersException exception) {
+			System.err.println("Unable to proceed scheduling for application " + application + ":" + exception.toString() + " Aborting application...");
+
+			finishApplication(application);
+			return false;
+		}
+	}
+
 	/**
 	 * Creates a holder containing the application name, specification, and scheduler, and makes it
 	 * ready to start executing.
@@ -503,6 +542,12 @@ public class ConcreteManager implements Manager {
 
 		applicationInformationHolders.remove(applicationName);
 
+		// Stops the retries of deferred NodeGroups, if the application was aborted
+
+		if(applicationInformationHolder.getApplicationScheduler() != null) {
+			applicationInformationHolder.getApplicationScheduler().terminateApplication();
+		}
+
 		applicationInformationHolder.markFinish();
 
 		processApplicationResultSummaries(applicationName, applicationInformationHolder.getTotalRunningTime(), applicationInformationHolder.getReceivedResultSummaries());
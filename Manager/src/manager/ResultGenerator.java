@@ -19,6 +19,8 @@ import java.util.Set;
 import execinfo.ResultSummary;
 import execinfo.NodeMeasurements;
 
+import communication.codecs.SerializationStatistics;
+
 /**
  * Generates a summary for the whole application execution, in a separate thread.
  * 
@@ -76,21 +78,22 @@ public class ResultGenerator extends Thread {
 			long averageNodeUserTime = 0;
 			long averageNodeRealTime = 0;
 
-			int numberNodes = 0;
-
-			// Make a first pass just to discover the number of nodes
+			// CPU and user times are averaged over the nodes where they were measured
 
-			for(ResultSummary resultSummary: resultSummaries) {
-				Set<String> nodeNames = resultSummary.getNodeNames();
+			int numberNodes = 0;
 
-				numberNodes += nodeNames.size();
-			}
+			int numberCPUMeasuredNodes = 0;
+			int numberUserMeasuredNodes = 0;
 
 			for(ResultSummary resultSummary: resultSummaries) {
 				file.write("NodeGroup \"" + resultSummary.getNodeGroupSerialNumber() + "\" running time: " + getHumanReadableTime(resultSummary.getNodeGroupTiming()) + "\n");
 
 				averageNodeGroupTime += resultSummary.getNodeGroupTiming() / resultSummaries.size();
 
+				if(resultSummary.getNodeGroupCpuTime() >= 0) {
+					file.write("NodeGroup \"" + resultSummary.getNodeGroupSerialNumber() + "\" process CPU time: " + getHumanReadableTime(resultSummary.getNodeGroupCpuTime()) + "\n");
+				}
+
 				Set<String> nodeNames = resultSummary.getNodeNames();
 
 				for(String nodeName: nodeNames) {
@@ -102,19 +105,65 @@ public class ResultGenerator extends Thread {
 						continue;
 					}
 
-					file.write("\tNode \"" + nodeName + "\" CPU  time: " + getHumanReadableTime(nodeMeasurements.getCpuTime()) + "\n");
-					averageNodeCPUTime += (nodeMeasurements.getCpuTime() / numberNodes);
+					numberNodes++;
+
+					// CPU and user times are not measured for nodes run on virtual threads; the process CPU time of the NodeGroup covers them
+
+					if(nodeMeasurements.getCpuTime() >= 0) {
+						file.write("\tNode \"" + nodeName + "\" CPU  time: " + getHumanReadableTime(nodeMeasurements.getCpuTime()) + "\n");
+						averageNodeCPUTime += nodeMeasurements.getCpuTime();
+						numberCPUMeasuredNodes++;
+					}
+					else {
+						file.write("\tNode \"" + nodeName + "\" CPU  time: see NodeGroup process CPU time\n");
+					}
 
 					file.write("\tNode \"" + nodeName + "\" Real time: " + getHumanReadableTime(nodeMeasurements.getRealTime()) + "\n");
-					averageNodeRealTime += (nodeMeasurements.getRealTime() / numberNodes);
+					averageNodeRealTime += nodeMeasurements.getRealTime();
+
+					if(nodeMeasurements.getUserTime() >= 0) {
+						file.write("\tNode \"" + nodeName + "\" User time: " + getHumanReadableTime(nodeMeasurements.getUserTime()) + "\n");
+						averageNodeUserTime += nodeMeasurements.getUserTime();
+						numberUserMeasuredNodes++;
+					}
+					else {
+						file.write("\tNode \"" + nodeName + "\" User time: unavailable\n");
+					}
+
+					for(String channelName: nodeMeasurements.getChannelCloseLatencies().keySet()) {
+						long closeLatency = nodeMeasurements.getChannelCloseLatencies().get(channelName);
+
+						file.write("\tNode \"" + nodeName + "\" close latency for \"" + channelName + "\": " + getHumanReadableTime(closeLatency / 1000000) + "\n");
+					}
+
+					for(String channelName: nodeMeasurements.getChannelBlockedTimes().keySet()) {
+						long blockedTime = nodeMeasurements.getChannelBlockedTimes().get(channelName);
+
+						file.write("\tNode \"" + nodeName + "\" credit wait for \"" + channelName + "\": " + getHumanReadableTime(blockedTime / 1000000) + "\n");
+					}
+
+					for(String channelName: nodeMeasurements.getChannelSerializationStatistics().keySet()) {
+						SerializationStatistics serializationStatistics = nodeMeasurements.getChannelSerializationStatistics().get(channelName);
 
-					file.write("\tNode \"" + nodeName + "\" User time: " + getHumanReadableTime(nodeMeasurements.getUserTime()) + "\n");
-					averageNodeUserTime += (nodeMeasurements.getUserTime() / numberNodes);
+						if(serializationStatistics.getValues() == 0) {
+							continue;
+						}
+
+						file.write("\tNode \"" + nodeName + "\" serialization for \"" + channelName + "\": " + serializationStatistics.getValues() + " values, " + serializationStatistics.getResets() + " resets, at most " + serializationStatistics.getMaximumHandles() + " handles\n");
+					}
+
+					for(String counter: nodeMeasurements.getCounters().keySet()) {
+						file.write("\tNode \"" + nodeName + "\" counter \"" + counter + "\": " + nodeMeasurements.getCounters().get(counter) + "\n");
+					}
 
 					file.write("\n");
 				}
 			}
 
+			averageNodeCPUTime = (numberCPUMeasuredNodes > 0 ? averageNodeCPUTime / numberCPUMeasuredNodes : 0);
+			averageNodeUserTime = (numberUserMeasuredNodes > 0 ? averageNodeUserTime / numberUserMeasuredNodes : 0);
+			averageNodeRealTime = (numberNodes > 0 ? averageNodeRealTime / numberNodes : 0);
+
 			file.write("Average NodeGroup time: " + getHumanReadableTime(averageNodeGroupTime) + "\n");
 			file.write("Average Node CPU  time: " + getHumanReadableTime(averageNodeCPUTime) + "\n");
 			file.write("Average Node User time: " + getHumanReadableTime(averageNodeUserTime) + "\n");
@@ -28,6 +28,9 @@ import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.LinkedList;
 
+import java.util.Timer;
+import java.util.TimerTask;
+
 import org.jgrapht.alg.*;
 import org.jgrapht.graph.*;
 
@@ -69,8 +72,24 @@ import interfaces.Launcher;
 import manager.ConcreteManager;
 
 public class ConcreteScheduler implements Scheduler {
+	// Time a NodeGroup waits for a node-local launcher, and then for a rack-local launcher
+
+	public static final long DEFAULT_LOCALITY_WAIT = 3000L;
+
 	private String applicationName;
 
+	private LocalityScorer localityScorer = new LocalityScorer();
+
+	private long localityWait = DEFAULT_LOCALITY_WAIT;
+
+	// NodeGroups released for execution, but deferred waiting for a launcher close to their inputs, and when they were first tried
+
+	private Map<NodeGroup, Long> deferredNodeGroups = new HashMap<NodeGroup, Long>();
+
+	// Retries deferred NodeGroups when their waits expire, if no termination triggers a schedule before
+
+	private Timer retryTimer;
+
 	private ApplicationSpecification applicationSpecification;
 
 	/////////////////////////
@@ -101,6 +120,26 @@ public class ConcreteScheduler implements Scheduler {
 		this.applicationName = applicationName;
 	}
 
+	/**
+	 * Sets the scorer used to place NodeGroups close to their input files.
+	 * 
+	 * @param localityScorer The new locality scorer.
+	 */
+	public synchronized void setLocalityScorer(LocalityScorer localityScorer) {
+		this.localityScorer = localityScorer;
+	}
+
+	/**
+	 * Sets how long a NodeGroup waits for a busy node-local launcher, and then for a busy rack-local launcher,
+	 * before being placed farther from its input files. Waiting NodeGroups are deferred, and retried whenever
+	 * the scheduler runs again; the wait is skipped when no launcher has enough free slots for the NodeGroup.
+	 * 
+	 * @param localityWait The maximum wait in each locality level, in milliseconds.
+	 */
+	public synchronized void setLocalityWait(long localityWait) {
+		this.localityWait = localityWait;
+	}
+
 	/**
 	 * Setups the scheduler for the new application being executed.
 	 * 
@@ -392,7 +431,11 @@ public class ConcreteScheduler implements Scheduler {
 	 * Terminates the application .
 	 */
 	public synchronized void terminateApplication() {
-		// Do nothing special
+		if(retryTimer != null) {
+			retryTimer.cancel();
+
+			retryTimer = null;
+		}
 	}
 
 	/**
@@ -439,6 +482,10 @@ public class ConcreteScheduler implements Scheduler {
 			throw new InexistentInputException(missingInputs);
 		}
 
+		// Inputs may have been rewritten by the previous iteration
+
+		localityScorer.clear();
+
 		// Find out the initial nodes:
 		// - If the application specification defines the intials, use them
 		// - Otherwise get file consumers that only depend on system files
@@ -514,12 +561,12 @@ public class ConcreteScheduler implements Scheduler {
 	 * @return True if all the Node/NodeGroups were already executed for this iteration, false otherwise.
 	 */
 	public synchronized boolean finishedIteration() {
-		return (!dependencyManager.hasLockedDependents() && !dependencyManager.hasUnlockedDependents() && (runningNodeGroups.size() == 0));
+		return (!dependencyManager.hasLockedDependents() && !dependencyManager.hasUnlockedDependents() && (runningNodeGroups.size() == 0) && (deferredNodeGroups.size() == 0));
 	}
 
 	/**
 	 * Try to schedule the next wave of NodeGroups: NodeGroupBundles are NodeGroups that should
-	 * be schedule at the same time.
+	 * be schedule at the same time. NodeGroups deferred by previous calls are retried as well.
 	 * 
 	 * @return False if no NodeGroupBundle is available to execution; true otherwise.
 	 * 
@@ -529,10 +576,14 @@ public class ConcreteScheduler implements Scheduler {
 	 *         members of the NodeGroup being scheduled.
 	 */
 	public synchronized boolean schedule() throws InsufficientLaunchersException, RuntimeGlobalPlacementException, RuntimeNodeGroupPlacementException {
-		if(!dependencyManager.hasUnlockedDependents()) {
+		if(!dependencyManager.hasUnlockedDependents() && deferredNodeGroups.size() == 0) {
 			return false;
 		}
 
+		for(NodeGroup deferredNodeGroup: new ArrayList<NodeGroup>(deferredNodeGroups.keySet())) {
+			scheduleNodeGroup(deferredNodeGroup);
+		}
+
 		Set<NodeGroupBundle> freeNodeGroupBundles = dependencyManager.obtainFreeDependents();
 
 		for(NodeGroupBundle freeNodeGroupBundle: freeNodeGroupBundles) {
@@ -541,6 +592,8 @@ public class ConcreteScheduler implements Scheduler {
 			scheduleNodeGroupBundle(freeNodeGroupBundle);
 		}
 
+		scheduleRetry();
+
 		return true;	
 	}
 
@@ -559,7 +612,10 @@ public class ConcreteScheduler implements Scheduler {
 	}
 
 	/**
-	 * Try to schedule the informed NodeGroup.
+	 * Try to schedule the informed NodeGroup. If the launchers close to its inputs are busy, the NodeGroup
+	 * is deferred until the locality wait expires.
+	 * 
+	 * @return True if the NodeGroup was scheduled; false if it was deferred.
 	 * 
 	 * @throws InsufficientLaunchersException If no alive Launcher can receive the informed NodeGroup.
 	 * 
@@ -567,28 +623,34 @@ public class ConcreteScheduler implements Scheduler {
 	 * @throws RuntimeNodeGroupPlacementException If none of the (existing) alive launchers meet the restrictions imposed by all
 	 *         members of the NodeGroup being scheduled.
 	 */
-	private void scheduleNodeGroup(NodeGroup nodeGroup) throws InsufficientLaunchersException, RuntimeGlobalPlacementException, RuntimeNodeGroupPlacementException {
-		// Setup the previous/current launcher and manager references in the node group
+	private boolean scheduleNodeGroup(NodeGroup nodeGroup) throws InsufficientLaunchersException, RuntimeGlobalPlacementException, RuntimeNodeGroupPlacementException {
+		Long firstAttempt = deferredNodeGroups.get(nodeGroup);
 
-		nodeGroup.setPreviousLauncher(nodeGroup.getCurrentLauncher());
-		nodeGroup.setManager(ConcreteManager.getInstance());
+		if(firstAttempt == null) {
+			firstAttempt = System.currentTimeMillis();
 
-		// First, try to reschedule the node group to the same launcher used before
+			// Setup the previous/current launcher and manager references in the node group
 
-		Launcher previousLauncher = nodeGroup.getPreviousLauncher();
+			nodeGroup.setPreviousLauncher(nodeGroup.getCurrentLauncher());
+			nodeGroup.setManager(ConcreteManager.getInstance());
 
-		if(previousLauncher != null) {
-			try {
-				nodeGroup.setCurrentLauncher(previousLauncher);
+			// First, try to reschedule the node group to the same launcher used before
 
-				if(previousLauncher.addNodeGroup(nodeGroup)) {
-					// Add node group to the running group
-					runningNodeGroups.put(nodeGroup.getSerialNumber(), nodeGroup);
+			Launcher previousLauncher = nodeGroup.getPreviousLauncher();
+
+			if(previousLauncher != null) {
+				try {
+					nodeGroup.setCurrentLauncher(previousLauncher);
+
+					if(previousLauncher.addNodeGroup(nodeGroup)) {
+						// Add node group to the running group
+						runningNodeGroups.put(nodeGroup.getSerialNumber(), nodeGroup);
 
-					return;
+						return true;
+					}
+				} catch (RemoteException exception) {
+					System.err.println("Previous launcher for NodeGroup #" + nodeGroup.getSerialNumber() + " is no longer running. Trying a differnt one...");
 				}
-			} catch (RemoteException exception) {
-				System.err.println("Previous launcher for NodeGroup #" + nodeGroup.getSerialNumber() + " is no longer running. Trying a differnt one...");
 			}
 		}
 
@@ -598,17 +660,53 @@ public class ConcreteScheduler implements Scheduler {
 
 		Collections.shuffle(currentLaunchers);
 
-		for(int i = 0; i < currentLaunchers.size(); i++) {
-			try {
-				Launcher launcher = currentLaunchers.get(i);
+		// Prefer launchers that store the input of the node group, then launchers on the same rack
+
+		List<List<Launcher>> rankedLaunchers = localityScorer.rankLaunchers(nodeGroup, currentLaunchers);
+
+		long waited = System.currentTimeMillis() - firstAttempt;
+
+		for(int level = 0; level < rankedLaunchers.size(); level++) {
+			if(tryLaunchers(nodeGroup, rankedLaunchers.get(level))) {
+				deferredNodeGroups.remove(nodeGroup);
+
+				return true;
+			}
+
+			// Wait for a closer launcher only while the wait of this level lasts, and some launcher may take the node group
+
+			boolean lastLevel = (level == rankedLaunchers.size() - 1);
+
+			if(!lastLevel && rankedLaunchers.get(level).size() > 0 && waited < (level + 1) * localityWait && hasFreeSlots(currentLaunchers, nodeGroup.getSize())) {
+				deferredNodeGroups.put(nodeGroup, firstAttempt);
+
+				return false;
+			}
+		}
+
+		deferredNodeGroups.remove(nodeGroup);
+
+		throw new InsufficientLaunchersException();
+	}
 
+	/**
+	 * Try to schedule the informed NodeGroup in one of the launchers informed, in order.
+	 * 
+	 * @param nodeGroup The NodeGroup being scheduled.
+	 * @param launchers The launchers, in order of preference.
+	 * 
+	 * @return True if the NodeGroup was scheduled, false otherwise.
+	 */
+	private boolean tryLaunchers(NodeGroup nodeGroup, List<Launcher> launchers) {
+		for(Launcher launcher: launchers) {
+			try {
 				nodeGroup.setCurrentLauncher(launcher);
 
 				if(launcher.addNodeGroup(nodeGroup)) {
 					// Add node group to the running group
 					runningNodeGroups.put(nodeGroup.getSerialNumber(), nodeGroup);
 
-					return;
+					return true;
 				}
 				else {
 					System.err.println("Failed using launcher (launcher unusable), trying next one...");
@@ -616,9 +714,71 @@ public class ConcreteScheduler implements Scheduler {
 			} catch (RemoteException exception) {
 				System.err.println("Failed using launcher (launcher unreachable), trying next one...");
 			}
-		}	
+		}
 
-		throw new InsufficientLaunchersException();
+		return false;
+	}
+
+	/**
+	 * Checks if some launcher has enough free slots for a NodeGroup. If none has, waiting for a closer launcher
+	 * only delays the failure of the schedule.
+	 * 
+	 * @param launchers The launchers.
+	 * @param slots The number of slots required.
+	 * 
+	 * @return True if some launcher has enough free slots, false otherwise.
+	 */
+	private boolean hasFreeSlots(List<Launcher> launchers, int slots) {
+		for(Launcher launcher: launchers) {
+			try {
+				if(launcher.getInformation().getFreeSlots() >= slots) {
+					return true;
+				}
+			} catch (RemoteException exception) {
+				// Unreachable launchers have no free slots
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Arranges for the deferred NodeGroups to be retried when the earliest of their waits expires.
+	 */
+	private void scheduleRetry() {
+		if(deferredNodeGroups.size() == 0) {
+			if(retryTimer != null) {
+				retryTimer.cancel();
+
+				retryTimer = null;
+			}
+
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+
+		long delay = Long.MAX_VALUE;
+
+		for(long firstAttempt: deferredNodeGroups.values()) {
+			long waited = now - firstAttempt;
+
+			// Next boundary between locality levels for this node group
+
+			long boundary = (waited < localityWait ? localityWait : 2 * localityWait);
+
+			delay = Math.min(delay, Math.max(boundary - waited, 0L));
+		}
+
+		if(retryTimer == null) {
+			retryTimer = new Timer("Scheduler retries for " + applicationName, true);
+		}
+
+		retryTimer.schedule(new TimerTask() {
+			public void run() {
+				ConcreteManager.getInstance().retrySchedule(applicationName);
+			}
+		}, delay);
 	}
 
 	/**
@@ -0,0 +1,263 @@
+/*
+Copyright (c) 2011, Hammurabi Mendes
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package scheduler;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import java.rmi.RemoteException;
+
+import java.util.Collections;
+import java.util.Comparator;
+
+import java.util.List;
+import java.util.Map;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import appspecs.Node;
+
+import communication.channel.FileInputChannel;
+import communication.channel.InputChannel;
+
+import execinfo.LauncherInformation;
+import execinfo.NodeGroup;
+
+import interfaces.Launcher;
+
+import utilities.filesystem.FileHelper;
+import utilities.filesystem.Filename;
+import utilities.filesystem.FilesystemDriver;
+
+import utilities.filesystem.hdfs.HDFSBlockLocation;
+
+/**
+ * Scores launchers by how many input bytes of a NodeGroup are stored on their host, or on their rack.
+ * The input bytes are the blocks of the files read by the FileInputChannels of the NodeGroup, restricted
+ * to the byte range of split channels. Hosts are placed on racks according to the information of the
+ * launchers that run on them.
+ * 
+ * @author Hammurabi Mendes (hmendes)
+ */
+public class LocalityScorer {
+	private FilesystemDriver filesystemDriver;
+
+	// Block locations already obtained, by file location
+
+	private Map<String, HDFSBlockLocation[]> blockLocations;
+
+	/**
+	 * Constructor method. Block locations are obtained from the driver of the protocol of each file.
+	 */
+	public LocalityScorer() {
+		this(null);
+	}
+
+	/**
+	 * Constructor method.
+	 * 
+	 * @param filesystemDriver Driver that provides the block locations of all files, or null to use the driver of the protocol of each file.
+	 */
+	public LocalityScorer(FilesystemDriver filesystemDriver) {
+		this.filesystemDriver = filesystemDriver;
+
+		this.blockLocations = new HashMap<String, HDFSBlockLocation[]>();
+	}
+
+	/**
+	 * Forgets the block locations obtained so far, since the files may be rewritten between iterations.
+	 */
+	public void clear() {
+		blockLocations.clear();
+	}
+
+	/**
+	 * Obtains the number of input bytes of the NodeGroup stored on each host.
+	 * 
+	 * @param nodeGroup The NodeGroup.
+	 * 
+	 * @return The number of input bytes stored on each host; hosts that store no input bytes are absent.
+	 */
+	public Map<String, Long> getHostBytes(NodeGroup nodeGroup) {
+		Map<String, Long> result = new HashMap<String, Long>();
+
+		for(Node node: nodeGroup.getNodes()) {
+			for(InputChannel inputChannel: node.getInputChannels()) {
+				if(!(inputChannel instanceof FileInputChannel)) {
+					continue;
+				}
+
+				FileInputChannel fileInputChannel = (FileInputChannel) inputChannel;
+
+				long start = 0L;
+				long end = Long.MAX_VALUE;
+
+				if(fileInputChannel.isSplit()) {
+					start = fileInputChannel.getSplitOffset();
+					end = start + fileInputChannel.getSplitLength();
+				}
+
+				for(HDFSBlockLocation blockLocation: getBlockLocations(fileInputChannel.getFileInformation())) {
+					long overlap = Math.min(end, blockLocation.getOffset() + blockLocation.getLength()) - Math.max(start, blockLocation.getOffset());
+
+					if(overlap <= 0) {
+						continue;
+					}
+
+					for(String host: blockLocation.getHosts()) {
+						String key = host.toLowerCase();
+
+						Long previous = result.get(key);
+
+						result.put(key, (previous == null ? 0L : previous) + overlap);
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Ranks the launchers for the NodeGroup in three locality levels: launchers whose host stores input bytes
+	 * of the NodeGroup, launchers whose rack stores input bytes of the NodeGroup, and the remaining launchers.
+	 * Inside the first two levels, launchers that store more input bytes come first; otherwise, the original
+	 * order of the launchers is kept.
+	 * 
+	 * @param nodeGroup The NodeGroup.
+	 * @param launchers The candidate launchers.
+	 * 
+	 * @return Three lists with the node-local, rack-local, and remaining launchers.
+	 */
+	public List<List<Launcher>> rankLaunchers(NodeGroup nodeGroup, List<Launcher> launchers) {
+		List<Launcher> nodeLocal = new ArrayList<Launcher>();
+		List<Launcher> rackLocal = new ArrayList<Launcher>();
+		List<Launcher> remaining = new ArrayList<Launcher>();
+
+		List<List<Launcher>> result = new ArrayList<List<Launcher>>();
+
+		result.add(nodeLocal);
+		result.add(rackLocal);
+		result.add(remaining);
+
+		Map<String, Long> hostBytes = getHostBytes(nodeGroup);
+
+		if(hostBytes.size() == 0) {
+			remaining.addAll(launchers);
+
+			return result;
+		}
+
+		Map<Launcher, LauncherInformation> informations = new HashMap<Launcher, LauncherInformation>();
+
+		// Racks of the hosts, according to the launchers that run on them
+
+		Map<String, String> hostRacks = new HashMap<String, String>();
+
+		for(Launcher launcher: launchers) {
+			try {
+				LauncherInformation information = launcher.getInformation();
+
+				informations.put(launcher, information);
+
+				hostRacks.put(information.getHost().toLowerCase(), information.getRack());
+			} catch (RemoteException exception) {
+				// Unreachable launchers are left for the scheduler to discard
+			}
+		}
+
+		Map<String, Long> rackBytes = new HashMap<String, Long>();
+
+		for(String host: hostBytes.keySet()) {
+			String rack = hostRacks.get(host);
+
+			if(rack != null) {
+				Long previous = rackBytes.get(rack);
+
+				rackBytes.put(rack, (previous == null ? 0L : previous) + hostBytes.get(host));
+			}
+		}
+
+		final Map<Launcher, Long> scores = new HashMap<Launcher, Long>();
+
+		for(Launcher launcher: launchers) {
+			LauncherInformation information = informations.get(launcher);
+
+			Long bytes = (information == null ? null : hostBytes.get(information.getHost().toLowerCase()));
+
+			if(bytes != null) {
+				nodeLocal.add(launcher);
+
+				scores.put(launcher, bytes);
+
+				continue;
+			}
+
+			bytes = (information == null ? null : rackBytes.get(information.getRack()));
+
+			if(bytes != null) {
+				rackLocal.add(launcher);
+
+				scores.put(launcher, bytes);
+
+				continue;
+			}
+
+			remaining.add(launcher);
+		}
+
+		Comparator<Launcher> comparator = new Comparator<Launcher>() {
+			public int compare(Launcher first, Launcher second) {
+				long difference = scores.get(second) - scores.get(first);
+
+				return (difference < 0 ? -1 : (difference > 0 ? 1 : 0));
+			}
+		};
+
+		// The sort is stable, so ties keep the original order
+
+		Collections.sort(nodeLocal, comparator);
+		Collections.sort(rackLocal, comparator);
+
+		return result;
+	}
+
+	private HDFSBlockLocation[] getBlockLocations(Filename filename) {
+		HDFSBlockLocation[] result = blockLocations.get(filename.getLocation());
+
+		if(result != null) {
+			return result;
+		}
+
+		try {
+			if(filesystemDriver != null) {
+				result = filesystemDriver.getFileBlockLocations(filename);
+			}
+			else {
+				result = FileHelper.getFileBlockLocations(filename);
+			}
+		} catch (FileNotFoundException exception) {
+			// Files produced by other NodeGroups may not exist yet, so they are not cached
+
+			return new HDFSBlockLocation[0];
+		} catch (IOException exception) {
+			System.err.println("Unable to obtain the block locations of " + filename.getLocation() + ": " + exception.getMessage());
+
+			result = new HDFSBlockLocation[0];
+		}
+
+		blockLocations.put(filename.getLocation(), result);
+
+		return result;
+	}
+}